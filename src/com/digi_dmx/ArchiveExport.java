@@ -0,0 +1,105 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Packs a provider directory into a single archive that can be used as a provider URL.
+ * Entries are written in sorted order so the same directory always produces the same archive.
+ * 
+ * <pre>
+ * java -cp EasyJNDI.jar com.digi_dmx.ArchiveExport /settings /opt/app/bindings.zip
+ * </pre>
+ * 
+ * @author Eric E Bardes
+ */
+public class ArchiveExport
+{
+	private ArchiveExport()
+	{
+	}
+
+	/**
+	 * @param args The provider directory and the archive to write.
+	 * @throws IOException if the directory can't be read or the archive can't be written
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length != 2)
+		{
+			System.err.println("usage: ArchiveExport <directory> <archive>");
+			System.exit(1);
+		}
+		export(new File(args[0]), new File(args[1]));
+	}
+
+	/**
+	 * @param directory A provider directory as written by {@link XMLContext#bind(String, Object)}.
+	 * @param archive The zip archive to create. An existing file is replaced.
+	 * @throws IOException if the directory can't be read or the archive can't be written
+	 */
+	public static void export(File directory, File archive) throws IOException
+	{
+		if (!directory.isDirectory())
+			throw new IOException(directory + " is not a directory");
+
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(archive)))
+		{
+			add(zos, directory, "");
+		}
+	}
+
+	private static void add(ZipOutputStream zos, File dir, String prefix) throws IOException
+	{
+		File[] files = dir.listFiles();
+		if (files == null)
+			return;
+		Arrays.sort(files);
+		for (File f : files)
+		{
+			String n = prefix + f.getName();
+			if (f.isDirectory())
+			{
+				zos.putNextEntry(new ZipEntry(n + "/"));
+				zos.closeEntry();
+				add(zos, f, n + "/");
+			}
+			else if (n.endsWith(Provider.FILE_EXTENSION))
+			{
+				ZipEntry e = new ZipEntry(n);
+				e.setTime(f.lastModified());
+				zos.putNextEntry(e);
+				Files.copy(f.toPath(), zos);
+				zos.closeEntry();
+			}
+		}
+	}
+}
@@ -0,0 +1,240 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+
+/**
+ * Bindings packed into a single zip or jar archive, for example one built by {@link ArchiveExport}.
+ * The provider URL is either the archive itself, <tt>file:/opt/app/bindings.zip</tt>, or a jar URL naming
+ * a directory inside it, <tt>jar:file:/opt/app/bindings.jar!/jndi</tt>.
+ * 
+ * <p>The archive is opened once on first use.  Its central directory is read into a {@link NameIndex}
+ * and every lookup reads its entry from the one open file.  The archive is treated as immutable, so
+ * parsed references may be cached; replacing it requires a new provider URL or a restart.
+ * 
+ * @author Eric E Bardes
+ */
+class ArchiveProvider extends Provider
+{
+	static final String SCHEME = "jar";
+
+	private final File file;
+
+	private final String base;
+
+	/** null until the archive is first read and again once the provider is closed */
+	private volatile ZipFile zip;
+
+	private volatile NameIndex<ZipEntry> index;
+
+	/** held while the archive is opened or closed */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	ArchiveProvider(URI uri)
+	{
+		super(uri);
+		String path;
+		String b = "";
+		if (SCHEME.equalsIgnoreCase(scheme))
+		{
+			String ssp = uri.getSchemeSpecificPart();
+			int bang = ssp.indexOf("!/");
+			if (bang < 0)
+			{
+				path = URI.create(ssp).getPath();
+			}
+			else
+			{
+				path = URI.create(ssp.substring(0, bang)).getPath();
+				b = ssp.substring(bang + 2);
+			}
+		}
+		else
+		{
+			path = uri.getPath();
+		}
+		while (b.endsWith("/"))
+			b = b.substring(0, b.length() - 1);
+		this.file = new File(path);
+		this.base = b.isEmpty() ? "" : b + "/";
+	}
+
+	/**
+	 * @param uri A provider URL
+	 * @return true if the URL names an archive rather than a directory.
+	 */
+	static boolean isArchive(URI uri)
+	{
+		String scheme = uri.getScheme();
+		if (SCHEME.equalsIgnoreCase(scheme))
+			return true;
+		if (scheme != null && !scheme.equalsIgnoreCase("file"))
+			return false;
+		String path = uri.getPath();
+		if (path == null)
+			return false;
+		String lower = path.toLowerCase();
+		return lower.endsWith(".zip") || lower.endsWith(".jar");
+	}
+
+	private NameIndex<ZipEntry> index() throws NamingException
+	{
+		NameIndex<ZipEntry> i = index;
+		if (i == null)
+		{
+			lock.lock();
+			try
+			{
+				i = index;
+				if (i == null)
+				{
+					i = read();
+					index = i;
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+		return i;
+	}
+
+	private NameIndex<ZipEntry> read() throws NamingException
+	{
+		ZipFile z;
+		try
+		{
+			z = new ZipFile(file);
+		}
+		catch (IOException e)
+		{
+			NamingException ne = new NamingException("Unable to open " + file);
+			ne.setRootCause(e);
+			throw ne;
+		}
+		zip = z;
+
+		NameIndex<ZipEntry> i = new NameIndex<ZipEntry>();
+		Enumeration<? extends ZipEntry> entries = z.entries();
+		while (entries.hasMoreElements())
+		{
+			ZipEntry e = entries.nextElement();
+			String n = e.getName();
+			if (!e.isDirectory() && n.startsWith(base) && n.endsWith(FILE_EXTENSION))
+			{
+				i.add(n.substring(base.length(), n.length() - FILE_EXTENSION.length()), e);
+			}
+		}
+		return i;
+	}
+
+	@Override
+	Object locate(String name) throws NamingException
+	{
+		ZipEntry e = index().get(name);
+		if (e == null)
+			throw new NameNotFoundException(name);
+		return e;
+	}
+
+	@Override
+	boolean exists(String name) throws NamingException
+	{
+		return index().get(name) != null;
+	}
+
+	@Override
+	boolean isDirectory(String name) throws NamingException
+	{
+		return index().isDirectory(name);
+	}
+
+	@Override
+	InputStream open(Object location) throws NamingException, IOException
+	{
+		ZipFile z = zip;
+		if (z == null)
+			throw new NamingException(file + " has been closed");
+		return z.getInputStream((ZipEntry) location);
+	}
+
+	@Override
+	Collection<String> list(String prefix) throws NamingException
+	{
+		return index().list(prefix);
+	}
+
+	@Override
+	boolean isCacheable()
+	{
+		return true;
+	}
+
+	@Override
+	void close()
+	{
+		lock.lock();
+		try
+		{
+			ZipFile z = zip;
+			if (z != null)
+			{
+				zip = null;
+				index = null;
+				try
+				{
+					z.close();
+				}
+				catch (IOException ignore)
+				{
+				}
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	String describe(Object location)
+	{
+		if (location instanceof ZipEntry)
+			return "jar:" + file.toURI() + "!/" + ((ZipEntry) location).getName();
+		return super.describe(location);
+	}
+}
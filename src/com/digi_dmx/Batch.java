@@ -0,0 +1,139 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.naming.NameAlreadyBoundException;
+import javax.naming.NamingException;
+import javax.naming.Reference;
+
+/**
+ * Several writes to an {@link XMLContext} sent together, taken with {@link XMLContext#batch()}.  Nothing is
+ * written until {@link #commit()}.  The <tt>http</tt> scheme sends the whole batch at once over a few persistent
+ * connections instead of one request after another; other schemes write in order.
+ * 
+ * <pre>
+ * ctx.batch()
+ *     .bind("jdbc/primary", primary)
+ *     .rebind("jdbc/replica", replica)
+ *     .unbind("jdbc/old")
+ *     .commit();
+ * </pre>
+ * 
+ * <p>A batch isn't a transaction: when some writes fail the others still take effect, and the exception
+ * names the ones that failed.  A later write to a name replaces an earlier one in the same batch; a bind that
+ * replaces an unbind of the same name counts as a rebind.
+ * 
+ * @author Eric E Bardes
+ */
+public class Batch
+{
+	private final XMLContext ctx;
+
+	private final Map<String, Reference> writes = new LinkedHashMap<String, Reference>();
+
+	/** the names bound rather than rebound */
+	private final Set<String> fresh = new HashSet<String>();
+
+	Batch(XMLContext ctx)
+	{
+		this.ctx = ctx;
+	}
+
+	/**
+	 * Binds a name that isn't bound yet.  If it is bound when the batch is committed, this write fails with
+	 * {@link NameAlreadyBoundException} and the binding is left alone.
+	 * 
+	 * @param name The name of the binding, relative to the context
+	 * @param obj The object to save, a Reference or an object that implements Referenceable.
+	 * @return This batch
+	 * @throws NamingException if the object can't be referenced
+	 */
+	public Batch bind(String name, Object obj) throws NamingException
+	{
+		boolean unbinding = writes.containsKey(name) && writes.get(name) == null;
+		write(name, XMLContext.referenceOf(obj));
+		if (!unbinding)
+			fresh.add(name);
+		return this;
+	}
+
+	/**
+	 * Binds a name, replacing any existing binding.
+	 * 
+	 * @param name The name of the binding
+	 * @param obj The object to save
+	 * @return This batch
+	 * @throws NamingException if the object can't be referenced
+	 */
+	public Batch rebind(String name, Object obj) throws NamingException
+	{
+		write(name, XMLContext.referenceOf(obj));
+		return this;
+	}
+
+	/**
+	 * @param name The binding to remove.  A missing binding is ignored.
+	 * @return This batch
+	 */
+	public Batch unbind(String name)
+	{
+		write(name, null);
+		return this;
+	}
+
+	private void write(String name, Reference ref)
+	{
+		writes.remove(name);
+		writes.put(name, ref);
+		fresh.remove(name);
+	}
+
+	/**
+	 * @return The number of writes waiting
+	 */
+	public int size()
+	{
+		return writes.size();
+	}
+
+	/**
+	 * Sends the writes and empties the batch.
+	 * 
+	 * @throws NameAlreadyBoundException if every write that failed was a bind of a name already bound
+	 * @throws NamingException if the context's scheme can't be written, or naming the writes that failed.
+	 */
+	public void commit() throws NamingException
+	{
+		Map<String, Reference> w = new LinkedHashMap<String, Reference>(writes);
+		Set<String> f = new HashSet<String>(fresh);
+		writes.clear();
+		fresh.clear();
+		ctx.commit(w, f);
+	}
+}
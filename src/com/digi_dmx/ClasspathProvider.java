@@ -0,0 +1,276 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+
+/**
+ * Bindings packaged with the application.  A provider URL of <tt>classpath:jndi</tt> resolves the name
+ * <tt>jdbc/main</tt> to the resource <tt>jndi/jdbc/main.xml</tt> using the context class loader.
+ * 
+ * <p>The first use scans the class path once and builds an index of every binding under the base directory,
+ * so later lookups and lists don't repeat the resource scans.  With a base directory, jars are only found if they
+ * contain a directory entry for it, which is what the usual build tools produce.  A bare <tt>classpath:</tt> has no
+ * such entry to look for, so the jars are taken from the class loaders and the <tt>java.class.path</tt> property.
+ * This provider is read only and its contents may be cached.
+ * 
+ * @author Eric E Bardes
+ */
+class ClasspathProvider extends Provider
+{
+	static final String SCHEME = "classpath";
+
+	private static final Logger LOG = Logger.getLogger(ClasspathProvider.class.getName());
+
+	private final String base;
+
+	private volatile NameIndex<URL> index;
+
+	/** held while the classpath is scanned */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	ClasspathProvider(URI uri)
+	{
+		super(uri);
+		String b = uri.getSchemeSpecificPart();
+		while (b.startsWith("/"))
+			b = b.substring(1);
+		while (b.endsWith("/"))
+			b = b.substring(0, b.length() - 1);
+		this.base = b.isEmpty() ? "" : b + "/";
+	}
+
+	private NameIndex<URL> index() throws NamingException
+	{
+		NameIndex<URL> i = index;
+		if (i == null)
+		{
+			lock.lock();
+			try
+			{
+				i = index;
+				if (i == null)
+				{
+					i = scan();
+					index = i;
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+		return i;
+	}
+
+	private NameIndex<URL> scan() throws NamingException
+	{
+		ClassLoader cl = Thread.currentThread().getContextClassLoader();
+		if (cl == null)
+			cl = ClasspathProvider.class.getClassLoader();
+
+		NameIndex<URL> i = new NameIndex<URL>();
+		Set<String> jars = new HashSet<String>();
+		try
+		{
+			Enumeration<URL> roots = cl.getResources(base);
+			while (roots.hasMoreElements())
+			{
+				URL root = roots.nextElement();
+				if (root.getProtocol().equals("file"))
+				{
+					scanDirectory(i, new File(root.toURI()), "");
+				}
+				else if (root.getProtocol().equals("jar"))
+				{
+					scanJar(i, root, jars);
+				}
+				else
+				{
+					LOG.log(Level.FINE, "Ignoring class path root {0}", root);
+				}
+			}
+			if (base.isEmpty())
+			{
+				for (URL jar : jars(cl))
+					scanJar(i, new URL("jar:" + jar + "!/"), jars);
+			}
+		}
+		catch (IOException | URISyntaxException e)
+		{
+			NamingException ne = new NamingException("Unable to index " + uri);
+			ne.setRootCause(e);
+			throw ne;
+		}
+		return i;
+	}
+
+	private void scanDirectory(NameIndex<URL> i, File dir, String prefix) throws IOException
+	{
+		File[] files = dir.listFiles();
+		if (files == null)
+			return;
+		for (File f : files)
+		{
+			String n = f.getName();
+			if (f.isDirectory())
+				scanDirectory(i, f, prefix + n + "/");
+			else if (n.endsWith(FILE_EXTENSION))
+				i.add(prefix + n.substring(0, n.length() - FILE_EXTENSION.length()), f.toURI().toURL());
+		}
+	}
+
+	/**
+	 * The jars a class loader can see.  Resource lookups for <tt>""</tt> only return directories, so the jars are
+	 * collected from the loaders that expose their URLs, from the manifests, and from <tt>java.class.path</tt>, which
+	 * covers the application class loader.
+	 */
+	private static Set<URL> jars(ClassLoader cl) throws IOException
+	{
+		Set<URL> jars = new LinkedHashSet<URL>();
+		for (ClassLoader l = cl; l != null; l = l.getParent())
+		{
+			if (l instanceof URLClassLoader)
+			{
+				for (URL u : ((URLClassLoader) l).getURLs())
+				{
+					if (u.getProtocol().equals("file") && u.getPath().endsWith(".jar"))
+						jars.add(u);
+				}
+			}
+		}
+
+		Enumeration<URL> manifests = cl.getResources(JarFile.MANIFEST_NAME);
+		while (manifests.hasMoreElements())
+		{
+			URLConnection conn = manifests.nextElement().openConnection();
+			if (conn instanceof JarURLConnection)
+				jars.add(((JarURLConnection) conn).getJarFileURL());
+		}
+
+		String cp = System.getProperty("java.class.path", "");
+		for (String entry : cp.split(File.pathSeparator))
+		{
+			if (entry.endsWith(".jar"))
+				jars.add(new File(entry).toURI().toURL());
+		}
+		return jars;
+	}
+
+	private void scanJar(NameIndex<URL> i, URL root, Set<String> seen) throws IOException
+	{
+		URLConnection conn = root.openConnection();
+		if (!(conn instanceof JarURLConnection))
+			return;
+		JarURLConnection jc = (JarURLConnection) conn;
+		String jarUrl = jc.getJarFileURL().toString();
+		if (!seen.add(jarUrl))
+			return;
+		JarFile jar = jc.getJarFile();
+		Enumeration<JarEntry> entries = jar.entries();
+		while (entries.hasMoreElements())
+		{
+			JarEntry e = entries.nextElement();
+			String n = e.getName();
+			if (!e.isDirectory() && n.startsWith(base) && n.endsWith(FILE_EXTENSION))
+			{
+				String name = n.substring(base.length(), n.length() - FILE_EXTENSION.length());
+				i.add(name, new URL("jar:" + jarUrl + "!/" + encode(n)));
+			}
+		}
+	}
+
+	/** escapes a jar entry name for use in a URL, leaving the separators alone */
+	private static String encode(String entry) throws IOException
+	{
+		try
+		{
+			return new URI(null, null, entry, null).getRawPath();
+		}
+		catch (URISyntaxException e)
+		{
+			throw new IOException("Unable to encode " + entry, e);
+		}
+	}
+
+	@Override
+	Object locate(String name) throws NamingException
+	{
+		URL url = index().get(name);
+		if (url == null)
+			throw new NameNotFoundException(name);
+		return url;
+	}
+
+	@Override
+	boolean exists(String name) throws NamingException
+	{
+		return index().get(name) != null;
+	}
+
+	@Override
+	boolean isDirectory(String name) throws NamingException
+	{
+		return index().isDirectory(name);
+	}
+
+	@Override
+	InputStream open(Object location) throws IOException
+	{
+		return ((URL) location).openStream();
+	}
+
+	@Override
+	Collection<String> list(String prefix) throws NamingException
+	{
+		return index().list(prefix);
+	}
+
+	@Override
+	boolean isCacheable()
+	{
+		return true;
+	}
+}
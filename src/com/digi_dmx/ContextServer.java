@@ -0,0 +1,753 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.Reference;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import com.digi_dmx.gen.Binding;
+import com.digi_dmx.gen.Bindings;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Publishes the bindings of an {@link XMLContext} over HTTP, so other nodes can use it as an <tt>http</tt>
+ * {@link Context#PROVIDER_URL}.  A binding <tt>jdbc/main</tt> is served at <tt>/jdbc/main.xml</tt> below the
+ * server's path.
+ * 
+ * <pre>
+ * java -cp EasyJNDI.jar com.digi_dmx.ContextServer file:/settings 8080
+ * </pre>
+ * 
+ * <p>Every response carries a strong ETag, a digest of the document, and a conditional GET with a matching
+ * <tt>If-None-Match</tt> is answered with 304.  Clients that accept gzip get a copy compressed once per version of
+ * the document.  Other clients are sent the document as it was read when its ETag was taken, so the body always
+ * matches the tag it is sent with.  Requests run on the {@link XMLContext#getDefaultExecutor() default executor}
+ * unless an executor is given, so a single host can serve hundreds of clients at once.
+ * 
+ * <p>A directory, the top included, can be fetched whole.  <tt>/jdbc/?bulk</tt> answers with a <tt>bindings</tt>
+ * document holding every binding below <tt>jdbc</tt> with its content and version, and <tt>/jdbc/?manifest</tt>
+ * with the names and versions alone.  Names are relative to the directory.  A binding's version is its ETag
+ * without the quotes, and the document's <tt>version</tt> attribute is a digest of all of them: the manifest's
+ * ETag is that version quoted, the bulk document's has <tt>.bulk</tt> appended.  A client that mirrors the
+ * directory polls the manifest with <tt>If-None-Match</tt> and fetches only the bindings whose version moved.
+ * 
+ * <p>A server made {@link #setWritable(boolean) writable} also takes PUT, binding the document sent, and DELETE,
+ * unbinding the name.  Either is refused with 412 when an <tt>If-Match</tt> header doesn't name the binding's
+ * current version, and a PUT with <tt>If-None-Match: *</tt> is refused if the name is already bound.  The
+ * answer to a PUT carries the binding's new ETag.  A body longer than the {@link #setMaxBody(int) limit} is refused
+ * with 413 before it is read.
+ * 
+ * @author Eric E Bardes
+ */
+public class ContextServer implements HttpHandler
+{
+	private static final Logger LOG = Logger.getLogger(ContextServer.class.getName());
+
+	/** connections the operating system may queue before the server accepts them */
+	private static final int BACKLOG = 1024;
+
+	private static final String CONTENT_TYPE = "application/xml";
+
+	/** the longest request body taken by default */
+	static final int MAX_BODY = 1024 * 1024;
+
+	/** the query asking for a directory's bindings with their content */
+	static final String BULK = "bulk";
+
+	/** the query asking for a directory's names and versions */
+	static final String MANIFEST = "manifest";
+
+	/** built on first use and shared with {@link HttpMirror} */
+	private static volatile JAXBContext jaxb;
+
+	/**
+	 * What the server knows about one version of a document.
+	 */
+	static class Version
+	{
+		/** the modification time the version was read at, 0 if the provider can't tell */
+		final long stamp;
+
+		/** the quoted entity tag */
+		final String etag;
+
+		/** the document the tag was taken from */
+		final byte[] data;
+
+		final byte[] gzip;
+
+		Version(long stamp, String etag, byte[] data, byte[] gzip)
+		{
+			this.stamp = stamp;
+			this.etag = etag;
+			this.data = data;
+			this.gzip = gzip;
+		}
+	}
+
+	private final XMLContext ctx;
+
+	private final HttpServer server;
+
+	private final String path;
+
+	/** true to take PUT and DELETE */
+	private volatile boolean writable;
+
+	/** the longest request body taken, in bytes */
+	private volatile int maxBody = MAX_BODY;
+
+	/**
+	 * A binding's stripe is held while it is checked and written, so two writes can't both match one version.
+	 * Locks rather than monitors, so a virtual thread doing the file I/O doesn't pin its carrier.
+	 */
+	private final ReentrantLock[] writing = new ReentrantLock[64];
+
+	private final ConcurrentHashMap<String, Version> versions = new ConcurrentHashMap<String, Version>();
+
+	/** the last document rendered for each query and directory */
+	private final ConcurrentHashMap<String, Rendered> rendered = new ConcurrentHashMap<String, Rendered>();
+
+	/**
+	 * A bulk document or manifest as sent.
+	 */
+	private static class Rendered
+	{
+		final String etag;
+
+		final byte[] data;
+
+		final byte[] gzip;
+
+		Rendered(String etag, byte[] data, byte[] gzip)
+		{
+			this.etag = etag;
+			this.data = data;
+			this.gzip = gzip;
+		}
+	}
+
+	/**
+	 * Serves the context at the root path on the {@link XMLContext#getDefaultExecutor() default executor}.
+	 * 
+	 * @param ctx The context to publish
+	 * @param address Where to listen
+	 * @throws IOException if the address can't be bound
+	 */
+	public ContextServer(XMLContext ctx, InetSocketAddress address) throws IOException
+	{
+		this(ctx, address, "/", null);
+	}
+
+	/**
+	 * @param ctx The context to publish
+	 * @param address Where to listen
+	 * @param path The path the bindings are served below
+	 * @param executor Runs the requests, null for the {@link XMLContext#getDefaultExecutor() default executor}
+	 * @throws IOException if the address can't be bound
+	 */
+	public ContextServer(XMLContext ctx, InetSocketAddress address, String path, Executor executor) throws IOException
+	{
+		this.ctx = ctx;
+		this.path = path.endsWith("/") ? path : path + "/";
+		this.server = HttpServer.create(address, BACKLOG);
+		this.server.createContext(this.path, this);
+		this.server.setExecutor(executor != null ? executor : DefaultExecutor.get());
+		for (int i = 0; i < writing.length; i++)
+		{
+			writing[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * @param args <tt>-w</tt> to take writes, the provider URL to publish and optionally the port, 8080 by default.
+	 * @throws Exception if the context can't be created or the port can't be bound
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		boolean writable = args.length > 0 && args[0].equals("-w");
+		if (writable)
+			args = Arrays.copyOfRange(args, 1, args.length);
+		if (args.length < 1 || args.length > 2)
+		{
+			System.err.println("usage: ContextServer [-w] <provider-url> [port]");
+			System.exit(1);
+		}
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, args[0]);
+		XMLContext ctx = (XMLContext) new XMLContextFactory().getInitialContext(env);
+		ContextServer server = new ContextServer(ctx, new InetSocketAddress(args.length > 1 ? Integer.parseInt(args[1]) : 8080));
+		server.setWritable(writable);
+		server.start();
+		System.out.println("Serving " + args[0] + " at " + server.getURI());
+	}
+
+	/**
+	 * @param writable true to let clients bind and unbind with PUT and DELETE, false (the default) to serve
+	 * reads alone
+	 */
+	public void setWritable(boolean writable)
+	{
+		this.writable = writable;
+	}
+
+	/**
+	 * @param maxBody The longest document a PUT may send, in bytes.  One megabyte by default.
+	 */
+	public void setMaxBody(int maxBody)
+	{
+		this.maxBody = maxBody;
+	}
+
+	/**
+	 * Starts serving in the background.
+	 */
+	public void start()
+	{
+		server.start();
+	}
+
+	/**
+	 * @param delay The most seconds to wait for requests being served to finish
+	 */
+	public void stop(int delay)
+	{
+		server.stop(delay);
+	}
+
+	/**
+	 * @return The address the server listens on, with the port chosen if port 0 was asked for.
+	 */
+	public InetSocketAddress getAddress()
+	{
+		return server.getAddress();
+	}
+
+	/**
+	 * @return A provider URL for clients of this server.
+	 */
+	public URI getURI()
+	{
+		InetSocketAddress a = getAddress();
+		String host = a.getAddress().isAnyLocalAddress() ? "localhost" : a.getHostString();
+		return URI.create("http://" + host + ":" + a.getPort() + path);
+	}
+
+	@Override
+	public void handle(HttpExchange exchange) throws IOException
+	{
+		try
+		{
+			String method = exchange.getRequestMethod();
+			boolean write = method.equals("PUT") || method.equals("DELETE");
+			if (!method.equals("GET") && !method.equals("HEAD") && !(write && writable))
+			{
+				readBody(exchange, maxBody);
+				exchange.getResponseHeaders().set("Allow", writable ? "GET, HEAD, PUT, DELETE" : "GET, HEAD");
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+
+			Provider p = ctx.provider();
+			if (write)
+			{
+				String name = exchange.getRequestURI().getRawQuery() == null ? name(exchange.getRequestURI().getPath()) : null;
+				if (name == null)
+				{
+					exchange.sendResponseHeaders(404, -1);
+					return;
+				}
+				write(exchange, p, name, method.equals("DELETE"));
+				return;
+			}
+
+			String query = exchange.getRequestURI().getRawQuery();
+			if (query != null)
+			{
+				String prefix = prefix(exchange.getRequestURI().getPath());
+				if (prefix == null || !(query.equals(BULK) || query.equals(MANIFEST)) || !(prefix.isEmpty() || p.isDirectory(prefix)))
+				{
+					exchange.sendResponseHeaders(404, -1);
+					return;
+				}
+				bindings(exchange, p, prefix, query.equals(BULK), method.equals("HEAD"));
+				return;
+			}
+
+			String name = name(exchange.getRequestURI().getPath());
+			if (name == null || !p.exists(name))
+			{
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			get(exchange, p, name, method.equals("HEAD"));
+		}
+		catch (NamingException | IOException | RuntimeException e)
+		{
+			LOG.log(Level.FINE, "Unable to serve " + exchange.getRequestURI(), e);
+			if (exchange.getResponseCode() == -1)
+				exchange.sendResponseHeaders(500, -1);
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	private void get(HttpExchange exchange, Provider p, String name, boolean head) throws NamingException, IOException
+	{
+		Version v = version(p, name, p.locate(name));
+
+		Headers h = exchange.getResponseHeaders();
+		h.set("ETag", v.etag);
+		h.set("Cache-Control", "no-cache");
+		h.set("Vary", "Accept-Encoding");
+		if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), v.etag))
+		{
+			exchange.sendResponseHeaders(304, -1);
+			return;
+		}
+
+		h.set("Content-Type", CONTENT_TYPE);
+		if (head)
+		{
+			exchange.sendResponseHeaders(200, -1);
+			return;
+		}
+
+		if (acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding")))
+		{
+			send(exchange, v.gzip, true);
+		}
+		else
+		{
+			send(exchange, v.data, false);
+		}
+	}
+
+	/**
+	 * Reads the request body to the end, even when there is nothing to read: the server closes a connection answered
+	 * before its request was consumed.  The server's streams wait inside their monitors, so the read is made off the
+	 * virtual thread.
+	 * 
+	 * @param exchange The request
+	 * @param limit The most bytes to read
+	 * @return The body, or null if it is longer than the limit
+	 */
+	private static byte[] readBody(final HttpExchange exchange, final int limit) throws IOException
+	{
+		try
+		{
+			return DefaultExecutor.unpinned(new Callable<byte[]>()
+			{
+				@Override
+				public byte[] call() throws IOException
+				{
+					try (InputStream in = exchange.getRequestBody())
+					{
+						byte[] body = in.readNBytes(limit);
+						return in.read() < 0 ? body : null;
+					}
+				}
+			});
+		}
+		catch (IOException | RuntimeException e)
+		{
+			throw e;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted reading the request for " + exchange.getRequestURI());
+		}
+		catch (Exception e)
+		{
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Binds the document sent, or unbinds the name, if the request's preconditions hold.
+	 * 
+	 * @param exchange The request
+	 * @param p The provider
+	 * @param name The binding
+	 * @param delete true to unbind, false to bind the request body
+	 */
+	private void write(HttpExchange exchange, Provider p, String name, boolean delete) throws NamingException, IOException
+	{
+		int limit = maxBody;
+		String length = exchange.getRequestHeaders().getFirst("Content-Length");
+		if (length != null && Long.parseLong(length.trim()) > limit)
+		{
+			exchange.sendResponseHeaders(413, -1);
+			return;
+		}
+		byte[] body = readBody(exchange, limit);
+		if (body == null)
+		{
+			exchange.sendResponseHeaders(413, -1);
+			return;
+		}
+
+		Reference ref = null;
+		if (!delete)
+		{
+			try
+			{
+				ref = ctx.parseXML(new ByteArrayInputStream(body));
+			}
+			catch (JAXBException | RuntimeException e)
+			{
+				LOG.log(Level.FINE, "Refused a document for " + name, e);
+				exchange.sendResponseHeaders(400, -1);
+				return;
+			}
+		}
+
+		Headers request = exchange.getRequestHeaders();
+		ReentrantLock lock = writing[(name.hashCode() & 0x7fffffff) % writing.length];
+		lock.lock();
+		try
+		{
+			boolean exists = p.exists(name);
+			String ifMatch = request.getFirst("If-Match");
+			if (ifMatch != null && (!exists || !matches(ifMatch, version(p, name, p.locate(name)).etag)))
+			{
+				exchange.sendResponseHeaders(412, -1);
+				return;
+			}
+			if (exists && "*".equals(request.getFirst("If-None-Match")))
+			{
+				exchange.sendResponseHeaders(412, -1);
+				return;
+			}
+
+			if (delete)
+			{
+				if (!exists)
+				{
+					exchange.sendResponseHeaders(404, -1);
+					return;
+				}
+				ctx.unbind(name);
+				versions.remove(name);
+				exchange.sendResponseHeaders(204, -1);
+				return;
+			}
+
+			ctx.rebind(name, ref);
+			versions.remove(name);
+			exchange.getResponseHeaders().set("ETag", version(p, name, p.locate(name)).etag);
+			exchange.sendResponseHeaders(exists ? 204 : 201, -1);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Answers with the bindings below a directory.
+	 * 
+	 * @param exchange The request
+	 * @param p The provider
+	 * @param prefix The directory, empty or ending with a slash
+	 * @param bulk true for the content too, false for a manifest
+	 * @param head true to send the headers alone
+	 */
+	private void bindings(HttpExchange exchange, Provider p, String prefix, boolean bulk, boolean head) throws NamingException, IOException
+	{
+		Map<String, Version> found = new TreeMap<String, Version>();
+		collect(p, prefix, "", found);
+
+		StringBuilder all = new StringBuilder();
+		for (Map.Entry<String, Version> e : found.entrySet())
+		{
+			all.append(e.getKey()).append(' ').append(e.getValue().etag).append('\n');
+		}
+		String version = unquote(etag(all.toString().getBytes(StandardCharsets.UTF_8)));
+		String etag = "\"" + version + (bulk ? ".bulk\"" : "\"");
+
+		Headers h = exchange.getResponseHeaders();
+		h.set("ETag", etag);
+		h.set("Cache-Control", "no-cache");
+		h.set("Vary", "Accept-Encoding");
+		if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag))
+		{
+			exchange.sendResponseHeaders(304, -1);
+			return;
+		}
+
+		h.set("Content-Type", CONTENT_TYPE);
+		if (head)
+		{
+			exchange.sendResponseHeaders(200, -1);
+			return;
+		}
+
+		String key = (bulk ? BULK : MANIFEST) + " " + prefix;
+		Rendered r = rendered.get(key);
+		if (r == null || !r.etag.equals(etag))
+		{
+			r = render(prefix, found, version, etag, bulk);
+			rendered.put(key, r);
+		}
+		boolean gzip = acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+		send(exchange, gzip ? r.gzip : r.data, gzip);
+	}
+
+	private Rendered render(String prefix, Map<String, Version> found, String version, String etag, boolean bulk) throws IOException
+	{
+		try
+		{
+			JAXBContext jc = jaxb();
+			Unmarshaller u = jc.createUnmarshaller();
+			Bindings doc = new Bindings();
+			doc.setVersion(version);
+			for (Map.Entry<String, Version> e : found.entrySet())
+			{
+				Binding b = new Binding();
+				b.setName(e.getKey());
+				b.setVersion(unquote(e.getValue().etag));
+				if (bulk)
+				{
+					b.setContext((com.digi_dmx.gen.Context) u.unmarshal(new ByteArrayInputStream(e.getValue().data)));
+				}
+				doc.getBinding().add(b);
+			}
+
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			Marshaller m = jc.createMarshaller();
+			m.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+			m.marshal(doc, bos);
+			byte[] data = bos.toByteArray();
+			return new Rendered(etag, data, gzip(data));
+		}
+		catch (JAXBException e)
+		{
+			throw new IOException("Unable to render the bindings of " + (prefix.isEmpty() ? "/" : prefix), e);
+		}
+	}
+
+	/**
+	 * @param p The provider
+	 * @param prefix A directory, empty or ending with a slash
+	 * @param dir A directory below it, empty or ending with a slash
+	 * @param found Receives the versions of the bindings below it, by name relative to the prefix.
+	 */
+	private void collect(Provider p, String prefix, String dir, Map<String, Version> found) throws NamingException, IOException
+	{
+		for (String entry : p.list(prefix + dir))
+		{
+			String name = dir + entry;
+			if (entry.endsWith("/"))
+				collect(p, prefix, name, found);
+			else
+				found.put(name, version(p, prefix + name, p.locate(prefix + name)));
+		}
+	}
+
+	private static void send(HttpExchange exchange, byte[] body, boolean gzip) throws IOException
+	{
+		if (gzip)
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		exchange.sendResponseHeaders(200, body.length);
+		exchange.getResponseBody().write(body);
+	}
+
+	/**
+	 * @return The JAXB context for {@link Bindings} documents.
+	 */
+	static JAXBContext jaxb() throws JAXBException
+	{
+		JAXBContext jc = jaxb;
+		if (jc == null)
+			jaxb = jc = JAXBContext.newInstance(Bindings.class);
+		return jc;
+	}
+
+	private static String unquote(String etag)
+	{
+		return etag.substring(1, etag.length() - 1);
+	}
+
+	/**
+	 * @param p The provider
+	 * @param name A binding
+	 * @param location Where the provider keeps it
+	 * @return The current version of the binding, read again only when its modification time moved.
+	 * @throws IOException if the binding can't be read
+	 * @throws NamingException if the provider has been closed
+	 */
+	Version version(Provider p, String name, Object location) throws NamingException, IOException
+	{
+		long stamp = p.lastModified(location);
+		Version v = versions.get(name);
+		if (v != null && (p.isCacheable() || (stamp != 0L && v.stamp == stamp)))
+			return v;
+
+		byte[] data;
+		try (InputStream in = p.open(location))
+		{
+			data = in.readAllBytes();
+		}
+		v = new Version(stamp, etag(data), data, gzip(data));
+		versions.put(name, v);
+		return v;
+	}
+
+	/**
+	 * @param path The request path
+	 * @return The directory it names, empty for the top or ending with a slash, or null if it doesn't name one
+	 * below the server's path.
+	 */
+	private String prefix(String path)
+	{
+		if (!path.startsWith(this.path) && !(path + "/").equals(this.path))
+			return null;
+		if (!path.endsWith("/"))
+			return null;
+		String prefix = path.length() <= this.path.length() ? "" : path.substring(this.path.length());
+		if (prefix.isEmpty())
+			return prefix;
+		for (String segment : prefix.substring(0, prefix.length() - 1).split("/", -1))
+		{
+			if (segment.isEmpty() || segment.equals(".") || segment.equals(".."))
+				return null;
+		}
+		return prefix;
+	}
+
+	/**
+	 * @param path The request path
+	 * @return The binding it names, or null if it doesn't name one below the server's path.
+	 */
+	private String name(String path)
+	{
+		if (!path.startsWith(this.path) || !path.endsWith(Provider.FILE_EXTENSION))
+			return null;
+		String name = path.substring(this.path.length(), path.length() - Provider.FILE_EXTENSION.length());
+		if (name.isEmpty())
+			return null;
+		for (String segment : name.split("/", -1))
+		{
+			if (segment.isEmpty() || segment.equals(".") || segment.equals(".."))
+				return null;
+		}
+		return name;
+	}
+
+	private static boolean matches(String ifNoneMatch, String etag)
+	{
+		if (ifNoneMatch == null)
+			return false;
+		for (String tag : ifNoneMatch.split(","))
+		{
+			tag = tag.trim();
+			if (tag.startsWith("W/"))
+				tag = tag.substring(2);
+			if (tag.equals("*") || tag.equals(etag))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean acceptsGzip(String acceptEncoding)
+	{
+		if (acceptEncoding == null)
+			return false;
+		for (String coding : acceptEncoding.split(","))
+		{
+			String[] parts = coding.trim().split(";");
+			if (parts[0].trim().equalsIgnoreCase("gzip"))
+				return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+		}
+		return false;
+	}
+
+	/**
+	 * @param data A document
+	 * @return A quoted tag derived from a digest of its content.
+	 */
+	static String etag(byte[] data)
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+			StringBuilder sb = new StringBuilder(34).append('"');
+			for (int i = 0; i < 16; i++)
+			{
+				sb.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+			}
+			return sb.append('"').toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 2 + 64);
+		try (OutputStream gz = new GZIPOutputStream(bos))
+		{
+			gz.write(data);
+		}
+		return bos.toByteArray();
+	}
+}
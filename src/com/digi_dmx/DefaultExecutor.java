@@ -0,0 +1,158 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executor used for asynchronous lookups unless one is set on the context, and for asynchronous connection
+ * requests.  Virtual threads are used when the runtime provides them, otherwise a cached pool of daemon threads.
+ * Created on first use.  Other packages reach it through {@link XMLContext#getDefaultExecutor()}.  Code that can run
+ * on it guards I/O with locks rather than monitors, since blocking inside a monitor pins a virtual thread to its
+ * carrier; blocking calls into code that does use monitors go through {@link #unpinned(Callable)}.
+ * 
+ * @author Eric E Bardes
+ */
+final class DefaultExecutor
+{
+	private static final Executor INSTANCE = create();
+
+	/**
+	 * <tt>Thread.isVirtual()</tt>, Java 21 and later, otherwise null.
+	 */
+	private static final MethodHandle IS_VIRTUAL = lookupIsVirtual();
+
+	private DefaultExecutor()
+	{
+	}
+
+	/**
+	 * @return The shared executor
+	 */
+	static Executor get()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * Makes a blocking call that would pin a virtual thread, such as one that waits inside a monitor of the JDK's
+	 * HTTP server.  On a virtual thread the call runs on a platform thread while the caller waits unpinned,
+	 * otherwise it runs in place.
+	 * 
+	 * @param call The call
+	 * @return What the call returned
+	 * @throws Exception What the call threw, or InterruptedException if the caller was interrupted while waiting
+	 */
+	static <T> T unpinned(Callable<T> call) throws Exception
+	{
+		if (!isVirtual())
+			return call.call();
+		try
+		{
+			return Blocking.THREADS.submit(call).get();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception)
+				throw (Exception) cause;
+			throw (Error) cause;
+		}
+	}
+
+	private static boolean isVirtual()
+	{
+		if (IS_VIRTUAL == null)
+			return false;
+		try
+		{
+			return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+		}
+		catch (Throwable t)
+		{
+			// not thrown: isVirtual takes no arguments and declares nothing
+			return false;
+		}
+	}
+
+	private static MethodHandle lookupIsVirtual()
+	{
+		try
+		{
+			return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+		}
+		catch (ReflectiveOperationException | RuntimeException e)
+		{
+			return null;
+		}
+	}
+
+	private static ExecutorService daemons(final String prefix)
+	{
+		return Executors.newCachedThreadPool(new ThreadFactory()
+		{
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, prefix + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * The platform threads for {@link #unpinned(Callable)}, created on first use.
+	 */
+	private static final class Blocking
+	{
+		static final ExecutorService THREADS = daemons("EasyJNDI-blocking-");
+	}
+
+	private static Executor create()
+	{
+		try
+		{
+			/*
+			 * Java 21 and later. Looked up reflectively so the library still runs on older releases.
+			 */
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException | RuntimeException e)
+		{
+			return daemons("EasyJNDI-lookup-");
+		}
+	}
+}
@@ -0,0 +1,223 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Collection;
+import java.util.TreeSet;
+
+import javax.naming.ContextNotEmptyException;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+
+/**
+ * Bindings stored as files in a directory tree.  This is the default provider.
+ * 
+ * @author Eric E Bardes
+ */
+class FileProvider extends Provider
+{
+	private final File root;
+
+	/** set once the root directory is known to exist, saving a check per name */
+	private volatile boolean rooted;
+
+	FileProvider(URI uri)
+	{
+		super(uri);
+		this.root = new File(uri.getPath());
+	}
+
+	/**
+	 * @param name This name is used to construct a location by appending the name to the Provider URL and appending ".xml".  Directories are created as required.  
+	 * @return A file
+	 */
+	File makePath(String name)
+	{
+		File f = new File(root, name + FILE_EXTENSION);
+		File path = f.getParentFile();
+		if (path.equals(root))
+		{
+			if (!rooted)
+			{
+				if (!root.isDirectory())
+					root.mkdirs();
+				rooted = true;
+			}
+		}
+		else if (!path.isDirectory())
+		{
+			path.mkdirs();
+		}
+		return f;
+	}
+
+	/**
+	 * The file for a binding, which may not exist.  Nothing is created: reading a missing name leaves no directories
+	 * behind.
+	 */
+	@Override
+	Object locate(String name)
+	{
+		return new File(root, name + FILE_EXTENSION);
+	}
+
+	/**
+	 * As {@link #locate(String)}, creating the directories the file goes in.
+	 */
+	@Override
+	Object locateForWrite(String name)
+	{
+		return makePath(name);
+	}
+
+	@Override
+	boolean exists(String name)
+	{
+		return new File(root, name + FILE_EXTENSION).isFile();
+	}
+
+	@Override
+	boolean isDirectory(String name)
+	{
+		return new File(root, name).isDirectory();
+	}
+
+	/**
+	 * The child is a provider rooted at the resolved directory, so its names need no prefixing.
+	 */
+	@Override
+	Provider child(String name)
+	{
+		return new FileProvider(new File(root, name).toURI());
+	}
+
+	@Override
+	void createDirectory(String name) throws NamingException
+	{
+		File dir = new File(root, name);
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new NamingException("Unable to create " + dir);
+	}
+
+	@Override
+	void deleteDirectory(String name) throws NamingException
+	{
+		File dir = new File(root, name);
+		if (!dir.isDirectory())
+			return;
+		String[] contents = dir.list();
+		if (contents != null && contents.length > 0)
+			throw new ContextNotEmptyException(name);
+		if (!dir.delete())
+			throw new NamingException("Unable to delete " + dir);
+	}
+
+	@Override
+	InputStream open(Object location) throws IOException
+	{
+		return new FileInputStream((File) location);
+	}
+
+	@Override
+	long lastModified(Object location)
+	{
+		return location instanceof File ? ((File) location).lastModified() : 0L;
+	}
+
+	/**
+	 * The directory's modification time, which the file system moves whenever an entry is added, removed or
+	 * renamed.  A missing directory answers 0.
+	 */
+	@Override
+	long directoryModified(String prefix)
+	{
+		return new File(root, prefix).lastModified();
+	}
+
+	@Override
+	boolean isWritable()
+	{
+		return true;
+	}
+
+	@Override
+	OutputStream create(Object location) throws IOException
+	{
+		return new FileOutputStream((File) location);
+	}
+
+	@Override
+	void delete(String name)
+	{
+		File file = new File(root, name + FILE_EXTENSION);
+		if (file.exists())
+		{
+			file.delete();
+		}
+	}
+
+	@Override
+	void rename(String oldName, String newName) throws NamingException
+	{
+		File oldFile = new File(root, oldName + FILE_EXTENSION);
+		if (!oldFile.isFile())
+			throw new NameNotFoundException(oldName);
+		File newFile = makePath(newName);
+		
+		if (!oldFile.renameTo(newFile))
+			throw new NamingException("Unable to rename " + oldFile + " to " + newFile);
+	}
+
+	@Override
+	Collection<String> list(String prefix)
+	{
+		Collection<String> names = new TreeSet<String>();
+		File[] files = new File(root, prefix).listFiles();
+		if (files != null)
+		{
+			for (File f : files)
+			{
+				String n = f.getName();
+				if (f.isDirectory())
+					names.add(n + "/");
+				else if (n.endsWith(FILE_EXTENSION))
+					names.add(n.substring(0, n.length() - FILE_EXTENSION.length()));
+			}
+		}
+		return names;
+	}
+
+	@Override
+	String describe(Object location)
+	{
+		return location instanceof File ? ((File) location).toURI().toString() : super.describe(location);
+	}
+}
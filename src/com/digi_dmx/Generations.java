@@ -0,0 +1,527 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.naming.NamingException;
+import javax.naming.Reference;
+
+/**
+ * The versions of a namespace that {@link Snapshot}s read from.  Each generation is an immutable map from full
+ * name to parsed reference, so reading one takes no lock and no I/O.  Writes made through {@link XMLContext}
+ * publish a new generation; the previous one lives on only as long as a snapshot holds it and is then left
+ * to the garbage collector.
+ * 
+ * <p>A write changes one name, so its generation records only that name on top of the previous generation
+ * rather than copying the whole map; once {@value Generation#DEPTH} of these are stacked they are folded into
+ * a single map again.
+ * 
+ * <p>The first snapshot reads every binding.  After that, providers whose contents can change are polled
+ * while any snapshot is open: a binding whose modification time moved is read again, and a new generation is
+ * published once the modification times have held still for a whole interval.  A push that rewrites several
+ * files one after another therefore shows up as one generation rather than several half-done ones.  Polling
+ * stops when the last snapshot is closed, and the next snapshot checks the provider once before it is taken.
+ * 
+ * <p>Reading the provider, whether for the first snapshot, to catch up or to poll, happens outside the monitor.
+ * The generation it produces is only published if no write or change of provider came in while it was read;
+ * otherwise it is thrown away and read again.  Writes and snapshots that need no reading hold the monitor only
+ * long enough to swap a reference.
+ * 
+ * @author Eric E Bardes
+ */
+class Generations
+{
+	private static final Logger LOG = Logger.getLogger(Generations.class.getName());
+
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, "XMLContext-generations");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * One version of the namespace.
+	 */
+	static class Generation
+	{
+		/** how many single changes are stacked before they are folded into one map */
+		static final int DEPTH = 32;
+
+		final long number;
+
+		/** the generation this one changes, null if this one holds every name */
+		private final Generation base;
+
+		/** full name to reference; with a base, only the names changed, null where removed */
+		private final Map<String, Reference> references;
+
+		/** full name to modification time, 0 where the provider can't tell; with a base, as above */
+		private final Map<String, Long> stamps;
+
+		private final int depth;
+
+		Generation(long number, Map<String, Reference> references, Map<String, Long> stamps)
+		{
+			this.number = number;
+			this.base = null;
+			this.references = references;
+			this.stamps = stamps;
+			this.depth = 0;
+		}
+
+		private Generation(Generation base, Map<String, Reference> references, Map<String, Long> stamps)
+		{
+			this.number = base.number + 1;
+			this.base = base;
+			this.references = references;
+			this.stamps = stamps;
+			this.depth = base.depth + 1;
+		}
+
+		/**
+		 * @param name The full name
+		 * @return The reference bound to it in this generation, null if none.
+		 */
+		Reference reference(String name)
+		{
+			Generation g = this;
+			while (g.base != null && !g.references.containsKey(name))
+				g = g.base;
+			return g.references.get(name);
+		}
+
+		/**
+		 * @param removed The full name removed, or null
+		 * @param added The full name bound, or null
+		 * @param ref The reference bound to it
+		 * @param stamp Its modification time
+		 * @return The next generation, holding only the names changed.
+		 */
+		Generation change(String removed, String added, Reference ref, long stamp)
+		{
+			Map<String, Reference> refs = new HashMap<String, Reference>(4);
+			Map<String, Long> times = new HashMap<String, Long>(4);
+			if (removed != null)
+			{
+				refs.put(removed, null);
+				times.put(removed, null);
+			}
+			if (added != null)
+			{
+				refs.put(added, ref);
+				times.put(added, stamp);
+			}
+			Generation next = new Generation(this, refs, times);
+			return next.depth < DEPTH ? next : next.fold();
+		}
+
+		/**
+		 * @return This generation with every name in one map.
+		 */
+		Generation fold()
+		{
+			if (base == null)
+				return this;
+			List<Generation> chain = new ArrayList<Generation>(depth);
+			Generation g = this;
+			for (; g.base != null; g = g.base)
+				chain.add(g);
+			Map<String, Reference> refs = new HashMap<String, Reference>(g.references);
+			Map<String, Long> times = new HashMap<String, Long>(g.stamps);
+			for (int i = chain.size() - 1; i >= 0; i--)
+			{
+				Generation c = chain.get(i);
+				for (Entry<String, Reference> e : c.references.entrySet())
+				{
+					if (e.getValue() == null)
+					{
+						refs.remove(e.getKey());
+						times.remove(e.getKey());
+					}
+					else
+					{
+						refs.put(e.getKey(), e.getValue());
+						times.put(e.getKey(), c.stamps.get(e.getKey()));
+					}
+				}
+			}
+			return new Generation(number, Collections.unmodifiableMap(refs), Collections.unmodifiableMap(times));
+		}
+	}
+
+	private final XMLContext root;
+
+	private volatile Generation current;
+
+	/** the provider the current generation was read from */
+	private Provider provider;
+
+	private ScheduledFuture<?> poller;
+
+	/** the number of snapshots open */
+	private int open;
+
+	/** modification times seen by the last poll that haven't been published yet */
+	private Map<String, Long> settling;
+
+	/** counts writes and changes of provider, so a generation read before one isn't published after it */
+	private long changes;
+
+	/** held while a snapshot reads the provider, so others needing the same wait for it instead */
+	private final ReentrantLock loading = new ReentrantLock();
+
+	/**
+	 * @param root The root of the namespace
+	 */
+	Generations(XMLContext root)
+	{
+		this.root = root;
+	}
+
+	/**
+	 * Opens a snapshot, polling the provider until it and any others are released.  Reading the provider is done
+	 * outside the monitor, so writes and snapshots that need no reading aren't held up by it; the generation read
+	 * is only published if nothing else was published, and the provider wasn't changed, in the meantime.
+	 * 
+	 * @param p The provider of the root
+	 * @param interval How often to poll the provider for changes, in milliseconds.  Zero disables polling.
+	 * @return The current generation, read from the provider the first time and brought up to date if
+	 * nothing was polling it.
+	 * @throws NamingException if the provider can't be listed
+	 */
+	Generation open(Provider p, long interval) throws NamingException
+	{
+		boolean polled = !p.isCacheable() && interval > 0;
+		for (;;)
+		{
+			Generation g;
+			long c;
+			synchronized (this)
+			{
+				g = current;
+				c = changes;
+				if (g != null && !(polled && poller == null))
+					return opened(p, interval, polled);
+			}
+
+			/*
+			 * Either nothing has been read yet, or nobody watched the provider since the last snapshot was
+			 * closed.  Threads that find the same are queued rather than reading the provider alongside.
+			 */
+			loading.lock();
+			try
+			{
+				synchronized (this)
+				{
+					if (current != g || changes != c)
+						continue;
+				}
+				Map<String, Long> seen = new HashMap<String, Long>();
+				list(p, "", seen);
+				Generation next;
+				if (g == null)
+				{
+					Map<String, Reference> none = Collections.emptyMap();
+					Map<String, Long> unseen = Collections.emptyMap();
+					next = refresh(p, new Generation(0L, none, unseen), seen);
+				}
+				else
+				{
+					Generation f = g.fold();
+					next = seen.equals(f.stamps) ? f : refresh(p, f, seen);
+				}
+				synchronized (this)
+				{
+					if (current == g && changes == c)
+					{
+						current = next;
+						provider = p;
+						return opened(p, interval, polled);
+					}
+				}
+			}
+			finally
+			{
+				loading.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Counts a snapshot in and starts polling if it's the first to need it.
+	 * 
+	 * @return The current generation
+	 */
+	private Generation opened(Provider p, long interval, boolean polled)
+	{
+		open++;
+		if (polled && poller == null)
+		{
+			Poll poll = new Poll(this, p);
+			poll.future = TIMER.scheduleWithFixedDelay(poll, interval, interval, TimeUnit.MILLISECONDS);
+			poller = poll.future;
+		}
+		return current;
+	}
+
+	/**
+	 * Closes a snapshot.  Polling stops with the last one.
+	 */
+	synchronized void release()
+	{
+		if (--open > 0)
+			return;
+		open = 0;
+		settling = null;
+		if (poller != null)
+		{
+			poller.cancel(false);
+			poller = null;
+		}
+	}
+
+	/**
+	 * Publishes a binding written through the context.
+	 * 
+	 * @param name The full name
+	 * @param ref The reference written
+	 * @param stamp Its modification time
+	 */
+	synchronized void put(String name, Reference ref, long stamp)
+	{
+		change(null, name, ref, stamp);
+	}
+
+	/**
+	 * Publishes a binding removed through the context.
+	 * 
+	 * @param name The full name
+	 */
+	synchronized void remove(String name)
+	{
+		change(name, null, null, 0L);
+	}
+
+	/**
+	 * Publishes a rename made through the context as a single generation.
+	 * 
+	 * @param oldName The full name before
+	 * @param newName The full name after
+	 * @param ref The reference now bound to the new name
+	 * @param stamp Its modification time
+	 */
+	synchronized void move(String oldName, String newName, Reference ref, long stamp)
+	{
+		change(oldName, newName, ref, stamp);
+	}
+
+	private void change(String removed, String added, Reference ref, long stamp)
+	{
+		changes++;
+		Generation g = current;
+		if (g != null)
+			current = g.change(removed, added, ref, stamp);
+	}
+
+	/**
+	 * Forgets the namespace when the provider changes.  Snapshots already taken keep their generation.
+	 */
+	synchronized void clear()
+	{
+		changes++;
+		current = null;
+		provider = null;
+		settling = null;
+		if (poller != null)
+		{
+			poller.cancel(false);
+			poller = null;
+		}
+	}
+
+	/**
+	 * Compares the provider's modification times with the current generation's.
+	 * 
+	 * @param p The provider being polled
+	 * @throws NamingException if the provider can't be listed
+	 */
+	void poll(Provider p) throws NamingException
+	{
+		Map<String, Long> seen = new HashMap<String, Long>();
+		list(p, "", seen);
+
+		Generation g;
+		synchronized (this)
+		{
+			g = current;
+			if (p != provider || g == null)
+				return;
+			/*
+			 * Compare against one map, and keep it so the next poll needn't fold again.
+			 */
+			g = current = g.fold();
+			if (seen.equals(g.stamps))
+			{
+				settling = null;
+				return;
+			}
+			if (!seen.equals(settling))
+			{
+				/*
+				 * Still changing, or changed for the first time.  Wait for it to hold still.
+				 */
+				settling = seen;
+				return;
+			}
+			settling = null;
+		}
+
+		Generation next = refresh(p, g, seen);
+		synchronized (this)
+		{
+			if (p != provider || current != g)
+			{
+				/*
+				 * Written through the context or cleared while reading.  The next poll looks again straight away.
+				 */
+				if (p == provider && current != null)
+					settling = seen;
+				return;
+			}
+			current = next;
+		}
+		LOG.log(Level.FINE, "Published generation {0} of {1}", new Object[] { next.number, p.uri });
+	}
+
+	/**
+	 * @param p The provider
+	 * @param from The generation to start from, folded
+	 * @param seen The names now in the provider and their modification times
+	 * @return The next generation.  Only bindings that are new or whose modification time moved are read.
+	 * A binding that can't be read keeps its previous version.
+	 */
+	private Generation refresh(Provider p, Generation from, Map<String, Long> seen)
+	{
+		Map<String, Reference> refs = new HashMap<String, Reference>(from.references);
+		refs.keySet().retainAll(seen.keySet());
+		for (Entry<String, Long> e : seen.entrySet())
+		{
+			String name = e.getKey();
+			if (refs.containsKey(name) && e.getValue().equals(from.stamps.get(name)))
+				continue;
+			try
+			{
+				refs.put(name, root.readReference(p, name));
+			}
+			catch (Exception ex)
+			{
+				LOG.log(Level.WARNING, (refs.containsKey(name) ? "Keeping the previous version of " : "Leaving out ") + name, ex);
+			}
+		}
+		return new Generation(from.number + 1, Collections.unmodifiableMap(refs), Collections.unmodifiableMap(new HashMap<String, Long>(seen)));
+	}
+
+	private static void list(Provider p, String prefix, Map<String, Long> stamps) throws NamingException
+	{
+		try
+		{
+			for (String entry : p.list(prefix))
+			{
+				String name = prefix + entry;
+				if (entry.endsWith("/"))
+					list(p, name, stamps);
+				else
+					stamps.put(name, p.lastModified(p.locate(name)));
+			}
+		}
+		catch (NamingException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			NamingException ne = new NamingException("Unable to list " + p.uri);
+			ne.setRootCause(e);
+			throw ne;
+		}
+	}
+
+	/**
+	 * Polls on the shared thread.  The generations are only weakly held, so a context that is no longer used
+	 * stops being polled.
+	 */
+	private static class Poll implements Runnable
+	{
+		private final WeakReference<Generations> generations;
+
+		private final Provider provider;
+
+		private volatile ScheduledFuture<?> future;
+
+		Poll(Generations generations, Provider provider)
+		{
+			this.generations = new WeakReference<Generations>(generations);
+			this.provider = provider;
+		}
+
+		@Override
+		public void run()
+		{
+			Generations g = generations.get();
+			if (g == null)
+			{
+				future.cancel(false);
+				return;
+			}
+			try
+			{
+				g.poll(provider);
+			}
+			catch (NamingException e)
+			{
+				LOG.log(Level.WARNING, "Unable to poll " + provider.uri + " for changes", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,364 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.naming.InterruptedNamingException;
+import javax.naming.NamingException;
+
+/**
+ * Bindings fetched one at a time and kept for a time to live, by an {@link HttpProvider} given a <tt>ttl</tt>.
+ * 
+ * <p>A binding looked up since it was last fetched is fetched again in the background before it expires, with
+ * <tt>If-None-Match</tt> so an unchanged one costs a 304.  The refresh comes between {@link #REFRESH_AHEAD} and
+ * {@link #REFRESH_AHEAD} + {@link #JITTER} of the way through the time to live, picked at random each time, so
+ * nodes that started together drift apart instead of all asking the server at once.  Lookups of a binding in
+ * use are therefore answered from memory.  A binding nobody looked up is left to expire and is dropped, and the
+ * next lookup fetches it while the caller waits.  Lookups that miss the same name together share one fetch.
+ * 
+ * @author Eric E Bardes
+ */
+class HttpCache
+{
+	private static final Logger LOG = Logger.getLogger(HttpCache.class.getName());
+
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, "HttpProvider-refresh");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/** the share of the time to live after which a binding in use is fetched again */
+	static final double REFRESH_AHEAD = 0.75;
+
+	/** the share of the time to live the refreshes are spread over */
+	static final double JITTER = 0.15;
+
+	/**
+	 * A binding as last fetched.
+	 */
+	static class Entry
+	{
+		final String name;
+
+		/** the quoted entity tag, null if the server sent none */
+		final String etag;
+
+		final byte[] data;
+
+		/** when the binding was fetched or found unchanged */
+		final long fetched;
+
+		/** when this version was first fetched */
+		final long changed;
+
+		/** when the binding was last looked up, 0 if it hasn't been since it was fetched */
+		volatile long used;
+
+		Entry(String name, String etag, byte[] data, long fetched, long changed)
+		{
+			this.name = name;
+			this.etag = etag;
+			this.data = data;
+			this.fetched = fetched;
+			this.changed = changed;
+		}
+	}
+
+	private final URI base;
+
+	/** milliseconds a binding is kept */
+	private final long ttl;
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	/** the fetch under way for each name a lookup missed */
+	private final ConcurrentHashMap<String, CompletableFuture<Entry>> fetching = new ConcurrentHashMap<String, CompletableFuture<Entry>>();
+
+	private volatile boolean closed;
+
+	/**
+	 * @param base The provider URL, ending with a slash
+	 * @param ttl Milliseconds a binding is kept
+	 */
+	HttpCache(URI base, long ttl)
+	{
+		this.base = base;
+		this.ttl = ttl;
+	}
+
+	/**
+	 * @param name A binding name
+	 * @return The binding, fetched only when it isn't held or has expired, or null if the server doesn't have it.
+	 * @throws NamingException if the binding had to be fetched and the server couldn't be reached
+	 */
+	Entry get(String name) throws NamingException
+	{
+		long now = System.currentTimeMillis();
+		Entry e = entries.get(name);
+		if (e != null && now - e.fetched < ttl)
+		{
+			e.used = now;
+			return e;
+		}
+
+		CompletableFuture<Entry> mine = new CompletableFuture<Entry>();
+		CompletableFuture<Entry> running = fetching.putIfAbsent(name, mine);
+		try
+		{
+			if (running != null)
+				return running.get();
+			try
+			{
+				/*
+				 * A fetch that finished since the entry was read above has left a fresh one.
+				 */
+				Entry current = entries.get(name);
+				if (current != null && current != e && System.currentTimeMillis() - current.fetched < ttl)
+					e = current;
+				else
+					e = fetch(name, current);
+				mine.complete(e);
+				return e;
+			}
+			catch (IOException | RuntimeException ex)
+			{
+				mine.completeExceptionally(ex);
+				throw ex;
+			}
+			finally
+			{
+				fetching.remove(name, mine);
+			}
+		}
+		catch (ExecutionException ex)
+		{
+			if (ex.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ex.getCause();
+			NamingException ne = new NamingException("Unable to reach " + base);
+			ne.setRootCause(ex.getCause());
+			throw ne;
+		}
+		catch (IOException ex)
+		{
+			NamingException ne = new NamingException("Unable to reach " + base);
+			ne.setRootCause(ex);
+			throw ne;
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedNamingException("Interrupted waiting for " + name + " from " + base);
+		}
+	}
+
+	/**
+	 * @param name A binding name
+	 * @return The binding as held, without fetching it, or null.
+	 */
+	Entry peek(String name)
+	{
+		return entries.get(name);
+	}
+
+	/**
+	 * @param e A binding as handed out earlier
+	 * @return When the binding's current version was first fetched, 0 if it's no longer held.
+	 */
+	long lastModified(Entry e)
+	{
+		Entry current = entries.get(e.name);
+		return current == null ? 0L : current.changed;
+	}
+
+	/**
+	 * Fetches a binding and schedules its refresh.
+	 * 
+	 * @param name The binding
+	 * @param previous The copy held, revalidated rather than fetched again when it is unchanged, or null.
+	 * @return The binding, or null if the server doesn't have it.
+	 */
+	private Entry fetch(String name, Entry previous) throws IOException
+	{
+		HttpMirror.Response r = HttpMirror.get(base.resolve(name + Provider.FILE_EXTENSION), previous != null ? previous.etag : null);
+		long now = System.currentTimeMillis();
+		if (r.status == HttpURLConnection.HTTP_NOT_FOUND)
+		{
+			entries.remove(name);
+			return null;
+		}
+
+		Entry e;
+		if (r.status == HttpURLConnection.HTTP_NOT_MODIFIED && previous != null)
+			e = new Entry(name, previous.etag, previous.data, now, previous.changed);
+		else
+			e = new Entry(name, r.etag, r.data, now, now);
+		held(e);
+		return e;
+	}
+
+	/**
+	 * Records a binding written through the provider.
+	 * 
+	 * @param name The binding
+	 * @param etag Its quoted tag as answered by the server, or null if it didn't say.
+	 * @param data The document written
+	 */
+	void written(String name, String etag, byte[] data)
+	{
+		long now = System.currentTimeMillis();
+		held(new Entry(name, etag, data, now, now));
+	}
+
+	/**
+	 * Records a binding removed through the provider.
+	 * 
+	 * @param name The binding
+	 */
+	void removed(String name)
+	{
+		entries.remove(name);
+	}
+
+	/**
+	 * Stops refreshing and drops what is held.
+	 */
+	void close()
+	{
+		closed = true;
+		entries.clear();
+	}
+
+	private void held(Entry e)
+	{
+		if (closed)
+			return;
+		entries.put(e.name, e);
+		TIMER.schedule(new Tick(this, e), refreshDelay(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return Milliseconds from a fetch to the tick that refreshes or drops the binding, picked at random between
+	 *         {@link #REFRESH_AHEAD} and {@link #REFRESH_AHEAD} + {@link #JITTER} of the time to live.
+	 */
+	long refreshDelay()
+	{
+		return (long) (ttl * (REFRESH_AHEAD + ThreadLocalRandom.current().nextDouble() * JITTER));
+	}
+
+	/**
+	 * Called shortly before a binding expires.  One in use is fetched again, one that isn't is dropped when it
+	 * expires.
+	 * 
+	 * @param e The binding as held when the tick was scheduled
+	 */
+	private void tick(final Entry e)
+	{
+		if (closed || entries.get(e.name) != e)
+			return;
+
+		long left = e.fetched + ttl - System.currentTimeMillis();
+		if (e.used <= e.fetched)
+		{
+			if (left > 0)
+			{
+				TIMER.schedule(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						entries.remove(e.name, e);
+					}
+				}, left, TimeUnit.MILLISECONDS);
+			}
+			else
+			{
+				entries.remove(e.name, e);
+			}
+			return;
+		}
+
+		DefaultExecutor.get().execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (closed || entries.get(e.name) != e)
+					return;
+				try
+				{
+					fetch(e.name, e);
+				}
+				catch (IOException | RuntimeException ex)
+				{
+					LOG.log(Level.FINE, "Unable to refresh " + e.name + " from " + base + ", it expires as held", ex);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Runs a tick on the shared thread.  The cache is only weakly held, so one that is no longer used stops
+	 * being refreshed.
+	 */
+	private static class Tick implements Runnable
+	{
+		private final WeakReference<HttpCache> cache;
+
+		private final Entry entry;
+
+		Tick(HttpCache cache, Entry entry)
+		{
+			this.cache = new WeakReference<HttpCache>(cache);
+			this.entry = entry;
+		}
+
+		@Override
+		public void run()
+		{
+			HttpCache c = cache.get();
+			if (c != null)
+				c.tick(entry);
+		}
+	}
+}
@@ -0,0 +1,482 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import javax.naming.NamingException;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import com.digi_dmx.gen.Binding;
+import com.digi_dmx.gen.Bindings;
+
+/**
+ * A copy of everything a {@link ContextServer} publishes below a provider URL, kept by an {@link HttpProvider}
+ * asked to <tt>sync</tt>.  The whole namespace is pulled in one request on first use.  After that the manifest
+ * is polled with <tt>If-None-Match</tt>, so an unchanged namespace costs one 304, and only the bindings whose
+ * version moved are fetched again.  Lookups are served from memory and never wait on the network.  When a
+ * refresh fails the copy already held is kept.
+ * 
+ * @author Eric E Bardes
+ */
+class HttpMirror
+{
+	private static final Logger LOG = Logger.getLogger(HttpMirror.class.getName());
+
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, "HttpProvider-sync");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/** changed bindings beyond which a refresh pulls the whole namespace again, the least it will allow */
+	private static final int REFETCH_LIMIT = 8;
+
+	/**
+	 * A binding as last fetched.
+	 */
+	static class Entry
+	{
+		final String name;
+
+		final String version;
+
+		final byte[] data;
+
+		/** when the mirror first saw this version */
+		final long changed;
+
+		Entry(String name, String version, byte[] data, long changed)
+		{
+			this.name = name;
+			this.version = version;
+			this.data = data;
+			this.changed = changed;
+		}
+	}
+
+	/**
+	 * The namespace at one version, never changed once published.
+	 */
+	private static class State
+	{
+		final String version;
+
+		final Map<String, Entry> entries;
+
+		final NameIndex<Entry> index;
+
+		State(String version, Map<String, Entry> entries)
+		{
+			this.version = version;
+			this.entries = entries;
+			this.index = new NameIndex<Entry>();
+			for (Entry e : entries.values())
+			{
+				index.add(e.name, e);
+			}
+		}
+	}
+
+	private final URI base;
+
+	/** seconds between refreshes, 0 for none */
+	private final long refresh;
+
+	private volatile State state;
+
+	/** held while the state is pulled or replaced */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private ScheduledFuture<?> future;
+
+	/**
+	 * @param base The provider URL, ending with a slash
+	 * @param refresh Seconds between refreshes, 0 to pull once
+	 */
+	HttpMirror(URI base, long refresh)
+	{
+		this.base = base;
+		this.refresh = refresh;
+	}
+
+	private State state() throws NamingException
+	{
+		State s = state;
+		if (s == null)
+		{
+			lock.lock();
+			try
+			{
+				s = state;
+				if (s == null)
+				{
+					try
+					{
+						s = pull(null);
+					}
+					catch (IOException | JAXBException e)
+					{
+						NamingException ne = new NamingException("Unable to reach " + base);
+						ne.setRootCause(e);
+						throw ne;
+					}
+					state = s;
+					if (refresh > 0)
+					{
+						Refresh r = new Refresh(this);
+						r.future = TIMER.scheduleWithFixedDelay(r, refresh, refresh, TimeUnit.SECONDS);
+						future = r.future;
+					}
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * @param name A binding name
+	 * @return The binding or null if the namespace doesn't have it.
+	 * @throws NamingException if the namespace can't be pulled
+	 */
+	Entry get(String name) throws NamingException
+	{
+		return state().entries.get(name);
+	}
+
+	boolean isDirectory(String name) throws NamingException
+	{
+		return state().index.isDirectory(name);
+	}
+
+	Collection<String> list(String prefix) throws NamingException
+	{
+		return state().index.list(prefix);
+	}
+
+	/**
+	 * @param e A binding as handed out earlier
+	 * @return When the mirror first saw the binding's current version, 0 if it's gone.
+	 */
+	long lastModified(Entry e)
+	{
+		State s = state;
+		Entry current = s == null ? null : s.entries.get(e.name);
+		return current == null ? 0L : current.changed;
+	}
+
+	/**
+	 * Polls the manifest and fetches what changed.
+	 * 
+	 * @throws IOException if the server can't be reached
+	 * @throws JAXBException if a document can't be read
+	 */
+	void refresh() throws IOException, JAXBException
+	{
+		State s = state;
+		Response r = get(base.resolve("?" + ContextServer.MANIFEST), "\"" + s.version + "\"");
+		if (r.status == HttpURLConnection.HTTP_NOT_MODIFIED)
+			return;
+		if (r.data == null)
+			throw new IOException(base + " doesn't publish a manifest");
+		Bindings manifest = (Bindings) unmarshaller().unmarshal(new ByteArrayInputStream(r.data));
+
+		List<Binding> changed = new ArrayList<Binding>();
+		for (Binding b : manifest.getBinding())
+		{
+			Entry e = s.entries.get(b.getName());
+			if (e == null || !e.version.equals(b.getVersion()))
+				changed.add(b);
+		}
+		if (changed.size() > Math.max(REFETCH_LIMIT, s.entries.size() / 2))
+		{
+			publish(s, pull(s));
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		Map<String, Entry> entries = new HashMap<String, Entry>();
+		for (Binding b : manifest.getBinding())
+		{
+			Entry e = s.entries.get(b.getName());
+			if (e != null)
+				entries.put(b.getName(), e);
+		}
+		for (Binding b : changed)
+		{
+			Response one = get(base.resolve(b.getName() + Provider.FILE_EXTENSION), null);
+			if (one.status == HttpURLConnection.HTTP_NOT_FOUND)
+			{
+				entries.remove(b.getName());
+				continue;
+			}
+			String version = one.etag != null ? one.etag.replace("\"", "") : b.getVersion();
+			entries.put(b.getName(), new Entry(b.getName(), version, one.data, now));
+		}
+		publish(s, new State(manifest.getVersion(), Collections.unmodifiableMap(entries)));
+		LOG.log(Level.FINE, "Fetched {0} changed bindings from {1}", new Object[] { changed.size(), base });
+	}
+
+	/**
+	 * @param from The state a refresh started from
+	 * @param next The refreshed state, dropped if a write got in first.  The next refresh catches up.
+	 */
+	private void publish(State from, State next)
+	{
+		lock.lock();
+		try
+		{
+			if (state == from)
+				state = next;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Records a binding written through the provider, so lookups see it before the next refresh.
+	 * 
+	 * @param name The binding
+	 * @param version Its version as answered by the server, or null if it didn't say.
+	 * @param data The document written
+	 */
+	void written(String name, String version, byte[] data)
+	{
+		lock.lock();
+		try
+		{
+			State s = state;
+			if (s == null)
+				return;
+			Map<String, Entry> entries = new HashMap<String, Entry>(s.entries);
+			entries.put(name, new Entry(name, version != null ? version : "", data, System.currentTimeMillis()));
+			state = new State(s.version, Collections.unmodifiableMap(entries));
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Records a binding removed through the provider.
+	 * 
+	 * @param name The binding
+	 */
+	void removed(String name)
+	{
+		lock.lock();
+		try
+		{
+			State s = state;
+			if (s == null || !s.entries.containsKey(name))
+				return;
+			Map<String, Entry> entries = new HashMap<String, Entry>(s.entries);
+			entries.remove(name);
+			state = new State(s.version, Collections.unmodifiableMap(entries));
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Pulls the whole namespace in one request.
+	 * 
+	 * @param previous The state to keep unchanged versions from, or null.
+	 * @return The new state
+	 */
+	private State pull(State previous) throws IOException, JAXBException
+	{
+		Response r = get(base.resolve("?" + ContextServer.BULK), null);
+		if (r.data == null)
+			throw new IOException(base + " doesn't publish its bindings in bulk");
+		JAXBContext jc = ContextServer.jaxb();
+		Bindings doc = (Bindings) jc.createUnmarshaller().unmarshal(new ByteArrayInputStream(r.data));
+		Marshaller m = jc.createMarshaller();
+		m.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+
+		long now = System.currentTimeMillis();
+		Map<String, Entry> entries = new HashMap<String, Entry>();
+		for (Binding b : doc.getBinding())
+		{
+			Entry e = previous == null ? null : previous.entries.get(b.getName());
+			if (e == null || !e.version.equals(b.getVersion()))
+			{
+				ByteArrayOutputStream bos = new ByteArrayOutputStream();
+				m.marshal(b.getContext(), bos);
+				e = new Entry(b.getName(), b.getVersion(), bos.toByteArray(), now);
+			}
+			entries.put(b.getName(), e);
+		}
+		return new State(doc.getVersion(), Collections.unmodifiableMap(entries));
+	}
+
+	private static Unmarshaller unmarshaller() throws JAXBException
+	{
+		return ContextServer.jaxb().createUnmarshaller();
+	}
+
+	/**
+	 * A response read whole.
+	 */
+	static class Response
+	{
+		final int status;
+
+		final String etag;
+
+		final byte[] data;
+
+		Response(int status, String etag, byte[] data)
+		{
+			this.status = status;
+			this.etag = etag;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * @param uri What to fetch
+	 * @param ifNoneMatch The entity tag already held, or null
+	 * @return The response.  200, 304 and 404 are returned, anything else is thrown.
+	 * @throws IOException if the server can't be reached or answers with an error
+	 */
+	static Response get(URI uri, String ifNoneMatch) throws IOException
+	{
+		HttpURLConnection conn = (HttpURLConnection) uri.toURL().openConnection();
+		conn.setRequestProperty("Accept-Encoding", "gzip");
+		if (ifNoneMatch != null)
+			conn.setRequestProperty("If-None-Match", ifNoneMatch);
+		int status = conn.getResponseCode();
+		if (status == HttpURLConnection.HTTP_NOT_MODIFIED || status == HttpURLConnection.HTTP_NOT_FOUND)
+		{
+			InputStream err = conn.getErrorStream();
+			if (err != null)
+				err.close();
+			return new Response(status, null, null);
+		}
+		if (status != HttpURLConnection.HTTP_OK)
+		{
+			conn.disconnect();
+			throw new IOException(uri + " answered " + status);
+		}
+
+		try (InputStream in = "gzip".equalsIgnoreCase(conn.getContentEncoding()) ? new GZIPInputStream(conn.getInputStream()) : conn.getInputStream())
+		{
+			return new Response(status, conn.getHeaderField("ETag"), in.readAllBytes());
+		}
+	}
+
+	/**
+	 * Stops refreshing.
+	 */
+	void close()
+	{
+		lock.lock();
+		try
+		{
+			if (future != null)
+			{
+				future.cancel(false);
+				future = null;
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Refreshes on the shared thread.  The mirror is only weakly held, so one that is no longer used stops
+	 * being refreshed.
+	 */
+	private static class Refresh implements Runnable
+	{
+		private final WeakReference<HttpMirror> mirror;
+
+		private volatile ScheduledFuture<?> future;
+
+		Refresh(HttpMirror mirror)
+		{
+			this.mirror = new WeakReference<HttpMirror>(mirror);
+		}
+
+		@Override
+		public void run()
+		{
+			HttpMirror m = mirror.get();
+			if (m == null)
+			{
+				future.cancel(false);
+				return;
+			}
+			try
+			{
+				m.refresh();
+			}
+			catch (IOException | JAXBException | RuntimeException e)
+			{
+				LOG.log(Level.WARNING, "Unable to refresh " + m.base + ", keeping the bindings already held", e);
+			}
+		}
+	}
+}
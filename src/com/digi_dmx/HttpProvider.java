@@ -0,0 +1,613 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import javax.naming.ConfigurationException;
+import javax.naming.InterruptedNamingException;
+import javax.naming.NameAlreadyBoundException;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+import javax.naming.OperationNotSupportedException;
+
+/**
+ * Bindings fetched from a web server.  The name is resolved against the provider URL and ".xml" is appended.
+ * 
+ * <p>Bindings are written with PUT and removed with DELETE, which a {@link ContextServer} accepts when it is
+ * writable.  A binding read or written earlier is written back with <tt>If-Match</tt> and the tag it was last
+ * seen with, so a change someone else made in between fails the write with 412 instead of being lost; a binding
+ * not seen yet, or no longer held, is written unconditionally.  A rebind replaces the binding whatever happened
+ * to it: on 412 it asks for the current tag and tries once more.  A {@link Batch} is sent over up to
+ * {@link #PIPELINE} persistent connections at once, and its binds of new names carry <tt>If-None-Match: *</tt>.
+ * 
+ * <p>Against a {@link ContextServer}, a provider URL ending in <tt>?sync</tt> or <tt>?sync=</tt><i>seconds</i>
+ * keeps a copy of the whole namespace instead, see {@link HttpMirror}.  The copy is refreshed every 30 seconds
+ * unless told otherwise, <tt>sync=0</tt> pulls it once.  A synced namespace can also be listed and searched.
+ * 
+ * <p>Otherwise every lookup asks the server, unless the provider URL ends in <tt>?ttl=</tt><i>seconds</i>: each
+ * binding is then kept that long and bindings in use are fetched again in the background before they expire, see
+ * {@link HttpCache}.
+ * 
+ * @author Eric E Bardes
+ */
+class HttpProvider extends Provider
+{
+	/** seconds between refreshes of a synced namespace unless the provider URL says otherwise */
+	private static final long DEFAULT_REFRESH = 30L;
+
+	/** the most writes of a batch in flight at once */
+	static final int PIPELINE = 16;
+
+	/** sends batches, keeping its connections open between them */
+	private static final HttpClient CLIENT = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+	/** the provider URL without its query */
+	private final URI base;
+
+	/** the copy of the namespace, null unless syncing */
+	private final HttpMirror mirror;
+
+	/** the bindings fetched lately, null unless given a time to live */
+	private final HttpCache cache;
+
+	/** the entity tags bindings were last read or written with, by name, unless synced or held */
+	private final ConcurrentHashMap<String, String> etags = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * Where a binding is written.
+	 */
+	private static class Target
+	{
+		final String name;
+
+		final URI uri;
+
+		/** true to replace the binding even if it changed since it was seen */
+		final boolean replace;
+
+		Target(String name, URI uri, boolean replace)
+		{
+			this.name = name;
+			this.uri = uri;
+			this.replace = replace;
+		}
+
+		@Override
+		public String toString()
+		{
+			return uri.toString();
+		}
+	}
+
+	/**
+	 * @param uri The provider URL
+	 * @throws ConfigurationException if <tt>sync</tt> or <tt>ttl</tt> isn't a number
+	 */
+	HttpProvider(URI uri) throws ConfigurationException
+	{
+		super(uri);
+		String s = uri.toString();
+		int q = s.indexOf('?');
+		this.base = q < 0 ? uri : URI.create(s.substring(0, q));
+
+		HttpMirror m = null;
+		long ttl = 0L;
+		String query = uri.getQuery();
+		if (query != null)
+		{
+			for (String param : query.split("&"))
+			{
+				if (param.equals("sync"))
+					m = new HttpMirror(base, DEFAULT_REFRESH);
+				else if (param.startsWith("sync="))
+					m = new HttpMirror(base, seconds("sync", param.substring(5)));
+				else if (param.startsWith("ttl="))
+					ttl = seconds("ttl", param.substring(4));
+			}
+		}
+		this.mirror = m;
+		this.cache = m == null && ttl > 0 ? new HttpCache(base, TimeUnit.SECONDS.toMillis(ttl)) : null;
+	}
+
+	private static long seconds(String param, String value) throws ConfigurationException
+	{
+		try
+		{
+			return Long.parseLong(value);
+		}
+		catch (NumberFormatException e)
+		{
+			ConfigurationException ce = new ConfigurationException(param + " must be a number of seconds, not " + value);
+			ce.setRootCause(e);
+			throw ce;
+		}
+	}
+
+	@Override
+	Object locate(String name) throws NamingException
+	{
+		if (mirror != null)
+		{
+			HttpMirror.Entry e = mirror.get(name);
+			if (e == null)
+				throw new NameNotFoundException(name);
+			return e;
+		}
+		if (cache != null)
+		{
+			HttpCache.Entry e = cache.get(name);
+			if (e == null)
+				throw new NameNotFoundException(name);
+			return e;
+		}
+		return base.resolve(name + FILE_EXTENSION);
+	}
+
+	/**
+	 * Asks the server with a HEAD request, or looks in the copy of a synced namespace or the bindings held.
+	 */
+	@Override
+	boolean exists(String name) throws NamingException
+	{
+		if (mirror != null)
+			return mirror.get(name) != null;
+		if (cache != null)
+			return cache.get(name) != null;
+		try
+		{
+			HttpURLConnection conn = (HttpURLConnection) base.resolve(name + FILE_EXTENSION).toURL().openConnection();
+			conn.setRequestMethod("HEAD");
+			int status = conn.getResponseCode();
+			conn.disconnect();
+			return status == HttpURLConnection.HTTP_OK;
+		}
+		catch (IOException e)
+		{
+			NamingException ne = new NamingException("Unable to reach " + uri);
+			ne.setRootCause(e);
+			throw ne;
+		}
+	}
+
+	@Override
+	boolean isDirectory(String name) throws NamingException
+	{
+		return mirror != null && mirror.isDirectory(name);
+	}
+
+	/**
+	 * A synced namespace, or the bindings held, are shared with its subcontexts.
+	 */
+	@Override
+	Provider child(String name)
+	{
+		if (mirror != null || cache != null)
+			return super.child(name);
+		try
+		{
+			return new HttpProvider(base.resolve(name + "/"));
+		}
+		catch (ConfigurationException e)
+		{
+			// the base has no query to get wrong
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Remembers the tag the binding was read with, for a later write, and forgets it when the binding is gone.
+	 */
+	@Override
+	InputStream open(Object location) throws NamingException, IOException
+	{
+		if (location instanceof HttpMirror.Entry)
+			return new ByteArrayInputStream(((HttpMirror.Entry) location).data);
+		if (location instanceof HttpCache.Entry)
+			return new ByteArrayInputStream(((HttpCache.Entry) location).data);
+		URI u = (URI) location;
+		String name = base.relativize(u).getPath();
+		name = name.endsWith(FILE_EXTENSION) ? name.substring(0, name.length() - FILE_EXTENSION.length()) : null;
+		HttpURLConnection conn = (HttpURLConnection) u.toURL().openConnection();
+		InputStream in;
+		try
+		{
+			in = conn.getInputStream();
+		}
+		catch (FileNotFoundException e)
+		{
+			if (name == null)
+				throw e;
+			etags.remove(name);
+			NameNotFoundException ne = new NameNotFoundException(name);
+			ne.setRootCause(e);
+			throw ne;
+		}
+		String etag = conn.getHeaderField("ETag");
+		if (name != null)
+		{
+			if (etag != null)
+				etags.put(name, etag);
+			else
+				etags.remove(name);
+		}
+		return in;
+	}
+
+	@Override
+	boolean isWritable()
+	{
+		return true;
+	}
+
+	@Override
+	Object locateForWrite(String name)
+	{
+		return new Target(name, base.resolve(name + FILE_EXTENSION), false);
+	}
+
+	@Override
+	Object locateForReplace(String name)
+	{
+		return new Target(name, base.resolve(name + FILE_EXTENSION), true);
+	}
+
+	/**
+	 * @return A stream whose content is sent with PUT when it is closed.
+	 */
+	@Override
+	OutputStream create(Object location)
+	{
+		return new Put((Target) location);
+	}
+
+	/**
+	 * Drops the document instead of sending it.
+	 */
+	@Override
+	void abort(OutputStream os)
+	{
+		if (os instanceof Put)
+			((Put) os).abort();
+		else
+			super.abort(os);
+	}
+
+	/**
+	 * A document buffered until it is closed, then sent with PUT.
+	 */
+	private class Put extends ByteArrayOutputStream
+	{
+		private final Target target;
+
+		/** set once the document was sent or dropped */
+		private boolean done;
+
+		Put(Target target)
+		{
+			this.target = target;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			if (done)
+				return;
+			done = true;
+			put(target, toByteArray());
+		}
+
+		/**
+		 * Drops the document, so closing the stream sends nothing.
+		 */
+		void abort()
+		{
+			done = true;
+			reset();
+		}
+	}
+
+	private void put(Target t, byte[] doc) throws IOException
+	{
+		HttpURLConnection conn = put(t.uri, doc, ifMatch(t.name));
+		if (t.replace && conn.getResponseCode() == HttpURLConnection.HTTP_PRECON_FAILED)
+		{
+			/*
+			 * Changed since it was seen here.  Replace what is there now, or lose to whoever changes it next.
+			 */
+			conn.disconnect();
+			conn = put(t.uri, doc, current(t.uri));
+		}
+		finished(t.name, conn.getResponseCode(), conn.getHeaderField("ETag"), doc);
+		conn.disconnect();
+	}
+
+	/**
+	 * @param u Where to send the document
+	 * @param doc The document
+	 * @param ifMatch The tag the binding must still have, <tt>*</tt> for one that must not exist yet, or null
+	 * @return The connection, with the request sent.
+	 */
+	private static HttpURLConnection put(URI u, byte[] doc, String ifMatch) throws IOException
+	{
+		HttpURLConnection conn = (HttpURLConnection) u.toURL().openConnection();
+		conn.setRequestMethod("PUT");
+		conn.setDoOutput(true);
+		conn.setFixedLengthStreamingMode(doc.length);
+		conn.setRequestProperty("Content-Type", "application/xml");
+		if (ifMatch != null)
+			conn.setRequestProperty(ifMatch.equals("*") ? "If-None-Match" : "If-Match", ifMatch);
+		try (OutputStream os = conn.getOutputStream())
+		{
+			os.write(doc);
+		}
+		return conn;
+	}
+
+	/**
+	 * Fetches the binding rather than asking with HEAD, which leaves a kept-alive connection the server has
+	 * closed for the PUT that follows.
+	 * 
+	 * @param u A binding's location
+	 * @return Its tag as the server has it now, or <tt>*</tt> if it doesn't have it.
+	 */
+	private static String current(URI u) throws IOException
+	{
+		HttpMirror.Response r = HttpMirror.get(u, null);
+		return r.status == HttpURLConnection.HTTP_NOT_FOUND ? "*" : r.etag;
+	}
+
+	@Override
+	void delete(String name) throws NamingException
+	{
+		try
+		{
+			HttpURLConnection conn = (HttpURLConnection) base.resolve(name + FILE_EXTENSION).toURL().openConnection();
+			conn.setRequestMethod("DELETE");
+			String ifMatch = ifMatch(name);
+			if (ifMatch != null)
+				conn.setRequestProperty("If-Match", ifMatch);
+			finished(name, conn.getResponseCode(), null, null);
+			conn.disconnect();
+		}
+		catch (IOException e)
+		{
+			NamingException ne = new NamingException("Unable to unbind " + name + " from " + uri);
+			ne.setRootCause(e);
+			throw ne;
+		}
+	}
+
+	/**
+	 * Sends the writes concurrently, at most {@link #PIPELINE} at a time, over connections that are kept open
+	 * and reused from one write to the next.
+	 */
+	@Override
+	Map<String, Exception> writeAll(Map<String, byte[]> docs, Set<String> fresh) throws NamingException
+	{
+		final Map<String, Exception> failed = new ConcurrentHashMap<String, Exception>();
+		final Semaphore inFlight = new Semaphore(PIPELINE);
+		List<CompletableFuture<Void>> sent = new ArrayList<CompletableFuture<Void>>(docs.size());
+		try
+		{
+			for (Map.Entry<String, byte[]> d : docs.entrySet())
+			{
+				final String name = d.getKey();
+				final byte[] doc = d.getValue();
+				HttpRequest.Builder b = HttpRequest.newBuilder(base.resolve(name + FILE_EXTENSION));
+				if (doc == null)
+					b.DELETE();
+				else
+					b.PUT(HttpRequest.BodyPublishers.ofByteArray(doc)).header("Content-Type", "application/xml");
+				final boolean create = doc != null && fresh.contains(name);
+				try
+				{
+					String ifMatch = create ? null : ifMatch(name);
+					if (create)
+						b.header("If-None-Match", "*");
+					else if (ifMatch != null)
+						b.header("If-Match", ifMatch);
+				}
+				catch (IOException e)
+				{
+					failed.put(name, e);
+					continue;
+				}
+
+				inFlight.acquire();
+				sent.add(CLIENT.sendAsync(b.build(), HttpResponse.BodyHandlers.discarding()).handle(new BiFunction<HttpResponse<Void>, Throwable, Void>()
+				{
+					@Override
+					public Void apply(HttpResponse<Void> response, Throwable t)
+					{
+						inFlight.release();
+						try
+						{
+							if (t != null)
+								throw new IOException("Unable to reach " + uri, t);
+							if (create && response.statusCode() == HttpURLConnection.HTTP_PRECON_FAILED)
+								failed.put(name, new NameAlreadyBoundException(name));
+							else
+								finished(name, response.statusCode(), response.headers().firstValue("ETag").orElse(null), doc);
+						}
+						catch (IOException e)
+						{
+							failed.put(name, e);
+						}
+						return null;
+					}
+				}));
+			}
+			CompletableFuture.allOf(sent.toArray(new CompletableFuture<?>[sent.size()])).join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			InterruptedNamingException ne = new InterruptedNamingException("Interrupted sending a batch to " + uri);
+			ne.initCause(e);
+			throw ne;
+		}
+
+		Map<String, Exception> ordered = new LinkedHashMap<String, Exception>();
+		for (String name : docs.keySet())
+		{
+			if (failed.containsKey(name))
+				ordered.put(name, failed.get(name));
+		}
+		return ordered;
+	}
+
+	/**
+	 * @param name A binding
+	 * @return The tag it was last seen with, or null if it hasn't been or is no longer held.
+	 */
+	private String ifMatch(String name) throws IOException
+	{
+		if (mirror != null)
+		{
+			try
+			{
+				HttpMirror.Entry e = mirror.get(name);
+				return e == null || e.version.isEmpty() ? null : "\"" + e.version + "\"";
+			}
+			catch (NamingException e)
+			{
+				throw new IOException(e);
+			}
+		}
+		if (cache != null)
+		{
+			/*
+			 * An expired binding takes its tag with it.
+			 */
+			HttpCache.Entry e = cache.peek(name);
+			return e == null ? null : e.etag;
+		}
+		return etags.get(name);
+	}
+
+	/**
+	 * Checks the answer to a write and remembers the binding's new tag.
+	 * 
+	 * @param name The binding
+	 * @param status The response status
+	 * @param etag The new tag, null if the server didn't say or the binding was removed
+	 * @param doc The document written, null for a removal
+	 * @throws IOException if the write failed
+	 */
+	private void finished(String name, int status, String etag, byte[] doc) throws IOException
+	{
+		if (status == HttpURLConnection.HTTP_PRECON_FAILED)
+			throw new IOException(name + " was changed on " + uri + " since it was read (412 Precondition Failed)");
+		if (doc == null && status == HttpURLConnection.HTTP_NOT_FOUND)
+			status = HttpURLConnection.HTTP_NO_CONTENT;
+		if (status / 100 != 2)
+			throw new IOException(uri + " refused to " + (doc == null ? "unbind " : "bind ") + name + " (" + status + ")");
+
+		if (doc == null)
+		{
+			etags.remove(name);
+			if (mirror != null)
+				mirror.removed(name);
+			if (cache != null)
+				cache.removed(name);
+		}
+		else if (mirror != null)
+		{
+			mirror.written(name, etag == null ? null : etag.replace("\"", ""), doc);
+		}
+		else if (cache != null)
+		{
+			cache.written(name, etag, doc);
+		}
+		else if (etag != null)
+		{
+			etags.put(name, etag);
+		}
+		else
+		{
+			etags.remove(name);
+		}
+	}
+
+	@Override
+	long lastModified(Object location)
+	{
+		if (location instanceof HttpMirror.Entry)
+			return mirror.lastModified((HttpMirror.Entry) location);
+		if (location instanceof HttpCache.Entry)
+			return cache.lastModified((HttpCache.Entry) location);
+		return 0L;
+	}
+
+	@Override
+	Collection<String> list(String prefix) throws NamingException
+	{
+		if (mirror != null)
+			return mirror.list(prefix);
+		throw new OperationNotSupportedException("Scheme “" + scheme + "” is not supported by XMLContext.list()");
+	}
+
+	@Override
+	void close()
+	{
+		if (mirror != null)
+			mirror.close();
+		if (cache != null)
+			cache.close();
+	}
+
+	@Override
+	String describe(Object location)
+	{
+		if (location instanceof Target)
+			return location.toString();
+		if (location instanceof HttpMirror.Entry)
+			return base.resolve(((HttpMirror.Entry) location).name + FILE_EXTENSION).toString();
+		if (location instanceof HttpCache.Entry)
+			return base.resolve(((HttpCache.Entry) location).name + FILE_EXTENSION).toString();
+		return super.describe(location);
+	}
+}
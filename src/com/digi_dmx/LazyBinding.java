@@ -0,0 +1,176 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.Hashtable;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.naming.Context;
+import javax.naming.Name;
+import javax.naming.Reference;
+import javax.naming.spi.ObjectFactory;
+
+/**
+ * Stands in for a binding declared with <tt>lazy="javax.sql.DataSource"</tt>.  Lookup returns a proxy
+ * implementing the listed interfaces; the factory isn't loaded or run until a method is first called.
+ * <tt>equals</tt>, <tt>hashCode</tt> and <tt>toString</tt> don't count as a first use.
+ * 
+ * <p>If the factory fails, the call that triggered it throws the failure as the method allows: as is if it
+ * declares it, wrapped in an {@link SQLException} if it declares that, and wrapped in an
+ * {@link IllegalStateException} otherwise.  The next call tries again.
+ * 
+ * @author Eric E Bardes
+ */
+class LazyBinding implements InvocationHandler
+{
+	private final Reference ref;
+
+	private final Name name;
+
+	private final Context ctx;
+
+	private final Hashtable<?, ?> env;
+
+	private volatile Object target;
+
+	/** held while the target is created */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private LazyBinding(Reference ref, Name name, Context ctx, Hashtable<?, ?> env)
+	{
+		this.ref = ref;
+		this.name = name;
+		this.ctx = ctx;
+		this.env = env;
+	}
+
+	/**
+	 * @param ref A reference with lazy interfaces
+	 * @param name The name it was looked up by
+	 * @param ctx The context it was looked up in
+	 * @param env The environment to hand to the factory
+	 * @return The proxy
+	 * @throws ClassNotFoundException if an interface can't be loaded
+	 */
+	static Object proxy(XMLReference ref, Name name, Context ctx, Hashtable<?, ?> env) throws ClassNotFoundException
+	{
+		ClassLoader cl = Thread.currentThread().getContextClassLoader();
+		if (cl == null)
+			cl = LazyBinding.class.getClassLoader();
+
+		String[] names = ref.getLazyInterfaces();
+		Class<?>[] interfaces = new Class<?>[names.length];
+		for (int i = 0; i < names.length; i++)
+		{
+			interfaces[i] = Class.forName(names[i], false, cl);
+		}
+		return Proxy.newProxyInstance(cl, interfaces, new LazyBinding(ref, name, ctx, env));
+	}
+
+	private Object target(Method method) throws Throwable
+	{
+		Object t = target;
+		if (t == null)
+		{
+			lock.lock();
+			try
+			{
+				t = target;
+				if (t == null)
+				{
+					try
+					{
+						ObjectFactory factory = XMLContext.newFactory(Class.forName(ref.getFactoryClassName()));
+						t = factory.getObjectInstance(ref, name, ctx, env);
+					}
+					catch (Exception e)
+					{
+						throw failure(method, e);
+					}
+					target = t;
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+		return t;
+	}
+
+	/**
+	 * @return The factory's failure in a form the method that triggered it may throw
+	 */
+	private Throwable failure(Method method, Exception e)
+	{
+		if (e instanceof RuntimeException)
+			return e;
+		for (Class<?> declared : method.getExceptionTypes())
+		{
+			if (declared.isInstance(e))
+				return e;
+		}
+		String msg = "Unable to instantiate " + name;
+		for (Class<?> declared : method.getExceptionTypes())
+		{
+			if (declared.isAssignableFrom(SQLException.class))
+				return new SQLException(msg, e);
+		}
+		return new IllegalStateException(msg, e);
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+	{
+		if (method.getDeclaringClass() == Object.class)
+		{
+			switch (method.getName())
+			{
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				Object t = target;
+				return t == null ? "lazy " + ref.getClassName() + " " + name : t.toString();
+			default:
+				break;
+			}
+		}
+
+		try
+		{
+			return method.invoke(target(method), args);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw e.getCause();
+		}
+	}
+}
@@ -0,0 +1,254 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.naming.LinkLoopException;
+import javax.naming.LinkRef;
+import javax.naming.MalformedLinkException;
+import javax.naming.NamingException;
+import javax.naming.Reference;
+
+/**
+ * The resolved {@link LinkRef} chains of a namespace, by the full name of the first link.  Looking up an
+ * alias goes straight to the name at the end of its chain without reading the links again.
+ * 
+ * <p>A chain is dropped when any name along it is bound, unbound or renamed through {@link XMLContext}.
+ * Providers whose bindings can change, such as files, are also asked on every use when each link and the target
+ * last changed, so an edit behind the context's back is noticed.  That costs a <tt>stat</tt> per name, never a
+ * read.  A chain is not kept at all when such a provider can't tell, as with plain http, or when its target
+ * doesn't exist yet.
+ * 
+ * <p>Link names starting with <tt>./</tt> are relative to the directory holding the link, any other
+ * name is relative to the root of the namespace.
+ * 
+ * @author Eric E Bardes
+ */
+class Links
+{
+	/**
+	 * A resolved chain.
+	 */
+	static class Chain
+	{
+		/** the first link */
+		final LinkRef link;
+
+		/** the name the chain ends at, which isn't a link */
+		final String target;
+
+		/** every name along the chain, the target last */
+		final String[] names;
+
+		/** where each link, then the target, is found */
+		final Object[] locations;
+
+		/** when each of the locations last changed as reported by the provider, 0 if it can't tell */
+		final long[] stamps;
+
+		Chain(LinkRef link, String target, String[] names, Object[] locations, long[] stamps)
+		{
+			this.link = link;
+			this.target = target;
+			this.names = names;
+			this.locations = locations;
+			this.stamps = stamps;
+		}
+
+		/**
+		 * @param p The provider of the namespace root
+		 * @return false if the provider reports a change to any of the links or the target.
+		 */
+		boolean isCurrent(Provider p)
+		{
+			for (int i = 0; i < stamps.length; i++)
+			{
+				if (p.lastModified(locations[i]) != stamps[i])
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * @param name A full name, possibly a directory
+		 * @return true if the name, or a name below it, is part of this chain.
+		 */
+		boolean involves(String name)
+		{
+			String prefix = name + "/";
+			for (String n : names)
+			{
+				if (n.equals(name) || n.startsWith(prefix))
+					return true;
+			}
+			return false;
+		}
+	}
+
+	private final ConcurrentHashMap<String, Chain> chains = new ConcurrentHashMap<String, Chain>();
+
+	/**
+	 * @param name The full name of a binding
+	 * @param p The provider of the namespace root
+	 * @return The chain starting at the name, or null if the name isn't a known link.
+	 */
+	Chain get(String name, Provider p)
+	{
+		Chain c = chains.get(name);
+		if (c == null)
+			return null;
+		if (p.isCacheable() || c.isCurrent(p))
+			return c;
+		chains.remove(name, c);
+		return null;
+	}
+
+	/**
+	 * Follows a link to the first name that isn't one, and remembers the way if it can be checked later.
+	 * 
+	 * @param root The root of the namespace
+	 * @param p The provider of the root
+	 * @param name The full name of the link
+	 * @param link The link bound to that name
+	 * @return The resolved chain
+	 * @throws LinkLoopException if the chain comes back to a name it already passed through
+	 * @throws MalformedLinkException if a link has no name
+	 * @throws NamingException if a link along the chain can't be read
+	 */
+	Chain resolve(XMLContext root, Provider p, String name, LinkRef link) throws NamingException
+	{
+		Set<String> seen = new LinkedHashSet<String>();
+		List<Object> locations = new ArrayList<Object>();
+		List<Long> stamps = new ArrayList<Long>();
+
+		String n = name;
+		Reference ref = link;
+		boolean found = true;
+		while (ref instanceof LinkRef)
+		{
+			if (!seen.add(n))
+				throw new LinkLoopException("Link cycle " + String.join(" → ", seen) + " → " + n);
+
+			Object location = p.locate(n);
+			locations.add(location);
+			stamps.add(p.lastModified(location));
+
+			n = target(n, (LinkRef) ref);
+			if (seen.contains(n))
+				continue;
+			if (!p.exists(n))
+			{
+				found = false;
+				break;
+			}
+			try
+			{
+				ref = root.readReference(p, n);
+			}
+			catch (NamingException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				NamingException ne = new NamingException("Unable to follow link to " + n);
+				ne.setRootCause(e);
+				throw ne;
+			}
+		}
+
+		int hops = locations.size();
+		if (found)
+		{
+			Object location = p.locate(n);
+			locations.add(location);
+			stamps.add(p.lastModified(location));
+		}
+
+		boolean checkable = found;
+		long[] s = new long[stamps.size()];
+		for (int i = 0; i < s.length; i++)
+		{
+			s[i] = stamps.get(i);
+			checkable &= s[i] != 0L;
+		}
+		String[] names = seen.toArray(new String[hops + 1]);
+		names[hops] = n;
+
+		Chain c = new Chain(link, n, names, locations.toArray(), s);
+		if (p.isCacheable() || checkable)
+			chains.put(name, c);
+		return c;
+	}
+
+	/**
+	 * @param name The full name of a link
+	 * @param link The link
+	 * @return The full name the link points to.
+	 * @throws NamingException if the link has no name
+	 */
+	static String target(String name, LinkRef link) throws NamingException
+	{
+		String to = link.getLinkName();
+		if (to == null || to.isEmpty())
+			throw new MalformedLinkException("Link " + name + " has no name");
+
+		if (to.startsWith("./"))
+		{
+			int slash = name.lastIndexOf('/');
+			to = slash < 0 ? to.substring(2) : name.substring(0, slash + 1) + to.substring(2);
+		}
+		while (to.startsWith("/"))
+			to = to.substring(1);
+		while (to.endsWith("/"))
+			to = to.substring(0, to.length() - 1);
+		return to;
+	}
+
+	/**
+	 * Forgets every chain passing through a name.
+	 * 
+	 * @param name A full name that was written, removed or renamed, possibly a directory.
+	 */
+	void invalidate(String name)
+	{
+		Iterator<Chain> i = chains.values().iterator();
+		while (i.hasNext())
+		{
+			if (i.next().involves(name))
+				i.remove();
+		}
+	}
+
+	void clear()
+	{
+		chains.clear();
+	}
+}
@@ -0,0 +1,76 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.naming.NamingEnumeration;
+
+/**
+ * A {@link NamingEnumeration} over an already computed collection.
+ * 
+ * @author Eric E Bardes
+ * @param <T> The element type
+ */
+class ListEnumeration<T> implements NamingEnumeration<T>
+{
+	private final Iterator<T> it;
+
+	ListEnumeration(Iterable<T> items)
+	{
+		this.it = items.iterator();
+	}
+
+	@Override
+	public boolean hasMoreElements()
+	{
+		return it.hasNext();
+	}
+
+	@Override
+	public T nextElement()
+	{
+		if (!it.hasNext())
+			throw new NoSuchElementException();
+		return it.next();
+	}
+
+	@Override
+	public T next()
+	{
+		return nextElement();
+	}
+
+	@Override
+	public boolean hasMore()
+	{
+		return hasMoreElements();
+	}
+
+	@Override
+	public void close()
+	{
+	}
+}
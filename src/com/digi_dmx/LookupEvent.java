@@ -0,0 +1,60 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emitted by {@link XMLContext#lookup(String)}. The total duration is split into the time spent
+ * reading the XML file, parsing it and running the {@link javax.naming.spi.ObjectFactory}.
+ * 
+ * @author Eric E Bardes
+ */
+@Name("com.digi_dmx.Lookup")
+@Label("JNDI Lookup")
+@Description("A name resolved by XMLContext")
+class LookupEvent extends ContextEvent
+{
+	@Label("Factory Class")
+	String factoryClass;
+
+	@Label("Cached")
+	@Description("The reference was served from the context's cache instead of the provider")
+	boolean cached;
+
+	@Label("I/O Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	long ioDuration;
+
+	@Label("Parse Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	long parseDuration;
+
+	@Label("Instantiation Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	long instantiationDuration;
+}
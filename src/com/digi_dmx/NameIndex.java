@@ -0,0 +1,134 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.naming.NameNotFoundException;
+
+/**
+ * An in-memory index of binding names for providers that can enumerate their contents once up front.
+ * Besides the name to location map, each directory keeps its sorted entries so listing never has to
+ * walk the whole index.
+ * 
+ * @author Eric E Bardes
+ * @param <T> The provider specific location of a binding.
+ */
+class NameIndex<T>
+{
+	/** binding name to location */
+	private final Map<String, T> locations = new HashMap<String, T>();
+
+	/** directory prefix ("" for the top) to its entries */
+	private final Map<String, SortedSet<String>> children = new HashMap<String, SortedSet<String>>();
+
+	/**
+	 * Adds a binding.  A name that is already present is left alone, so the first one added wins.
+	 * 
+	 * @param name The binding name without the file extension
+	 * @param location Where the binding lives
+	 */
+	void add(String name, T location)
+	{
+		if (locations.containsKey(name))
+			return;
+
+		locations.put(name, location);
+
+		/*
+		 * Register the entry with its directory.  A directory seen for the first time is in turn
+		 * registered with its parent.
+		 */
+		int slash = name.lastIndexOf('/');
+		String entry = name.substring(slash + 1);
+		while (true)
+		{
+			String dir = name.substring(0, slash + 1);
+			SortedSet<String> set = children.get(dir);
+			if (set != null)
+			{
+				set.add(entry);
+				break;
+			}
+			set = new TreeSet<String>();
+			set.add(entry);
+			children.put(dir, set);
+			if (slash < 0)
+				break;
+			int parent = slash == 0 ? -1 : name.lastIndexOf('/', slash - 1);
+			entry = name.substring(parent + 1, slash + 1);
+			slash = parent;
+		}
+	}
+
+	/**
+	 * @param name A binding name
+	 * @return The location or null if there's no such binding.
+	 */
+	T get(String name)
+	{
+		return locations.get(name);
+	}
+
+	/**
+	 * @param name A name
+	 * @return true if the name is a directory containing at least one binding.
+	 */
+	boolean isDirectory(String name)
+	{
+		return children.containsKey(name.endsWith("/") ? name : name + "/");
+	}
+
+	/**
+	 * @return All binding names.
+	 */
+	Collection<String> names()
+	{
+		return Collections.unmodifiableSet(locations.keySet());
+	}
+
+	/**
+	 * @param prefix A directory, with or without the trailing slash, empty for the top.
+	 * @return The entries in the same form as {@link Provider#list(String)}.
+	 * @throws NameNotFoundException if there's no such directory.
+	 */
+	Collection<String> list(String prefix) throws NameNotFoundException
+	{
+		if (!prefix.isEmpty() && !prefix.endsWith("/"))
+			prefix = prefix + "/";
+		SortedSet<String> set = children.get(prefix);
+		if (set == null)
+		{
+			if (prefix.isEmpty())
+				return Collections.emptySet();
+			throw new NameNotFoundException(prefix);
+		}
+		return Collections.unmodifiableSortedSet(set);
+	}
+}
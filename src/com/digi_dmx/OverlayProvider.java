@@ -0,0 +1,510 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.naming.NameAlreadyBoundException;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+import javax.naming.OperationNotSupportedException;
+
+/**
+ * Several providers searched top-down, the first one listed being the top.  Configured by listing the
+ * provider URLs separated by whitespace, for example
+ * <tt>file:/etc/app/host file:/etc/app/prod jar:file:/opt/app/base.jar!/jndi</tt>.
+ * 
+ * <p>Each directory is listed once in every layer and merged into an index of which layer wins each name,
+ * so lookups and lists are answered without probing the layers.  Writes through the overlay drop the index
+ * of the directories they touch.  Changes made behind the overlay's back are found by comparing each changeable
+ * layer's directory stamp, at most once per check interval; layers that can't change, such as archives and the
+ * classpath, are never checked again, and layers that can't be listed, such as http without a mirror, are probed
+ * on every lookup.  Writes only ever go to the top layer, which therefore has to be writable for bind, rebind,
+ * rename and unbind to work.  Unbinding a name from the top layer uncovers any binding of the same name in a
+ * lower layer.
+ * 
+ * @author Eric E Bardes
+ */
+class OverlayProvider extends Provider
+{
+	/** milliseconds between checks of the changeable layers, unless configured */
+	static final long CHECK_INTERVAL = 1000L;
+
+	/**
+	 * A directory stamp this close to the time it was read may still move without the stamp changing, on file
+	 * systems with coarse timestamps, so the directory is listed again at the next check.
+	 */
+	private static final long RACY = 2000L;
+
+	private final Provider[] layers;
+
+	/** directory, without a trailing slash, to its merged index */
+	private final ConcurrentHashMap<String, Merged> merged = new ConcurrentHashMap<String, Merged>();
+
+	/** which layers can't change while the process runs */
+	private final boolean[] fixed;
+
+	private volatile long checkInterval = CHECK_INTERVAL;
+
+	OverlayProvider(List<Provider> layers)
+	{
+		super(layers.get(0).uri);
+		this.layers = layers.toArray(new Provider[layers.size()]);
+		this.fixed = new boolean[this.layers.length];
+		for (int i = 0; i < fixed.length; i++)
+		{
+			fixed[i] = this.layers[i].isCacheable();
+		}
+	}
+
+	/**
+	 * @param millis How long a directory's index is trusted before the changeable layers are checked again.
+	 * Zero checks on every use.
+	 */
+	void setCheckInterval(long millis)
+	{
+		this.checkInterval = millis;
+	}
+
+	/**
+	 * A location within one of the layers.
+	 */
+	private static class Located
+	{
+		final String name;
+
+		final int layer;
+
+		final Object location;
+
+		Located(String name, int layer, Object location)
+		{
+			this.name = name;
+			this.layer = layer;
+			this.location = location;
+		}
+	}
+
+	/**
+	 * One directory merged across the layers, never changed once built.
+	 */
+	private static class Merged
+	{
+		/** binding to the index of the layer that wins it */
+		final Map<String, Integer> winners;
+
+		/** the union of the layers' entries, as {@link Provider#list(String)} answers them */
+		final Set<String> names;
+
+		/** layers that couldn't list the directory */
+		final boolean[] unlisted;
+
+		/** each layer's directory stamp when it was listed */
+		final long[] stamps;
+
+		/** true if at least one layer listed the directory */
+		final boolean found;
+
+		/** a stamp may not have caught every change, so it can't be trusted */
+		final boolean racy;
+
+		/** when the stamps were last found unchanged */
+		volatile long checked;
+
+		Merged(Map<String, Integer> winners, Set<String> names, boolean[] unlisted, long[] stamps, boolean found,
+				boolean racy, long checked)
+		{
+			this.winners = winners;
+			this.names = names;
+			this.unlisted = unlisted;
+			this.stamps = stamps;
+			this.found = found;
+			this.racy = racy;
+			this.checked = checked;
+		}
+	}
+
+	private static String parent(String name)
+	{
+		int slash = name.lastIndexOf('/');
+		return slash < 0 ? "" : name.substring(0, slash);
+	}
+
+	private static String leaf(String name)
+	{
+		return name.substring(name.lastIndexOf('/') + 1);
+	}
+
+	private static String directory(String prefix)
+	{
+		return prefix.endsWith("/") ? prefix.substring(0, prefix.length() - 1) : prefix;
+	}
+
+	/**
+	 * @param dir A directory without a trailing slash
+	 * @return The directory's index, built again if a layer changed behind it.
+	 */
+	private Merged merged(String dir) throws NamingException
+	{
+		Merged m = merged.get(dir);
+		long now = System.currentTimeMillis();
+		if (m != null && isCurrent(dir, m, now))
+			return m;
+		m = merge(dir, now);
+		merged.put(dir, m);
+		return m;
+	}
+
+	private boolean isCurrent(String dir, Merged m, long now)
+	{
+		if (now - m.checked < checkInterval)
+			return true;
+		if (m.racy)
+			return false;
+		for (int i = 0; i < layers.length; i++)
+		{
+			if (!fixed[i] && !m.unlisted[i] && layers[i].directoryModified(dir) != m.stamps[i])
+				return false;
+		}
+		m.checked = now;
+		return true;
+	}
+
+	private Merged merge(String dir, long now) throws NamingException
+	{
+		Map<String, Integer> winners = new HashMap<String, Integer>();
+		Set<String> names = new TreeSet<String>();
+		boolean[] unlisted = new boolean[layers.length];
+		long[] stamps = new long[layers.length];
+		boolean found = false;
+		boolean racy = false;
+		for (int i = 0; i < layers.length; i++)
+		{
+			// stamped before listing, so a change made while listing is caught by the next check
+			if (!fixed[i])
+			{
+				stamps[i] = layers[i].directoryModified(dir);
+				racy |= stamps[i] < 0 || stamps[i] > now - RACY;
+			}
+			Collection<String> listed;
+			try
+			{
+				listed = layers[i].list(dir);
+				found = true;
+			}
+			catch (NameNotFoundException e)
+			{
+				// not in this layer
+				continue;
+			}
+			catch (OperationNotSupportedException e)
+			{
+				unlisted[i] = true;
+				continue;
+			}
+			catch (IOException e)
+			{
+				NamingException ne = new NamingException("Unable to list " + dir);
+				ne.setRootCause(e);
+				throw ne;
+			}
+			for (String n : listed)
+			{
+				names.add(n);
+				if (!n.endsWith("/") && !winners.containsKey(n))
+					winners.put(n, i);
+			}
+		}
+		return new Merged(winners, Collections.unmodifiableSet(names), unlisted, stamps, found, racy, now);
+	}
+
+	/**
+	 * Drops the index of the directory holding a name and of every directory above it, which a write may
+	 * have created.
+	 */
+	private void changed(String name)
+	{
+		String dir = name;
+		do
+		{
+			dir = parent(dir);
+			merged.remove(dir);
+		}
+		while (!dir.isEmpty());
+	}
+
+	private int winner(String name) throws NamingException
+	{
+		Merged m = merged(parent(name));
+		Integer w = m.winners.get(leaf(name));
+		int end = w == null ? layers.length : w;
+		for (int i = 0; i < end; i++)
+		{
+			if (m.unlisted[i] && layers[i].exists(name))
+				return i;
+		}
+		if (w == null)
+			throw new NameNotFoundException(name);
+		return w;
+	}
+
+	@Override
+	Object locate(String name) throws NamingException
+	{
+		int i = winner(name);
+		return new Located(name, i, layers[i].locate(name));
+	}
+
+	@Override
+	InputStream open(Object location) throws NamingException, IOException
+	{
+		Located l = (Located) location;
+		try
+		{
+			return layers[l.layer].open(l.location);
+		}
+		catch (NamingException | IOException e)
+		{
+			// removed from its layer since it was indexed: fall through to whichever layer has it now
+			if (layers[l.layer].exists(l.name))
+				throw e;
+			changed(l.name);
+			int i = winner(l.name);
+			return layers[i].open(layers[i].locate(l.name));
+		}
+	}
+
+	@Override
+	long lastModified(Object location)
+	{
+		if (!(location instanceof Located))
+			return 0L;
+		Located l = (Located) location;
+		return layers[l.layer].lastModified(l.location);
+	}
+
+	@Override
+	boolean exists(String name) throws NamingException
+	{
+		try
+		{
+			winner(name);
+			return true;
+		}
+		catch (NameNotFoundException e)
+		{
+			return false;
+		}
+	}
+
+	@Override
+	boolean isDirectory(String name) throws NamingException
+	{
+		if (name.isEmpty())
+			return merged("").found;
+		Merged m = merged(parent(name));
+		if (m.names.contains(leaf(name) + "/"))
+			return true;
+		for (int i = 0; i < layers.length; i++)
+		{
+			if (m.unlisted[i] && layers[i].isDirectory(name))
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	Provider child(String name)
+	{
+		List<Provider> children = new ArrayList<Provider>(layers.length);
+		for (Provider layer : layers)
+		{
+			children.add(layer.child(name));
+		}
+		OverlayProvider o = new OverlayProvider(children);
+		o.setCheckInterval(checkInterval);
+		return o;
+	}
+
+	@Override
+	void createDirectory(String name) throws NamingException
+	{
+		layers[0].createDirectory(name);
+		changed(name);
+	}
+
+	/**
+	 * Only the top layer's directory is removed.  Lower layers may still provide a directory of the same name.
+	 */
+	@Override
+	void deleteDirectory(String name) throws NamingException
+	{
+		layers[0].deleteDirectory(name);
+		changed(name);
+		String prefix = name + "/";
+		for (String dir : merged.keySet())
+		{
+			if (dir.equals(name) || dir.startsWith(prefix))
+				merged.remove(dir);
+		}
+	}
+
+	/**
+	 * The union of all layers, from the directory's index.  Layers that can't be listed are skipped.
+	 */
+	@Override
+	Collection<String> list(String prefix) throws NamingException
+	{
+		Merged m = merged(directory(prefix));
+		if (!m.found && !prefix.isEmpty())
+			throw new NameNotFoundException(prefix);
+		return m.names;
+	}
+
+	@Override
+	boolean isCacheable()
+	{
+		for (Provider layer : layers)
+		{
+			if (!layer.isCacheable())
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	boolean isWritable()
+	{
+		return layers[0].isWritable();
+	}
+
+	/**
+	 * Binding a name always creates it in the top layer, whichever layer it currently resolves to.
+	 */
+	@Override
+	Object locateForWrite(String name) throws NamingException
+	{
+		return new Located(name, 0, layers[0].locateForWrite(name));
+	}
+
+	@Override
+	Object locateForReplace(String name) throws NamingException
+	{
+		return new Located(name, 0, layers[0].locateForReplace(name));
+	}
+
+	@Override
+	OutputStream create(Object location) throws NamingException, IOException
+	{
+		Located l = (Located) location;
+		OutputStream os = layers[0].create(l.location);
+		changed(l.name);
+		return os;
+	}
+
+	@Override
+	void abort(OutputStream os)
+	{
+		layers[0].abort(os);
+	}
+
+	/**
+	 * Like the other writes, a batch goes to the top layer.  A new name must not be bound in any layer.
+	 */
+	@Override
+	Map<String, Exception> writeAll(Map<String, byte[]> docs, Set<String> fresh) throws NamingException
+	{
+		Map<String, byte[]> top = new LinkedHashMap<String, byte[]>(docs);
+		Map<String, Exception> bound = new LinkedHashMap<String, Exception>();
+		for (String name : fresh)
+		{
+			if (docs.get(name) != null && exists(name))
+			{
+				top.remove(name);
+				bound.put(name, new NameAlreadyBoundException(name));
+			}
+		}
+		try
+		{
+			Map<String, Exception> failed = layers[0].writeAll(top, fresh);
+			failed.putAll(bound);
+			return failed;
+		}
+		finally
+		{
+			for (String name : top.keySet())
+			{
+				changed(name);
+			}
+		}
+	}
+
+	@Override
+	void delete(String name) throws NamingException
+	{
+		layers[0].delete(name);
+		changed(name);
+	}
+
+	@Override
+	void rename(String oldName, String newName) throws NamingException
+	{
+		layers[0].rename(oldName, newName);
+		changed(oldName);
+		changed(newName);
+	}
+
+	@Override
+	void close()
+	{
+		for (Provider layer : layers)
+		{
+			layer.close();
+		}
+		merged.clear();
+	}
+
+	@Override
+	String describe(Object location)
+	{
+		if (location instanceof Located)
+		{
+			Located l = (Located) location;
+			return layers[l.layer].describe(l.location);
+		}
+		return super.describe(location);
+	}
+}
@@ -0,0 +1,202 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.naming.NamingException;
+
+/**
+ * A directory within another provider, used by subcontexts of providers that can't simply be re-rooted.
+ * Every name is prefixed with the directory and handed to the underlying provider.
+ * 
+ * @author Eric E Bardes
+ */
+class PrefixProvider extends Provider
+{
+	private final Provider delegate;
+
+	private final String prefix;
+
+	/**
+	 * @param delegate The underlying provider
+	 * @param prefix The directory, ending with a slash
+	 */
+	PrefixProvider(Provider delegate, String prefix)
+	{
+		super(delegate.uri);
+		this.delegate = delegate;
+		this.prefix = prefix;
+	}
+
+	@Override
+	Object locate(String name) throws NamingException
+	{
+		return delegate.locate(prefix + name);
+	}
+
+	@Override
+	Object locateForWrite(String name) throws NamingException
+	{
+		return delegate.locateForWrite(prefix + name);
+	}
+
+	@Override
+	Object locateForReplace(String name) throws NamingException
+	{
+		return delegate.locateForReplace(prefix + name);
+	}
+
+	@Override
+	boolean exists(String name) throws NamingException
+	{
+		return delegate.exists(prefix + name);
+	}
+
+	@Override
+	boolean isDirectory(String name) throws NamingException
+	{
+		return delegate.isDirectory(prefix + name);
+	}
+
+	@Override
+	InputStream open(Object location) throws NamingException, IOException
+	{
+		return delegate.open(location);
+	}
+
+	@Override
+	Collection<String> list(String p) throws NamingException, IOException
+	{
+		return delegate.list(prefix + p);
+	}
+
+	@Override
+	long lastModified(Object location)
+	{
+		return delegate.lastModified(location);
+	}
+
+	@Override
+	long directoryModified(String p)
+	{
+		return delegate.directoryModified(prefix + p);
+	}
+
+	@Override
+	boolean isCacheable()
+	{
+		return delegate.isCacheable();
+	}
+
+	@Override
+	boolean isWritable()
+	{
+		return delegate.isWritable();
+	}
+
+	@Override
+	OutputStream create(Object location) throws NamingException, IOException
+	{
+		return delegate.create(location);
+	}
+
+	@Override
+	void abort(OutputStream os)
+	{
+		delegate.abort(os);
+	}
+
+	@Override
+	Map<String, Exception> writeAll(Map<String, byte[]> docs, Set<String> fresh) throws NamingException
+	{
+		Map<String, byte[]> prefixed = new LinkedHashMap<String, byte[]>();
+		for (Map.Entry<String, byte[]> d : docs.entrySet())
+		{
+			prefixed.put(prefix + d.getKey(), d.getValue());
+		}
+		Set<String> prefixedFresh = new HashSet<String>();
+		for (String name : fresh)
+		{
+			prefixedFresh.add(prefix + name);
+		}
+		Map<String, Exception> failed = new LinkedHashMap<String, Exception>();
+		for (Map.Entry<String, Exception> f : delegate.writeAll(prefixed, prefixedFresh).entrySet())
+		{
+			failed.put(f.getKey().substring(prefix.length()), f.getValue());
+		}
+		return failed;
+	}
+
+	@Override
+	void delete(String name) throws NamingException
+	{
+		delegate.delete(prefix + name);
+	}
+
+	@Override
+	void rename(String oldName, String newName) throws NamingException
+	{
+		delegate.rename(prefix + oldName, prefix + newName);
+	}
+
+	@Override
+	void createDirectory(String name) throws NamingException
+	{
+		delegate.createDirectory(prefix + name);
+	}
+
+	@Override
+	void deleteDirectory(String name) throws NamingException
+	{
+		delegate.deleteDirectory(prefix + name);
+	}
+
+	@Override
+	Provider child(String name)
+	{
+		return new PrefixProvider(delegate, prefix + name + "/");
+	}
+
+	/**
+	 * The underlying provider is still in use by the parent context.
+	 */
+	@Override
+	void close()
+	{
+	}
+
+	@Override
+	String describe(Object location)
+	{
+		return delegate.describe(location);
+	}
+}
@@ -0,0 +1,358 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.naming.ConfigurationException;
+import javax.naming.NameAlreadyBoundException;
+import javax.naming.NamingException;
+import javax.naming.OperationNotSupportedException;
+
+/**
+ * The storage behind an {@link XMLContext}.  A provider translates names into XML documents and back.
+ * The implementation is chosen by the scheme of {@link javax.naming.Context#PROVIDER_URL}.
+ * 
+ * <p>Resolving a name and reading it are separate steps so the context can time them separately.
+ * Operations a provider can't support throw {@link OperationNotSupportedException}.
+ * 
+ * @author Eric E Bardes
+ */
+abstract class Provider
+{
+	static final String FILE_EXTENSION = ".xml";
+
+	protected final URI uri;
+
+	protected final String scheme;
+
+	protected Provider(URI uri)
+	{
+		this.uri = uri;
+		this.scheme = uri.getScheme();
+	}
+
+	/**
+	 * @param url The provider URL, or several separated by whitespace for an {@link OverlayProvider}.
+	 * @return A provider suitable for the URL or null if a scheme isn't supported.
+	 * @throws ConfigurationException if a URL's parameters are malformed
+	 */
+	static Provider forUrl(String url) throws ConfigurationException
+	{
+		String[] urls = url.trim().split("\\s+");
+		if (urls.length == 1)
+			return forUri(uri(urls[0]));
+
+		List<Provider> layers = new ArrayList<Provider>(urls.length);
+		for (String u : urls)
+		{
+			Provider p = forUri(uri(u));
+			if (p == null)
+				return null;
+			layers.add(p);
+		}
+		return new OverlayProvider(layers);
+	}
+
+	/** <tt>classpath:</tt> on its own names the whole class path but isn't a valid URI */
+	static URI uri(String url)
+	{
+		if (url.equals(ClasspathProvider.SCHEME + ":"))
+			url += "/";
+		return URI.create(url);
+	}
+
+	/**
+	 * @param uri The provider URL
+	 * @return A provider suitable for the URL or null if the scheme isn't supported.
+	 * @throws ConfigurationException if the URL's parameters are malformed
+	 */
+	static Provider forUri(URI uri) throws ConfigurationException
+	{
+		String scheme = uri.getScheme();
+		if (ArchiveProvider.isArchive(uri))
+			return new ArchiveProvider(uri);
+		if (scheme == null || scheme.equalsIgnoreCase("file"))
+			return new FileProvider(uri);
+		if (scheme.startsWith("http"))
+			return new HttpProvider(uri);
+		if (scheme.equalsIgnoreCase(ClasspathProvider.SCHEME))
+			return new ClasspathProvider(uri);
+		return null;
+	}
+
+	/**
+	 * Translates a name into a location that {@link #open(Object)} understands.
+	 * 
+	 * @param name The name of the binding
+	 * @return A provider specific location, usually a File, URI or URL.
+	 * @throws NamingException if the name can't exist in this provider.
+	 */
+	abstract Object locate(String name) throws NamingException;
+
+	/**
+	 * Like {@link #locate(String)} but for a binding that is about to be written and may not exist yet.
+	 * 
+	 * @param name The name of the binding
+	 * @return A location that {@link #create(Object)} understands.
+	 * @throws NamingException if the name can't exist in this provider.
+	 */
+	Object locateForWrite(String name) throws NamingException
+	{
+		return locate(name);
+	}
+
+	/**
+	 * Like {@link #locateForWrite(String)} for a write that replaces the binding even if it changed since it was
+	 * read, as a rebind does.
+	 * 
+	 * @param name The name of the binding
+	 * @return A location that {@link #create(Object)} understands.
+	 * @throws NamingException if the name can't exist in this provider.
+	 */
+	Object locateForReplace(String name) throws NamingException
+	{
+		return locateForWrite(name);
+	}
+
+	/**
+	 * @param name The name of the binding
+	 * @return true if the provider has a binding of that name.
+	 * @throws NamingException if the provider can't tell.
+	 */
+	abstract boolean exists(String name) throws NamingException;
+
+	/**
+	 * @param location As returned by {@link #locate(String)}
+	 * @return The XML document
+	 * @throws IOException if the document can't be opened
+	 * @throws NamingException if the provider has been closed
+	 */
+	abstract InputStream open(Object location) throws NamingException, IOException;
+
+	/**
+	 * @param prefix A directory within the provider, empty for the top.
+	 * @return The names directly under the prefix. Bindings are listed without the file extension,
+	 * directories are listed with a trailing slash.
+	 * @throws NamingException if the provider can't be listed
+	 * @throws IOException if listing fails
+	 */
+	abstract Collection<String> list(String prefix) throws NamingException, IOException;
+
+	/**
+	 * Tells cheaply whether a binding changed, without reading it.
+	 * 
+	 * @param location As returned by {@link #locate(String)}
+	 * @return When the binding last changed, or 0 if the provider can't tell without reading it.
+	 */
+	long lastModified(Object location)
+	{
+		return 0L;
+	}
+
+	/**
+	 * Tells cheaply whether names were added to or removed from a directory, without listing it.
+	 * 
+	 * @param prefix A directory within the provider, empty for the top.
+	 * @return A stamp that changes whenever the directory's entries do, or -1 if the provider can't tell.
+	 */
+	long directoryModified(String prefix)
+	{
+		return -1L;
+	}
+
+	/**
+	 * @return true if the contents can't change while the process runs, so parsed references may be kept.
+	 */
+	boolean isCacheable()
+	{
+		return false;
+	}
+
+	/**
+	 * @return true if {@link #create(Object)} is supported.
+	 */
+	boolean isWritable()
+	{
+		return false;
+	}
+
+	/**
+	 * @param location As returned by {@link #locate(String)}
+	 * @return A stream the XML document is written to.
+	 * @throws NamingException if the provider is read only
+	 * @throws IOException if the document can't be created
+	 */
+	OutputStream create(Object location) throws NamingException, IOException
+	{
+		throw new OperationNotSupportedException("Scheme “" + scheme + "” is not supported by XMLContext.bind()");
+	}
+
+	/**
+	 * Gives up on a document that couldn't be written whole, in place of closing its stream.  Providers that only
+	 * send the document on close drop it, so a half written document is never published.  By default the stream is
+	 * closed and any error closing it ignored: the failure that came first is the one reported.
+	 * 
+	 * @param os As returned by {@link #create(Object)}
+	 */
+	void abort(OutputStream os)
+	{
+		try
+		{
+			os.close();
+		}
+		catch (IOException e)
+		{
+			// the write already failed
+		}
+	}
+
+	/**
+	 * Writes several documents.  By default they are written one after another; providers that can overlap
+	 * the writes do so.
+	 * 
+	 * @param docs Binding names, in order, to the document to write or null to delete the binding.
+	 * @param fresh The names among them that must not be bound yet.  Writing one that is fails with
+	 * {@link NameAlreadyBoundException}.
+	 * @return The writes that failed and why, empty if all succeeded.
+	 * @throws NamingException if the provider is read only
+	 */
+	Map<String, Exception> writeAll(Map<String, byte[]> docs, Set<String> fresh) throws NamingException
+	{
+		Map<String, Exception> failed = new LinkedHashMap<String, Exception>();
+		for (Map.Entry<String, byte[]> d : docs.entrySet())
+		{
+			try
+			{
+				if (d.getValue() == null)
+				{
+					delete(d.getKey());
+				}
+				else if (fresh.contains(d.getKey()) && exists(d.getKey()))
+				{
+					failed.put(d.getKey(), new NameAlreadyBoundException(d.getKey()));
+				}
+				else
+				{
+					try (OutputStream os = create(locateForWrite(d.getKey())))
+					{
+						os.write(d.getValue());
+					}
+				}
+			}
+			catch (OperationNotSupportedException e)
+			{
+				throw e;
+			}
+			catch (NamingException | IOException e)
+			{
+				failed.put(d.getKey(), e);
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * @param name The binding to remove. Missing bindings are ignored.
+	 * @throws NamingException if the provider is read only
+	 */
+	void delete(String name) throws NamingException
+	{
+		throw new OperationNotSupportedException("Scheme “" + scheme + "” is not supported by XMLContext.unbind()");
+	}
+
+	/**
+	 * @param oldName The existing binding
+	 * @param newName The new name
+	 * @throws NamingException if the provider is read only, or the binding couldn't be moved
+	 */
+	void rename(String oldName, String newName) throws NamingException
+	{
+		throw new OperationNotSupportedException("Scheme “" + scheme + "” is not supported by XMLContext.rename()");
+	}
+
+	/**
+	 * @param name A name within the provider
+	 * @return true if the name is a directory, which {@link XMLContext} presents as a subcontext.
+	 * @throws NamingException if the provider can't tell.
+	 */
+	boolean isDirectory(String name) throws NamingException
+	{
+		return false;
+	}
+
+	/**
+	 * @param name A directory within this provider
+	 * @return A provider rooted at that directory.
+	 */
+	Provider child(String name)
+	{
+		return new PrefixProvider(this, name + "/");
+	}
+
+	/**
+	 * @param name The directory to create. Missing parents are created too.
+	 * @throws NamingException if the provider is read only
+	 */
+	void createDirectory(String name) throws NamingException
+	{
+		throw new OperationNotSupportedException("Scheme “" + scheme + "” is not supported by XMLContext.createSubcontext()");
+	}
+
+	/**
+	 * @param name The directory to remove. Missing directories are ignored.
+	 * @throws NamingException if the directory isn't empty or the provider is read only
+	 */
+	void deleteDirectory(String name) throws NamingException
+	{
+		throw new OperationNotSupportedException("Scheme “" + scheme + "” is not supported by XMLContext.destroySubcontext()");
+	}
+
+	/**
+	 * Releases anything the provider holds open.  Called when the context switches to another provider.
+	 */
+	void close()
+	{
+	}
+
+	/**
+	 * Used in diagnostics.
+	 * 
+	 * @param location As returned by {@link #locate(String)}
+	 * @return Where the location points.
+	 */
+	String describe(Object location)
+	{
+		return location == null ? uri.toString() : location.toString();
+	}
+}
@@ -0,0 +1,536 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.InvalidSearchFilterException;
+
+/**
+ * A parsed search filter in the RFC 4515 string form, for example <tt>(&amp;(class=com.digi_dmx.ds.DSAdapter)(url=*prod*))</tt>.
+ * Supports <tt>&amp;</tt>, <tt>|</tt>, <tt>!</tt>, equality with <tt>*</tt> wildcards, presence, <tt>~=</tt> (equality
+ * ignoring case), <tt>&gt;=</tt> and <tt>&lt;=</tt> (compared as numbers when both sides are numbers, otherwise as
+ * strings).  A filter answers two questions: which
+ * names in a {@link SearchIndex} may match, so only those are looked at, and whether one binding does.
+ * 
+ * @author Eric E Bardes
+ */
+abstract class SearchFilter
+{
+	/**
+	 * @param entry The attributes of a binding
+	 * @return true if the binding matches
+	 */
+	abstract boolean matches(Map<String, List<String>> entry);
+
+	/**
+	 * @param index The index to look in
+	 * @return The names that may match, or null if any name may.
+	 */
+	abstract Collection<String> candidates(SearchIndex index);
+
+	/**
+	 * @param filter A filter in the string form
+	 * @return The parsed filter
+	 * @throws InvalidSearchFilterException if the filter can't be parsed
+	 */
+	static SearchFilter parse(String filter) throws InvalidSearchFilterException
+	{
+		String f = filter.trim();
+		if (!f.startsWith("("))
+			f = "(" + f + ")";
+		Parser p = new Parser(f);
+		SearchFilter result = p.filter();
+		if (p.pos != f.length())
+			throw new InvalidSearchFilterException("Unexpected text at " + p.pos + " in " + filter);
+		return result;
+	}
+
+	/**
+	 * Substitutes <tt>{n}</tt> in a filter expression with the escaped string form of the argument.
+	 * 
+	 * @param expr The filter expression
+	 * @param args The arguments
+	 * @return The parsed filter
+	 * @throws InvalidSearchFilterException if an argument is missing or the filter can't be parsed
+	 */
+	static SearchFilter format(String expr, Object[] args) throws InvalidSearchFilterException
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < expr.length(); i++)
+		{
+			char c = expr.charAt(i);
+			int close = c == '{' ? expr.indexOf('}', i) : -1;
+			if (close < 0)
+			{
+				sb.append(c);
+				continue;
+			}
+			int n;
+			try
+			{
+				n = Integer.parseInt(expr.substring(i + 1, close));
+			}
+			catch (NumberFormatException e)
+			{
+				throw new InvalidSearchFilterException("Bad argument reference in " + expr);
+			}
+			if (args == null || n >= args.length)
+				throw new InvalidSearchFilterException("No argument " + n + " for " + expr);
+			sb.append(escape(String.valueOf(args[n])));
+			i = close;
+		}
+		return parse(sb.toString());
+	}
+
+	/**
+	 * @param attrs Attributes to match: those without values need only be present, the others must have every value.
+	 * @return A filter requiring all of them
+	 * @throws NamingException if the attributes can't be read
+	 */
+	static SearchFilter matching(Attributes attrs) throws NamingException
+	{
+		List<SearchFilter> all = new ArrayList<SearchFilter>();
+		if (attrs != null)
+		{
+			NamingEnumeration<? extends Attribute> e = attrs.getAll();
+			while (e.hasMore())
+			{
+				Attribute a = e.next();
+				if (a.size() == 0)
+					all.add(new Present(a.getID()));
+				for (int i = 0; i < a.size(); i++)
+				{
+					all.add(new Equal(a.getID(), String.valueOf(a.get(i)), false));
+				}
+			}
+		}
+		return new And(all);
+	}
+
+	private static String escape(String s)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (char c : s.toCharArray())
+		{
+			if (c == '*' || c == '(' || c == ')' || c == '\\' || c == 0)
+				sb.append(String.format("\\%02x", (int) c));
+			else
+				sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	private static boolean has(Map<String, List<String>> entry, String id)
+	{
+		return entry.containsKey(id);
+	}
+
+	/**
+	 * All of the filters, or any binding if there are none.
+	 */
+	private static class And extends SearchFilter
+	{
+		final List<SearchFilter> filters;
+
+		And(List<SearchFilter> filters)
+		{
+			this.filters = filters;
+		}
+
+		@Override
+		boolean matches(Map<String, List<String>> entry)
+		{
+			for (SearchFilter f : filters)
+			{
+				if (!f.matches(entry))
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * The smallest candidate set of the parts, the others are checked by {@link #matches(Map)}.
+		 */
+		@Override
+		Collection<String> candidates(SearchIndex index)
+		{
+			Collection<String> best = null;
+			for (SearchFilter f : filters)
+			{
+				Collection<String> c = f.candidates(index);
+				if (c != null && (best == null || c.size() < best.size()))
+					best = c;
+			}
+			return best;
+		}
+	}
+
+	private static class Or extends SearchFilter
+	{
+		final List<SearchFilter> filters;
+
+		Or(List<SearchFilter> filters)
+		{
+			this.filters = filters;
+		}
+
+		@Override
+		boolean matches(Map<String, List<String>> entry)
+		{
+			for (SearchFilter f : filters)
+			{
+				if (f.matches(entry))
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		Collection<String> candidates(SearchIndex index)
+		{
+			Set<String> union = new HashSet<String>();
+			for (SearchFilter f : filters)
+			{
+				Collection<String> c = f.candidates(index);
+				if (c == null)
+					return null;
+				union.addAll(c);
+			}
+			return union;
+		}
+	}
+
+	private static class Not extends SearchFilter
+	{
+		final SearchFilter filter;
+
+		Not(SearchFilter filter)
+		{
+			this.filter = filter;
+		}
+
+		@Override
+		boolean matches(Map<String, List<String>> entry)
+		{
+			return !filter.matches(entry);
+		}
+
+		@Override
+		Collection<String> candidates(SearchIndex index)
+		{
+			return null;
+		}
+	}
+
+	private static class Present extends SearchFilter
+	{
+		final String id;
+
+		Present(String id)
+		{
+			this.id = id;
+		}
+
+		@Override
+		boolean matches(Map<String, List<String>> entry)
+		{
+			return has(entry, id);
+		}
+
+		@Override
+		Collection<String> candidates(SearchIndex index)
+		{
+			return index.having(id);
+		}
+	}
+
+	private static class Equal extends SearchFilter
+	{
+		final String id;
+
+		final String value;
+
+		final boolean ignoreCase;
+
+		Equal(String id, String value, boolean ignoreCase)
+		{
+			this.id = id;
+			this.value = value;
+			this.ignoreCase = ignoreCase;
+		}
+
+		boolean test(String v)
+		{
+			return ignoreCase ? v.equalsIgnoreCase(value) : v.equals(value);
+		}
+
+		@Override
+		boolean matches(Map<String, List<String>> entry)
+		{
+			List<String> values = entry.get(id);
+			if (values != null)
+			{
+				for (String v : values)
+				{
+					if (test(v))
+						return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		Collection<String> candidates(SearchIndex index)
+		{
+			if (!ignoreCase)
+				return index.named(id, value);
+
+			Set<String> union = new HashSet<String>();
+			for (String v : index.values(id))
+			{
+				if (test(v))
+					union.addAll(index.named(id, v));
+			}
+			return union;
+		}
+	}
+
+	/**
+	 * Wildcard matches and orderings, answered by testing each distinct value of the attribute once.
+	 */
+	private static class Test extends Equal
+	{
+		final char op;
+
+		final String[] parts;
+
+		/**
+		 * @param op '*' for a wildcard match, '&gt;' or '&lt;' for an ordering
+		 * @param parts The pieces between the wildcards, or the single value compared against
+		 */
+		Test(String id, char op, String[] parts)
+		{
+			super(id, null, false);
+			this.op = op;
+			this.parts = parts;
+		}
+
+		@Override
+		boolean test(String v)
+		{
+			switch (op)
+			{
+			case '>':
+				return compare(v, parts[0]) >= 0;
+			case '<':
+				return compare(v, parts[0]) <= 0;
+			default:
+				int last = parts.length - 1;
+				if (!v.startsWith(parts[0]) || v.length() < parts[0].length() + parts[last].length())
+					return false;
+				int at = parts[0].length();
+				for (int i = 1; i < last; i++)
+				{
+					at = v.indexOf(parts[i], at);
+					if (at < 0)
+						return false;
+					at += parts[i].length();
+				}
+				return v.length() - parts[last].length() >= at && v.endsWith(parts[last]);
+			}
+		}
+
+		@Override
+		Collection<String> candidates(SearchIndex index)
+		{
+			Set<String> union = new HashSet<String>();
+			for (String v : index.values(id))
+			{
+				if (test(v))
+					union.addAll(index.named(id, v));
+			}
+			return union;
+		}
+
+		private static int compare(String a, String b)
+		{
+			try
+			{
+				return Double.compare(Double.parseDouble(a), Double.parseDouble(b));
+			}
+			catch (NumberFormatException e)
+			{
+				return a.compareTo(b);
+			}
+		}
+	}
+
+	/**
+	 * A recursive descent parser over the string form.
+	 */
+	private static class Parser
+	{
+		final String s;
+
+		int pos;
+
+		Parser(String s)
+		{
+			this.s = s;
+		}
+
+		SearchFilter filter() throws InvalidSearchFilterException
+		{
+			expect('(');
+			SearchFilter f;
+			char c = peek();
+			if (c == '&' || c == '|')
+			{
+				pos++;
+				List<SearchFilter> list = new ArrayList<SearchFilter>();
+				while (peek() == '(')
+				{
+					list.add(filter());
+				}
+				f = c == '&' ? new And(list) : new Or(list);
+			}
+			else if (c == '!')
+			{
+				pos++;
+				f = new Not(filter());
+			}
+			else
+			{
+				f = item();
+			}
+			expect(')');
+			return f;
+		}
+
+		SearchFilter item() throws InvalidSearchFilterException
+		{
+			int start = pos;
+			while (pos < s.length() && "=~<>()".indexOf(s.charAt(pos)) < 0)
+			{
+				pos++;
+			}
+			String id = s.substring(start, pos).trim();
+			if (id.isEmpty())
+				throw new InvalidSearchFilterException("Missing attribute at " + start + " in " + s);
+
+			char op = peek();
+			if (op == '~' || op == '<' || op == '>')
+				pos++;
+			expect('=');
+
+			start = pos;
+			while (pos < s.length() && s.charAt(pos) != ')')
+			{
+				if (s.charAt(pos) == '(')
+					throw new InvalidSearchFilterException("Unescaped ( at " + pos + " in " + s);
+				pos++;
+			}
+			String raw = s.substring(start, pos);
+
+			switch (op)
+			{
+			case '~':
+				return new Equal(id, unescape(raw), true);
+			case '<':
+			case '>':
+				return new Test(id, op, new String[] { unescape(raw) });
+			default:
+				if (raw.equals("*"))
+					return new Present(id);
+				if (raw.indexOf('*') < 0)
+					return new Equal(id, unescape(raw), false);
+				String[] parts = raw.split("\\*", -1);
+				for (int i = 0; i < parts.length; i++)
+				{
+					parts[i] = unescape(parts[i]);
+				}
+				return new Test(id, '*', parts);
+			}
+		}
+
+		char peek() throws InvalidSearchFilterException
+		{
+			if (pos >= s.length())
+				throw new InvalidSearchFilterException("Unexpected end of " + s);
+			return s.charAt(pos);
+		}
+
+		void expect(char c) throws InvalidSearchFilterException
+		{
+			if (peek() != c)
+				throw new InvalidSearchFilterException("Expected " + c + " at " + pos + " in " + s);
+			pos++;
+		}
+
+		/**
+		 * Turns <tt>\xx</tt> hex escapes back into characters, reading them as UTF-8.
+		 */
+		String unescape(String v) throws InvalidSearchFilterException
+		{
+			if (v.indexOf('\\') < 0)
+				return v;
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+			for (int i = 0; i < bytes.length; i++)
+			{
+				if (bytes[i] == '\\')
+				{
+					if (i + 2 >= bytes.length)
+						throw new InvalidSearchFilterException("Bad escape in " + v);
+					try
+					{
+						out.write(Integer.parseInt(new String(bytes, i + 1, 2, StandardCharsets.US_ASCII), 16));
+					}
+					catch (NumberFormatException e)
+					{
+						throw new InvalidSearchFilterException("Bad escape in " + v);
+					}
+					i += 2;
+				}
+				else
+				{
+					out.write(bytes[i]);
+				}
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+}
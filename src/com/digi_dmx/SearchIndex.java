@@ -0,0 +1,513 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.naming.InterruptedNamingException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.SizeLimitExceededException;
+import javax.naming.TimeLimitExceededException;
+import javax.naming.RefAddr;
+import javax.naming.Reference;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+
+/**
+ * An inverted index over the bindings of a provider: for each attribute, and for the pseudo attributes
+ * <tt>class</tt> and <tt>factory</tt>, the names of the bindings having each value.  Typed attributes are indexed
+ * by their text, each element of a list separately.  Built in the background
+ * on the first search, then kept current by the writes made through {@link XMLContext}.  An index whose
+ * scan failed is dropped by the context and built again on the next search.  Changes made to
+ * the files behind its back aren't seen.
+ * <p>
+ * Reads take no locks.  Writes are serialized so the postings and the per-binding attributes agree.
+ * 
+ * @author Eric E Bardes
+ */
+class SearchIndex
+{
+	private static final Logger LOG = Logger.getLogger(SearchIndex.class.getName());
+
+	/** the pseudo attribute holding the class of a binding */
+	static final String CLASS = "class";
+
+	/** the pseudo attribute holding the factory of a binding */
+	static final String FACTORY = "factory";
+
+	/** attributes of each binding, by name in the namespace */
+	private final ConcurrentHashMap<String, Map<String, List<String>>> entries = new ConcurrentHashMap<String, Map<String, List<String>>>();
+
+	/** attribute, then value, then the names of the bindings having it */
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, Set<String>>> postings = new ConcurrentHashMap<String, ConcurrentHashMap<String, Set<String>>>();
+
+	private final CompletableFuture<Void> ready = new CompletableFuture<Void>();
+
+	/** names written while the initial scan runs, which the scan must leave alone; null once it's done */
+	private Set<String> touched = new HashSet<String>();
+
+	/**
+	 * Starts scanning the provider.  The index is usable at once for updates; searches wait for the scan.
+	 * 
+	 * @param ctx The root context, used to read bindings
+	 * @param p Its provider
+	 * @param executor Where to scan
+	 */
+	void build(final XMLContext ctx, final Provider p, Executor executor)
+	{
+		final SearchIndex index = this;
+		executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					index.scan(ctx, p, "");
+					synchronized (index)
+					{
+						index.touched = null;
+					}
+					index.ready.complete(null);
+				}
+				catch (Exception | Error e)
+				{
+					LOG.log(Level.FINE, "Unable to index " + p.uri, e);
+					index.ready.completeExceptionally(e);
+				}
+			}
+		});
+	}
+
+	private void scan(XMLContext ctx, Provider p, String prefix) throws Exception
+	{
+		for (String entry : p.list(prefix))
+		{
+			if (entry.endsWith("/"))
+			{
+				scan(ctx, p, prefix + entry);
+			}
+			else
+			{
+				String name = prefix + entry;
+				Reference ref;
+				try
+				{
+					ref = ctx.readReference(p, name);
+				}
+				catch (Exception e)
+				{
+					LOG.log(Level.WARNING, "Leaving " + name + " out of the search index", e);
+					continue;
+				}
+				synchronized (this)
+				{
+					if (!touched.contains(name))
+						add(name, ref);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits for the initial scan.
+	 * 
+	 * @param millis The longest to wait, 0 for as long as it takes
+	 * @throws TimeLimitExceededException if the scan didn't finish in time
+	 * @throws NamingException if the provider couldn't be scanned
+	 */
+	void await(int millis) throws NamingException
+	{
+		try
+		{
+			if (millis > 0)
+				ready.get(millis, TimeUnit.MILLISECONDS);
+			else
+				ready.get();
+		}
+		catch (TimeoutException e)
+		{
+			throw new TimeLimitExceededException("The namespace wasn't indexed within " + millis + "ms");
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			InterruptedNamingException ne = new InterruptedNamingException("Interrupted waiting for the namespace to be indexed");
+			ne.initCause(e);
+			throw ne;
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof NamingException)
+				throw (NamingException) e.getCause();
+			NamingException ne = new NamingException("The namespace couldn't be indexed");
+			ne.initCause(e.getCause());
+			throw ne;
+		}
+	}
+
+	/**
+	 * @return true if the initial scan failed, in which case the index will never be ready
+	 */
+	boolean isFailed()
+	{
+		return ready.isCompletedExceptionally();
+	}
+
+	/**
+	 * @param name A name in the namespace
+	 * @param ref What is now bound to it
+	 */
+	synchronized void put(String name, Reference ref)
+	{
+		if (touched != null)
+			touched.add(name);
+		drop(name);
+		add(name, ref);
+	}
+
+	/**
+	 * @param name A name in the namespace that is no longer bound
+	 */
+	synchronized void remove(String name)
+	{
+		if (touched != null)
+			touched.add(name);
+		drop(name);
+	}
+
+	private void add(String name, Reference ref)
+	{
+		Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+		value(values, CLASS, ref.getClassName());
+		value(values, FACTORY, ref.getFactoryClassName());
+		Enumeration<RefAddr> all = ref.getAll();
+		while (all.hasMoreElements())
+		{
+			RefAddr addr = all.nextElement();
+			if (!values.containsKey(addr.getType()))
+				values.put(addr.getType(), new ArrayList<String>(1));
+			Object content = addr.getContent();
+			if (content instanceof List)
+			{
+				for (Object o : (List<?>) content)
+				{
+					value(values, addr.getType(), o.toString());
+				}
+			}
+			else if (addr instanceof TypedRefAddr)
+			{
+				value(values, addr.getType(), ((TypedRefAddr) addr).getText());
+			}
+			else if (content != null)
+			{
+				value(values, addr.getType(), content.toString());
+			}
+		}
+
+		for (Map.Entry<String, List<String>> e : values.entrySet())
+		{
+			e.setValue(Collections.unmodifiableList(e.getValue()));
+			ConcurrentHashMap<String, Set<String>> byValue = postings.get(e.getKey());
+			if (byValue == null)
+			{
+				byValue = new ConcurrentHashMap<String, Set<String>>();
+				postings.put(e.getKey(), byValue);
+			}
+			/*
+			 * An attribute without values is still present.
+			 */
+			List<String> vs = e.getValue().isEmpty() ? Collections.singletonList("") : e.getValue();
+			for (String v : vs)
+			{
+				Set<String> names = byValue.get(v);
+				if (names == null)
+				{
+					names = ConcurrentHashMap.newKeySet();
+					byValue.put(v, names);
+				}
+				names.add(name);
+			}
+		}
+		entries.put(name, Collections.unmodifiableMap(values));
+	}
+
+	private static void value(Map<String, List<String>> values, String id, String v)
+	{
+		if (v == null)
+			return;
+		List<String> list = values.get(id);
+		if (list == null)
+		{
+			list = new ArrayList<String>(1);
+			values.put(id, list);
+		}
+		list.add(v);
+	}
+
+	private void drop(String name)
+	{
+		Map<String, List<String>> old = entries.remove(name);
+		if (old == null)
+			return;
+		for (Map.Entry<String, List<String>> e : old.entrySet())
+		{
+			ConcurrentHashMap<String, Set<String>> byValue = postings.get(e.getKey());
+			List<String> vs = e.getValue().isEmpty() ? Collections.singletonList("") : e.getValue();
+			for (String v : vs)
+			{
+				Set<String> names = byValue.get(v);
+				names.remove(name);
+				if (names.isEmpty())
+					byValue.remove(v);
+			}
+		}
+	}
+
+	/**
+	 * @return The names of the bindings with the attribute set to the value.
+	 */
+	Collection<String> named(String id, String value)
+	{
+		ConcurrentHashMap<String, Set<String>> byValue = postings.get(id);
+		Set<String> names = byValue == null ? null : byValue.get(value);
+		return names == null ? Collections.<String> emptySet() : names;
+	}
+
+	/**
+	 * @return The distinct values of the attribute.
+	 */
+	Collection<String> values(String id)
+	{
+		ConcurrentHashMap<String, Set<String>> byValue = postings.get(id);
+		return byValue == null ? Collections.<String> emptySet() : byValue.keySet();
+	}
+
+	/**
+	 * @return The names of the bindings having the attribute.
+	 */
+	Collection<String> having(String id)
+	{
+		ConcurrentHashMap<String, Set<String>> byValue = postings.get(id);
+		if (byValue == null)
+			return Collections.emptySet();
+		Set<String> names = new HashSet<String>();
+		for (Set<String> s : byValue.values())
+		{
+			names.addAll(s);
+		}
+		return names;
+	}
+
+	/**
+	 * Searches the index.  Bindings are matched, and results built, as the enumeration is read.
+	 * 
+	 * @param ctx The context searched, used to look up objects when the controls ask for them
+	 * @param name The base of the search relative to ctx
+	 * @param base The base of the search in the namespace
+	 * @param filter What to match
+	 * @param cons The scope, limits and what to return
+	 * @return The matching bindings, named relative to the base
+	 */
+	NamingEnumeration<SearchResult> search(XMLContext ctx, String name, String base, SearchFilter filter, SearchControls cons)
+	{
+		Collection<String> names;
+		if (cons.getSearchScope() == SearchControls.OBJECT_SCOPE)
+		{
+			names = Collections.singleton(base);
+		}
+		else
+		{
+			names = filter.candidates(this);
+			if (names == null)
+				names = entries.keySet();
+		}
+		return new Results(ctx, name, base, filter, cons, names.iterator());
+	}
+
+	/**
+	 * The lazily computed results of a search.
+	 */
+	private class Results implements NamingEnumeration<SearchResult>
+	{
+		private final XMLContext ctx;
+
+		private final String name;
+
+		private final String prefix;
+
+		private final SearchFilter filter;
+
+		private final SearchControls cons;
+
+		private final Iterator<String> candidates;
+
+		private SearchResult next;
+
+		private long count;
+
+		Results(XMLContext ctx, String name, String base, SearchFilter filter, SearchControls cons, Iterator<String> candidates)
+		{
+			this.ctx = ctx;
+			this.name = name;
+			this.prefix = base.isEmpty() ? "" : base + "/";
+			this.filter = filter;
+			this.cons = cons;
+			this.candidates = candidates;
+		}
+
+		@Override
+		public boolean hasMore() throws NamingException
+		{
+			if (next != null)
+				return true;
+
+			while (candidates.hasNext())
+			{
+				String n = candidates.next();
+				String relative;
+				if (cons.getSearchScope() == SearchControls.OBJECT_SCOPE)
+					relative = "";
+				else if (n.startsWith(prefix))
+					relative = n.substring(prefix.length());
+				else
+					continue;
+				if (cons.getSearchScope() == SearchControls.ONELEVEL_SCOPE && relative.indexOf('/') >= 0)
+					continue;
+
+				Map<String, List<String>> entry = entries.get(n);
+				if (entry == null || !filter.matches(entry))
+					continue;
+
+				if (cons.getCountLimit() > 0 && count >= cons.getCountLimit())
+					throw new SizeLimitExceededException("More than " + cons.getCountLimit() + " results");
+				count++;
+				next = result(relative, entry);
+				return true;
+			}
+			return false;
+		}
+
+		private SearchResult result(String relative, Map<String, List<String>> entry) throws NamingException
+		{
+			String[] wanted = cons.getReturningAttributes();
+			Attributes attrs = new BasicAttributes(false);
+			for (Map.Entry<String, List<String>> e : entry.entrySet())
+			{
+				String id = e.getKey();
+				if (id.equals(CLASS) || id.equals(FACTORY))
+					continue;
+				if (wanted != null && !contains(wanted, id))
+					continue;
+				BasicAttribute a = new BasicAttribute(id, true);
+				for (String v : e.getValue())
+				{
+					a.add(v);
+				}
+				attrs.put(a);
+			}
+
+			Object obj = null;
+			if (cons.getReturningObjFlag())
+				obj = ctx.lookup(relative.isEmpty() ? name : ctx.composeName(relative, name));
+			List<String> clazz = entry.get(CLASS);
+			return new SearchResult(relative, clazz == null ? null : clazz.get(0), obj, attrs, true);
+		}
+
+		private boolean contains(String[] all, String id)
+		{
+			for (String s : all)
+			{
+				if (s.equals(id))
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		public SearchResult next() throws NamingException
+		{
+			if (!hasMore())
+				throw new NoSuchElementException();
+			SearchResult r = next;
+			next = null;
+			return r;
+		}
+
+		@Override
+		public boolean hasMoreElements()
+		{
+			try
+			{
+				return hasMore();
+			}
+			catch (NamingException e)
+			{
+				return false;
+			}
+		}
+
+		@Override
+		public SearchResult nextElement()
+		{
+			try
+			{
+				return next();
+			}
+			catch (NamingException e)
+			{
+				NoSuchElementException nse = new NoSuchElementException(e.getMessage());
+				nse.initCause(e);
+				throw nse;
+			}
+		}
+
+		@Override
+		public void close()
+		{
+		}
+	}
+}
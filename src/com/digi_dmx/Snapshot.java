@@ -0,0 +1,177 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.naming.LinkLoopException;
+import javax.naming.LinkRef;
+import javax.naming.Name;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+import javax.naming.Reference;
+
+import com.digi_dmx.Generations.Generation;
+
+/**
+ * A consistent view of a namespace, taken with {@link XMLContext#snapshot()}.  Every lookup through a snapshot
+ * sees the bindings as they were when it was taken, whatever is written to the namespace meanwhile, so a
+ * service looking up several related names can't get some from before a change and some from after it.
+ * 
+ * <pre>
+ * try (Snapshot s = ctx.snapshot())
+ * {
+ *     DataSource primary = (DataSource) s.lookup("jdbc/primary");
+ *     DataSource replica = (DataSource) s.lookup("jdbc/replica");
+ * }
+ * </pre>
+ * 
+ * <p>Lookups take no lock and do no I/O to find the binding; the factory still runs on every lookup, as it does
+ * for {@link XMLContext#lookup(String)}.  Links are followed within the snapshot.  Directories aren't part of a
+ * snapshot.  Closing a snapshot lets its generation be reclaimed once no other snapshot holds it, and
+ * closing the last one stops the provider being polled for changes.
+ * 
+ * @author Eric E Bardes
+ */
+public class Snapshot implements AutoCloseable
+{
+	private final XMLContext ctx;
+
+	private final XMLContext root;
+
+	private final Generations generations;
+
+	private final long number;
+
+	private volatile Generation generation;
+
+	Snapshot(XMLContext ctx, XMLContext root, Generations generations, Generation generation)
+	{
+		this.ctx = ctx;
+		this.root = root;
+		this.generations = generations;
+		this.number = generation.number;
+		this.generation = generation;
+	}
+
+	/**
+	 * @return The generation of the namespace this snapshot reads.  Later snapshots have a higher number if
+	 * anything changed in between.
+	 */
+	public long getGeneration()
+	{
+		return number;
+	}
+
+	/**
+	 * Delegates to {@link #lookup(String)}.
+	 * 
+	 * @param name The name of the binding
+	 * @return The loaded object
+	 * @throws NamingException as for {@link #lookup(String)}
+	 */
+	public Object lookup(Name name) throws NamingException
+	{
+		return lookup(name.toString());
+	}
+
+	/**
+	 * @param name The name of a binding, relative to the context the snapshot was taken from.
+	 * @return The object as bound when the snapshot was taken.
+	 * @throws NameNotFoundException if the name wasn't bound then
+	 * @throws NamingException if the snapshot is closed or the factory fails
+	 */
+	public Object lookup(String name) throws NamingException
+	{
+		Generation g = generation();
+		String full = resolve(g, ctx.fullName(name), name);
+		return root.instantiate(full, g.reference(full));
+	}
+
+	/**
+	 * Reads a binding without loading or running its factory.
+	 * 
+	 * @param name The name of a binding, relative to the context the snapshot was taken from.
+	 * @return The reference as bound when the snapshot was taken, the link itself for a link.
+	 * @throws NameNotFoundException if the name wasn't bound then
+	 * @throws NamingException if the snapshot is closed
+	 */
+	public Reference getReference(String name) throws NamingException
+	{
+		Reference ref = generation().reference(ctx.fullName(name));
+		if (ref == null)
+			throw new NameNotFoundException(name);
+		return ref;
+	}
+
+	/**
+	 * @param g The generation
+	 * @param full The full name
+	 * @param name The name as given, for messages
+	 * @return The full name at the end of any links.
+	 * @throws NamingException if the name isn't bound or the links loop
+	 */
+	private static String resolve(Generation g, String full, String name) throws NamingException
+	{
+		Reference ref = g.reference(full);
+		Set<String> seen = null;
+		while (ref instanceof LinkRef)
+		{
+			if (seen == null)
+				seen = new HashSet<String>();
+			if (!seen.add(full))
+				throw new LinkLoopException("Link cycle through " + full);
+			full = Links.target(full, (LinkRef) ref);
+			ref = g.reference(full);
+		}
+		if (ref == null)
+			throw new NameNotFoundException(name);
+		return full;
+	}
+
+	private Generation generation() throws NamingException
+	{
+		Generation g = generation;
+		if (g == null)
+			throw new NamingException("Snapshot " + number + " is closed");
+		return g;
+	}
+
+	/**
+	 * Releases the generation.  Further lookups fail.
+	 */
+	@Override
+	public void close()
+	{
+		Generation g;
+		synchronized (this)
+		{
+			g = generation;
+			generation = null;
+		}
+		if (g != null)
+			generations.release();
+	}
+}
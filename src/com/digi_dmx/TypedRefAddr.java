@@ -0,0 +1,182 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.naming.RefAddr;
+
+/**
+ * An attribute declared with a <tt>type</tt>, holding the value already converted.  Factories get the value from
+ * {@link #getContent()} as:
+ * <ul>
+ * <li><tt>int</tt>: an {@link Integer}</li>
+ * <li><tt>long</tt>: a {@link Long}</li>
+ * <li><tt>boolean</tt>: a {@link Boolean}, from <tt>true</tt> or <tt>false</tt></li>
+ * <li><tt>duration</tt>: a {@link Duration}, from ISO-8601 such as <tt>PT30S</tt> or a number and unit such as
+ * <tt>30s</tt>, <tt>500ms</tt>, <tt>5m</tt>, <tt>2h</tt> or <tt>1d</tt></li>
+ * <li><tt>list</tt>: an unmodifiable {@link List} of strings, from a comma separated value</li>
+ * <li><tt>base64</tt>: a <tt>byte[]</tt></li>
+ * </ul>
+ * The text is kept so the attribute is written back as it was read.
+ * 
+ * @author Eric E Bardes
+ */
+public class TypedRefAddr extends RefAddr
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final Pattern DURATION = Pattern.compile("(\\d+)\\s*(ms|s|m|h|d)");
+
+	private final String kind;
+
+	private final String text;
+
+	private final Object content;
+
+	/**
+	 * @param addrType The attribute name
+	 * @param kind One of int, long, boolean, duration, list or base64
+	 * @param text The value as written
+	 * @throws IllegalArgumentException if the kind is unknown or the text isn't a value of that kind
+	 */
+	public TypedRefAddr(String addrType, String kind, String text)
+	{
+		super(addrType);
+		this.kind = kind;
+		this.text = text;
+		try
+		{
+			this.content = text == null ? null : convert(kind, text.trim());
+		}
+		catch (IllegalArgumentException | DateTimeParseException e)
+		{
+			throw new IllegalArgumentException("Attribute " + addrType + " is not a valid " + kind + ": " + text, e);
+		}
+	}
+
+	private static Object convert(String kind, String text)
+	{
+		switch (kind)
+		{
+		case "int":
+			return Integer.valueOf(text);
+		case "long":
+			return Long.valueOf(text);
+		case "boolean":
+			if (text.equalsIgnoreCase("true"))
+				return Boolean.TRUE;
+			if (text.equalsIgnoreCase("false"))
+				return Boolean.FALSE;
+			throw new IllegalArgumentException("Expected true or false");
+		case "duration":
+			Matcher m = DURATION.matcher(text);
+			if (!m.matches())
+				return Duration.parse(text);
+			long n = Long.parseLong(m.group(1));
+			switch (m.group(2))
+			{
+			case "ms":
+				return Duration.ofMillis(n);
+			case "s":
+				return Duration.ofSeconds(n);
+			case "m":
+				return Duration.ofMinutes(n);
+			case "h":
+				return Duration.ofHours(n);
+			default:
+				return Duration.of(n, ChronoUnit.DAYS);
+			}
+		case "list":
+			List<String> list = new ArrayList<String>();
+			for (String s : text.split(","))
+			{
+				if (!s.trim().isEmpty())
+					list.add(s.trim());
+			}
+			return Collections.unmodifiableList(list);
+		case "base64":
+			return Base64.getMimeDecoder().decode(text);
+		default:
+			throw new IllegalArgumentException("Unknown type " + kind);
+		}
+	}
+
+	/**
+	 * @return The converted value
+	 */
+	@Override
+	public Object getContent()
+	{
+		return content;
+	}
+
+	/**
+	 * @return The type the attribute was declared with
+	 */
+	public String getKind()
+	{
+		return kind;
+	}
+
+	/**
+	 * @return The value as written
+	 */
+	public String getText()
+	{
+		return text;
+	}
+
+	/**
+	 * Compares the name, type and text, so attributes holding arrays compare equal.
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (!(obj instanceof TypedRefAddr))
+			return false;
+		TypedRefAddr other = (TypedRefAddr) obj;
+		return getType().equals(other.getType()) && kind.equals(other.kind) && (text == null ? other.text == null : text.equals(other.text));
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return getType().hashCode() ^ kind.hashCode() ^ (text == null ? 0 : text.hashCode());
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Type: " + getType() + " (" + kind + ")\nContent: " + text + "\n";
+	}
+}
@@ -23,30 +23,67 @@ SOFTWARE.
 */
 package com.digi_dmx;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.naming.Binding;
 import javax.naming.CompositeName;
+import javax.naming.ConfigurationException;
 import javax.naming.Context;
+import javax.naming.ContextNotEmptyException;
+import javax.naming.InterruptedNamingException;
+import javax.naming.LinkRef;
 import javax.naming.Name;
+import javax.naming.NameAlreadyBoundException;
 import javax.naming.NameClassPair;
+import javax.naming.NameNotFoundException;
 import javax.naming.NameParser;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.OperationNotSupportedException;
 import javax.naming.RefAddr;
 import javax.naming.Reference;
 import javax.naming.Referenceable;
 import javax.naming.StringRefAddr;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.AttributeModificationException;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InvalidAttributeValueException;
+import javax.naming.directory.ModificationItem;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
 import javax.naming.spi.ObjectFactory;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -57,16 +94,48 @@ import com.digi_dmx.gen.Attr;
 
 /**
  * The Primary Class. This class implements Context. More to the point, a subset of Context that works for
- * most application like JPA providors and general resource management of lookup/bind. It does not support subcontexts.
+ * most application like JPA providors and general resource management of lookup/bind. Directories within the
+ * provider are presented as subcontexts.  As a DirContext, the <tt>attr</tt> elements of a binding can be
+ * read and changed without instantiating it.  A {@link LinkRef} binding is an alias for another name.
  * Unsupported methods will throw {@link java.lang.NoSuchMethodError}. 
  * 
  * @author Eric E Bardes
  */
-public class XMLContext implements Context
+public class XMLContext implements DirContext
 {
+	/**
+	 * Environment property holding a threshold in milliseconds.  Any lookup or bind that takes longer
+	 * is logged with a breakdown of where the time went.  Unset or zero disables the trace.
+	 */
+	public static final String SLOW_THRESHOLD = "com.digi_dmx.slowThreshold";
+
+	/**
+	 * Environment property holding how often, in milliseconds, a namespace is polled for changes made behind
+	 * the context's back while it has snapshots open.  Defaults to 1000, zero disables polling.
+	 * See {@link #snapshot()}.
+	 */
+	public static final String SNAPSHOT_INTERVAL = "com.digi_dmx.snapshotInterval";
+
+	/**
+	 * Environment property holding how often, in milliseconds, the changeable layers of a layered provider URL
+	 * are checked for names added or removed behind the context's back.  Defaults to 1000, zero checks on every
+	 * lookup.  Writes through the context are seen at once either way.
+	 */
+	public static final String OVERLAY_INTERVAL = "com.digi_dmx.overlayInterval";
+
+	private static final Logger LOG = Logger.getLogger(XMLContext.class.getName());
+
+	private static final String[] LOOKUP_PHASES = { "resolve", "fetch", "parse", "load", "instantiate" };
+
+	private static final String[] BIND_PHASES = { "resolve", "open", "write" };
+
 	private static final String DEFAULT_ENCODING = "UTF-8";
 
-	private static final String FILE_EXTENSION = ".xml";
+	/** built on first use; creating one is far dearer than the document it reads or writes */
+	private static volatile JAXBContext jaxb;
+
+	/** the address type {@link LinkRef} keeps its link name under */
+	private static final String LINK_ADDRESS = "LinkAddress";
 
 	private final Hashtable<String, String> env = new Hashtable<String, String>();
 
@@ -74,6 +143,70 @@ public class XMLContext implements Context
 	
 	private String scheme;
 
+	private Provider provider;
+
+	private long slowThreshold;
+
+	private long snapshotInterval = 1000L;
+
+	private long overlayInterval = OverlayProvider.CHECK_INTERVAL;
+
+	/**
+	 * Parsed references, only kept when the provider's contents can't change.
+	 */
+	private final ConcurrentHashMap<String, Reference> references = new ConcurrentHashMap<String, Reference>();
+
+	/**
+	 * Subcontexts already handed out, by their name in the namespace.  Shared by the initial context
+	 * and all of its subcontexts so destroying a directory is seen by every context.
+	 */
+	private final ConcurrentHashMap<String, XMLContext> children;
+
+	private final String nameInNamespace;
+
+	/**
+	 * The initial context, which link names are resolved against.
+	 */
+	private final XMLContext root;
+
+	/**
+	 * Resolved link chains, shared like {@link #children}.
+	 */
+	private final Links links;
+
+	/**
+	 * The versions of the namespace read by snapshots, shared like {@link #children}.
+	 */
+	private final Generations generations;
+
+	private volatile Executor executor;
+
+	/**
+	 * The search index of the namespace, shared like {@link #children}.
+	 */
+	private final AtomicReference<SearchIndex> searchIndex;
+
+	/**
+	 * Lookups still running, by full name, shared like {@link #children}.  Callers that ask for one of these
+	 * names, through any context of the namespace, wait for the running lookup instead of starting their own.
+	 */
+	private final ConcurrentHashMap<String, Pending> pending;
+
+	/**
+	 * The running lookup each blocked caller waits for, shared like {@link #pending}, so a wait that would close
+	 * a cycle of lookups waiting on each other is refused instead of hanging.
+	 */
+	private final ConcurrentHashMap<Thread, Pending> waiting;
+
+	/**
+	 * A lookup in progress.
+	 */
+	private static class Pending extends CompletableFuture<Object>
+	{
+		/** the thread loading the binding, null until an asynchronous lookup starts */
+		volatile Thread owner;
+	}
+
 	/**
 	 * 
 	 * @param environment
@@ -81,6 +214,14 @@ public class XMLContext implements Context
 	 */
 	XMLContext(Hashtable<?, ?> environment) throws NamingException
 	{
+		this.nameInNamespace = "";
+		this.root = this;
+		this.links = new Links();
+		this.generations = new Generations(this);
+		this.children = new ConcurrentHashMap<String, XMLContext>();
+		this.pending = new ConcurrentHashMap<String, Pending>();
+		this.waiting = new ConcurrentHashMap<Thread, Pending>();
+		this.searchIndex = new AtomicReference<SearchIndex>();
 		for (Entry<?, ?> entry : environment.entrySet())
 		{
 			addToEnvironment((String) entry.getKey(), entry.getValue());
@@ -93,6 +234,33 @@ public class XMLContext implements Context
 		}
 	}
 
+	/**
+	 * Creates a subcontext bound to a directory of the parent's provider.
+	 * 
+	 * @param parent The parent context
+	 * @param name The directory, relative to the parent
+	 * @param provider The parent's provider rooted at the directory
+	 */
+	private XMLContext(XMLContext parent, String name, Provider provider)
+	{
+		this.env.putAll(parent.env);
+		this.uri = parent.uri;
+		this.scheme = parent.scheme;
+		this.slowThreshold = parent.slowThreshold;
+		this.snapshotInterval = parent.snapshotInterval;
+		this.overlayInterval = parent.overlayInterval;
+		this.executor = parent.executor;
+		this.provider = provider;
+		this.nameInNamespace = parent.composeName(name, parent.nameInNamespace);
+		this.root = parent.root;
+		this.children = parent.children;
+		this.pending = parent.pending;
+		this.waiting = parent.waiting;
+		this.links = parent.links;
+		this.generations = parent.generations;
+		this.searchIndex = parent.searchIndex;
+	}
+
 	/**
 	 * This is a handy method for initializing the global JNDI environment if for some reason, the defaults don't come through.
 	 */
@@ -115,12 +283,52 @@ public class XMLContext implements Context
 		val = propertySubstitute(val);
 		if (propName.equals(PROVIDER_URL))
 		{
-			this.uri = URI.create(val);
+			if (provider != null)
+			{
+				provider.close();
+			}
+			this.provider = Provider.forUrl(val);
+			if (provider instanceof OverlayProvider)
+				((OverlayProvider) provider).setCheckInterval(overlayInterval);
+			this.uri = Provider.uri(val.trim().split("\\s+")[0]);
 			this.scheme = uri.getScheme();
+			references.clear();
+			children.clear();
+			links.clear();
+			generations.clear();
+			searchIndex.set(null);
+		}
+		else if (propName.equals(SLOW_THRESHOLD))
+		{
+			this.slowThreshold = val.isEmpty() ? 0L : number(propName, val) * 1000000L;
+		}
+		else if (propName.equals(SNAPSHOT_INTERVAL))
+		{
+			this.snapshotInterval = val.isEmpty() ? 0L : number(propName, val);
+		}
+		else if (propName.equals(OVERLAY_INTERVAL))
+		{
+			this.overlayInterval = val.isEmpty() ? OverlayProvider.CHECK_INTERVAL : number(propName, val);
+			if (provider instanceof OverlayProvider)
+				((OverlayProvider) provider).setCheckInterval(overlayInterval);
 		}
 		return env.put(propName, val);
 	}
 
+	private static long number(String propName, String val) throws ConfigurationException
+	{
+		try
+		{
+			return Long.parseLong(val.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			ConfigurationException ce = new ConfigurationException(propName + " must be a number, not " + val);
+			ce.setRootCause(e);
+			throw ce;
+		}
+	}
+
 	/**
 	 * This method provides environment expansion.  Values in the form %{user.dir} expand to the corresponding value. 
 	 * 
@@ -158,63 +366,235 @@ public class XMLContext implements Context
 
 	/**
 	 * Saves a reference to the given name.  This method technically differs from many implementations
-	 * in that it permits <tt>rebind</tt> behaviour.  In fact, {@link #rebind(String, Object)} delegates
-	 * to this method.
+	 * in that it permits <tt>rebind</tt> behaviour.  Over <tt>http</tt> it differs from
+	 * {@link #rebind(String, Object)} in refusing to replace a binding that changed since this context
+	 * last read or wrote it.
 	 * 
 	 * @param name The name of the reference.  This name is used to construct
 	 * a location by appending the name to the Provider URL and appending ".xml".  
-	 * See {@link #makePath(String)} for full details.
+	 * The file scheme and <tt>http</tt>, against a writable {@link ContextServer}, can be written to.
 	 * 
-	 * @param obj An object to save.  The object <b>must</b> implement Referenecable.
+	 * @param obj An object to save.  The object <b>must</b> implement Referenecable or be a Reference,
+	 * such as a {@link LinkRef}.
 	 * 
 	 * @throws NamingException Object does not implement Referenceable or some other problem occurs during processing.
 	 */
 	@Override
 	public void bind(String name, Object obj) throws NamingException
 	{
+		store(name, referenceOf(obj), false);
+	}
+
+	/**
+	 * @param obj An object to save
+	 * @return The reference to write for it.
+	 * @throws NamingException if the object is neither a Reference nor Referenceable
+	 */
+	static Reference referenceOf(Object obj) throws NamingException
+	{
+		if (obj instanceof Reference)
+			return (Reference) obj;
 		if (obj instanceof Referenceable)
+			return ((Referenceable) obj).getReference();
+		throw new NamingException("Class must implement Referenceable");
+	}
+
+	/**
+	 * Writes a reference to the given name, replacing whatever was there.
+	 * 
+	 * @param name The name of the reference
+	 * @param ref The reference to write
+	 * @param replace true to replace the binding even if it changed since it was read
+	 * @throws NamingException if the provider can't be written or some other problem occurs during processing.
+	 */
+	private void store(String name, Reference ref, boolean replace) throws NamingException
+	{
+		BindEvent event = new BindEvent();
+		event.begin();
+		boolean timed = slowThreshold > 0;
+		long start = timed ? System.nanoTime() : 0L;
+		long mark = start, resolveTime = 0L, openTime = 0L, writeTime = 0L;
+		Provider p = provider();
+		Object location = null;
+
+		OutputStream fos = null;
+		boolean closed = false;
+		try
+		{
+			if (!p.isWritable())
+			{
+				throw new OperationNotSupportedException("Scheme “" + scheme + "” is not supported by XMLContext.bind()");
+			}
+			location = replace ? p.locateForReplace(name) : p.locateForWrite(name);
+			if (timed)
+			{
+				long now = System.nanoTime();
+				resolveTime = now - mark;
+				mark = now;
+			}
+			fos = p.create(location);
+			if (timed)
+			{
+				long now = System.nanoTime();
+				openTime = now - mark;
+				mark = now;
+			}
+			
+			saveXML(ref, fos);
+
+			/*
+			 * Some providers only send the document when the stream is closed.  A close that fails isn't tried again.
+			 */
+			closed = true;
+			fos.close();
+			written(name, ref, p.lastModified(location));
+		}
+		catch (NamingException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			NamingException ne = new NamingException();
+			ne.setRootCause(e);
+			throw ne;
+		}
+		finally
 		{
-			Reference ref = ((Referenceable) obj).getReference();
+			/*
+			 * The document wasn't written whole: drop it rather than publish what there is of it.
+			 */
+			if (fos != null && !closed)
+				p.abort(fos);
 
-			FileOutputStream fos = null;
-			try
+			if (event.shouldCommit())
 			{
-				if (scheme == null || scheme.startsWith("file"))
+				event.name = name;
+				event.scheme = scheme;
+				event.factoryClass = ref.getFactoryClassName();
+				event.commit();
+			}
+
+			if (timed)
+			{
+				long now = System.nanoTime();
+				if (fos != null)
 				{
-					File f = makePath(name);
-					fos = new FileOutputStream(f);
+					writeTime = now - mark;
 				}
-				else
+				if (now - start > slowThreshold)
 				{
-					throw new NamingException("Scheme “" + scheme + "” is not supported by XMLContext.bind()");
+					traceSlow("bind", name, p.describe(location), now - start, BIND_PHASES, resolveTime, openTime, writeTime);
 				}
-				
-				saveXML(ref, fos);
 			}
-			catch (Exception e)
-			{
-				NamingException ne = new NamingException();
-				ne.setRootCause(e);
-				throw ne;
-			}
-			finally
+		}
+	}
+
+	/**
+	 * Brings the caches and indexes up to date after a binding was written.
+	 * 
+	 * @param name The binding, relative to this context
+	 * @param ref What was written
+	 * @param stamp Its modification time as reported by the provider
+	 */
+	private void written(String name, Reference ref, long stamp)
+	{
+		references.remove(name);
+		links.invalidate(fullName(name));
+		generations.put(fullName(name), ref, stamp);
+
+		SearchIndex index = searchIndex.get();
+		if (index != null)
+			index.put(fullName(name), ref);
+	}
+
+	/**
+	 * Brings the caches and indexes up to date after a binding was removed.
+	 * 
+	 * @param name The binding, relative to this context
+	 */
+	private void unbound(String name)
+	{
+		references.remove(name);
+		links.invalidate(fullName(name));
+		generations.remove(fullName(name));
+
+		SearchIndex index = searchIndex.get();
+		if (index != null)
+			index.remove(fullName(name));
+	}
+
+	/**
+	 * @return A batch of writes to this context, sent together by {@link Batch#commit()}.
+	 */
+	public Batch batch()
+	{
+		return new Batch(this);
+	}
+
+	/**
+	 * Writes a batch.  Every write that succeeds is applied even if others fail.
+	 * 
+	 * @param writes Names relative to this context, in order, to the reference to write or null to unbind.
+	 * @param fresh The names among them that must not be bound yet
+	 * @throws NamingException listing the writes that failed, a {@link NameAlreadyBoundException} if they all
+	 * failed for being bound already
+	 */
+	void commit(Map<String, Reference> writes, Set<String> fresh) throws NamingException
+	{
+		Provider p = provider();
+		if (!p.isWritable())
+		{
+			throw new OperationNotSupportedException("Scheme “" + scheme + "” is not supported by XMLContext.bind()");
+		}
+
+		Map<String, byte[]> docs = new LinkedHashMap<String, byte[]>();
+		try
+		{
+			for (Entry<String, Reference> w : writes.entrySet())
 			{
-				try
-				{
-					if (fos != null)
-						fos.close();
-				}
-				catch (IOException e)
+				byte[] doc = null;
+				if (w.getValue() != null)
 				{
-					NamingException ne = new NamingException();
-					ne.setRootCause(e);
-					throw ne;
+					ByteArrayOutputStream bos = new ByteArrayOutputStream();
+					saveXML(w.getValue(), bos);
+					doc = bos.toByteArray();
 				}
+				docs.put(w.getKey(), doc);
 			}
 		}
-		else
+		catch (JAXBException e)
+		{
+			NamingException ne = new NamingException("Unable to write the batch");
+			ne.setRootCause(e);
+			throw ne;
+		}
+
+		Map<String, Exception> failed = p.writeAll(docs, fresh);
+		for (Entry<String, Reference> w : writes.entrySet())
+		{
+			String name = w.getKey();
+			if (failed.containsKey(name))
+				continue;
+			if (w.getValue() == null)
+				unbound(name);
+			else
+				written(name, w.getValue(), p.lastModified(p.locateForWrite(name)));
+		}
+
+		if (!failed.isEmpty())
 		{
-			throw new NamingException("Class must implement Referenceable");
+			StringBuilder sb = new StringBuilder().append(failed.size()).append(" of ").append(writes.size()).append(" writes failed:");
+			boolean bound = true;
+			for (Entry<String, Exception> f : failed.entrySet())
+			{
+				Exception e = f.getValue();
+				sb.append(' ').append(f.getKey()).append(" (").append(e instanceof NameAlreadyBoundException ? "already bound" : e.getMessage()).append(')');
+				bound &= e instanceof NameAlreadyBoundException;
+			}
+			NamingException ne = bound ? new NameAlreadyBoundException(sb.toString()) : new NamingException(sb.toString());
+			ne.setRootCause(failed.values().iterator().next());
+			throw ne;
 		}
 	}
 
@@ -225,16 +605,19 @@ public class XMLContext implements Context
 	 * @param fos
 	 * @throws JAXBException
 	 */
-	private void saveXML(Reference ref, FileOutputStream fos) throws JAXBException
+	private void saveXML(Reference ref, OutputStream fos) throws JAXBException
 	{
-		JAXBContext ctx = JAXBContext.newInstance(com.digi_dmx.gen.Context.class);
-		Marshaller m = ctx.createMarshaller();
+		Marshaller m = jaxb().createMarshaller();
 		m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
 		m.setProperty(Marshaller.JAXB_ENCODING, DEFAULT_ENCODING);
 		
 		com.digi_dmx.gen.Context save = new com.digi_dmx.gen.Context();
 		save.setFactory(ref.getFactoryClassName());
 		save.setClazz(ref.getClassName());
+		if (ref instanceof XMLReference)
+		{
+			save.setLazy(((XMLReference) ref).getLazy());
+		}
 		Enumeration<RefAddr> all = ref.getAll();
 		while (all.hasMoreElements())
 		{
@@ -242,7 +625,12 @@ public class XMLContext implements Context
 			Attr attr = new Attr();
 			attr.setName(refAddr.getType());
 			Object content = refAddr.getContent();
-			if (content != null)
+			if (refAddr instanceof TypedRefAddr)
+			{
+				attr.setType(((TypedRefAddr) refAddr).getKind());
+				attr.setValue(((TypedRefAddr) refAddr).getText());
+			}
+			else if (content != null)
 			{
 				attr.setValue(content.toString());
 			}
@@ -253,84 +641,147 @@ public class XMLContext implements Context
 	}
 
 	/**
-	 * @param name This name is used to construct a location by appending the name to the Provider URL and appending ".xml".  Directories are created as required.  
-	 * @return A file
+	 * @return The provider for the current {@link #PROVIDER_URL}
+	 * @throws NamingException if the URL is missing or its scheme isn't supported.
 	 */
-	private File makePath(String name)
+	Provider provider() throws NamingException
 	{
-		File f = new File(new File(uri.getPath()), name + FILE_EXTENSION);
-		File path = f.getParentFile();
-		if (!path.isDirectory())
-			path.mkdirs();
-		return f;
+		Provider p = provider;
+		if (p == null)
+		{
+			if (uri == null)
+				throw new NamingException("No " + PROVIDER_URL + " has been configured");
+			throw new NamingException("Scheme “" + scheme + "” not supported by XMLContext");
+		}
+		return p;
 	}
 
 	/**
-	 * In this implementation, no operation.
+	 * On the root context, releases what the provider holds open, such as an archive's file or the refresh timers
+	 * of an http provider.  Subcontexts share the root's provider, so closing one is no operation.
 	 */
 	@Override
 	public void close() throws NamingException
 	{
+		if (root == this && provider != null)
+			provider.close();
 	}
 
 	/**
-	 * This implementation does not implement this method.
-	 * @throws NoSuchMethodError This method isn't implemented
+	 * Appends the name to the prefix.
 	 */
 	@Override
 	public Name composeName(Name name, Name prefix) throws NamingException
 	{
-		throw new NoSuchMethodError();
+		Name result = (Name) prefix.clone();
+		result.addAll(name);
+		return result;
 	}
 
 	/**
-	 * This implementation does not implement this method.
-	 * @throws NoSuchMethodError This method isn't implemented
+	 * Joins the prefix and the name with a slash.
 	 */
 	@Override
-	public String composeName(String name, String prefix) throws NamingException
+	public String composeName(String name, String prefix)
 	{
-		throw new NoSuchMethodError();
+		if (prefix == null || prefix.isEmpty())
+			return name;
+		if (prefix.endsWith("/"))
+			return prefix + name;
+		return prefix + "/" + name;
 	}
 
 	/**
-	 * This implementation does not implement this method.
-	 * @throws NoSuchMethodError This method isn't implemented
+	 * @return The name relative to the root of the namespace.
+	 */
+	String fullName(String name)
+	{
+		return name.isEmpty() ? nameInNamespace : composeName(name, nameInNamespace);
+	}
+
+	/**
+	 * Delegates to {@link #createSubcontext(String)}.
 	 */
 	@Override
 	public Context createSubcontext(Name name) throws NamingException
 	{
-		throw new NoSuchMethodError();
+		return createSubcontext(name.toString());
 	}
 
 	/**
-	 * This implementation does not implement this method.
-	 * @throws NoSuchMethodError This method isn't implemented
+	 * Creates a directory in the provider.  Only the file scheme can be written to.
+	 * 
+	 * @param name The directory relative to this context
+	 * @return A context bound to the new directory
+	 * @throws NameAlreadyBoundException if the directory already exists
 	 */
 	@Override
 	public Context createSubcontext(String name) throws NamingException
 	{
-		throw new NoSuchMethodError();
+		name = trimSlash(name);
+		Provider p = provider();
+		if (p.isDirectory(name))
+			throw new NameAlreadyBoundException(name);
+		p.createDirectory(name);
+		return subcontext(p, name);
 	}
 
 	/**
-	 * This implementation does not implement this method.
-	 * @throws NoSuchMethodError This method isn't implemented
+	 * Delegates to {@link #destroySubcontext(String)}.
 	 */
 	@Override
 	public void destroySubcontext(Name name) throws NamingException
 	{
-		throw new NoSuchMethodError();
+		destroySubcontext(name.toString());
 	}
 
 	/**
-	 * This implementation does not implement this method.
-	 * @throws NoSuchMethodError  This method isn't implemented
+	 * Removes an empty directory from the provider.  Any subcontext previously returned for it, or for a
+	 * directory below it, is forgotten.
+	 * 
+	 * @param name The directory relative to this context. A directory that doesn't exist is ignored.
+	 * @throws ContextNotEmptyException if the directory still has bindings
 	 */
 	@Override
 	public void destroySubcontext(String name) throws NamingException
 	{
-		throw new NoSuchMethodError();
+		name = trimSlash(name);
+		provider().deleteDirectory(name);
+
+		name = composeName(name, nameInNamespace);
+		links.invalidate(name);
+		String prefix = name + "/";
+		for (String n : children.keySet())
+		{
+			if (n.equals(name) || n.startsWith(prefix))
+				children.remove(n);
+		}
+	}
+
+	/**
+	 * @param p The provider of this context
+	 * @param name A directory relative to this context
+	 * @return The subcontext for the directory, created on first use.
+	 */
+	private XMLContext subcontext(Provider p, String name)
+	{
+		String key = composeName(name, nameInNamespace);
+		XMLContext child = children.get(key);
+		if (child == null)
+		{
+			child = new XMLContext(this, name, p.child(name));
+			XMLContext prior = children.putIfAbsent(key, child);
+			if (prior != null)
+				child = prior;
+		}
+		return child;
+	}
+
+	private static String trimSlash(String name)
+	{
+		while (name.endsWith("/"))
+			name = name.substring(0, name.length() - 1);
+		return name;
 	}
 
 	/**
@@ -343,13 +794,12 @@ public class XMLContext implements Context
 	}
 
 	/**
-	 * This implementation does not implement this method.
-	 * @throws NoSuchMethodError  This method isn't implemented
+	 * @return The directory this context is bound to, relative to the Provider URL. Empty for the initial context.
 	 */
 	@Override
 	public String getNameInNamespace() throws NamingException
 	{
-		throw new NoSuchMethodError();
+		return nameInNamespace;
 	}
 
 	/**
@@ -373,23 +823,112 @@ public class XMLContext implements Context
 	}
 
 	/**
-	 * This implementation does not implement this method.
-	 * @throws NoSuchMethodError  This method isn't implemented
+	 * Delegates to {@link #list(String)}.
 	 */
 	@Override
 	public NamingEnumeration<NameClassPair> list(Name name) throws NamingException
 	{
-		throw new NoSuchMethodError();
+		return list(name.toString());
 	}
 
 	/**
-	 * This implementation does not implement this method.
-	 * @throws NoSuchMethodError  This method isn't implemented
+	 * Lists the bindings and directories directly under a name.  The class of a binding is read from its
+	 * XML file, directories are reported as {@link XMLContext}.
+	 * 
+	 * @param name A directory within the provider, or the empty string for the top.
+	 * @return The names found.
+	 * @throws NamingException if the provider can't be listed.
 	 */
 	@Override
 	public NamingEnumeration<NameClassPair> list(String name) throws NamingException
 	{
-		throw new NoSuchMethodError();
+		Provider p = provider();
+		String prefix = name.isEmpty() || name.endsWith("/") ? name : name + "/";
+		try
+		{
+			List<NameClassPair> pairs = new ArrayList<NameClassPair>();
+			for (String entry : p.list(prefix))
+			{
+				if (entry.endsWith("/"))
+				{
+					pairs.add(new NameClassPair(entry.substring(0, entry.length() - 1), XMLContext.class.getName()));
+				}
+				else
+				{
+					pairs.add(new NameClassPair(entry, readReference(p, prefix + entry).getClassName()));
+				}
+			}
+			return new ListEnumeration<NameClassPair>(pairs);
+		}
+		catch (NamingException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			NamingException ne = new NamingException();
+			ne.initCause(e);
+			throw ne;
+		}
+	}
+
+	/**
+	 * Reads the binding for a name without loading or running its factory.  Useful for tools and for
+	 * objects that want to notice their own binding changing.
+	 * 
+	 * @param name The name of the binding
+	 * @return The reference as stored
+	 * @throws NameNotFoundException if there's no such binding
+	 * @throws NamingException if the binding can't be read
+	 */
+	public Reference getReference(String name) throws NamingException
+	{
+		try
+		{
+			return readReference(provider(), name);
+		}
+		catch (NamingException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			NamingException ne = new NamingException();
+			ne.initCause(e);
+			throw ne;
+		}
+	}
+
+	/**
+	 * Reads the reference for a name without any instrumentation, going through the cache when the
+	 * provider allows it.
+	 * 
+	 * @param p The provider
+	 * @param name The binding
+	 * @return The parsed reference
+	 * @throws Exception if the binding can't be read
+	 */
+	Reference readReference(Provider p, String name) throws Exception
+	{
+		Reference ref = references.get(name);
+		if (ref != null)
+			return ref;
+
+		try (InputStream fis = p.open(p.locate(name)))
+		{
+			ref = parseXML(fis);
+		}
+		catch (FileNotFoundException | NoSuchFileException e)
+		{
+			NameNotFoundException ne = new NameNotFoundException(name);
+			ne.setRootCause(e);
+			throw ne;
+		}
+		if (p.isCacheable())
+		{
+			references.putIfAbsent(name, ref);
+		}
+		return ref;
 	}
 
 	/**
@@ -422,37 +961,223 @@ public class XMLContext implements Context
 	}
 
 	/**
-	 * @param name The name of the resource to load.  The name to file translation is provided by {@link #makePath(String)}.
-	 * @return The loaded object.
+	 * @param name The name of the resource to load.  The name to location translation is done by the provider
+	 * chosen by the scheme of the Provider URL: <tt>file</tt>, <tt>http</tt> or <tt>classpath</tt>.
+	 * 
+	 * <p>Concurrent lookups of the same name are coalesced: the first caller loads the binding and the others
+	 * wait for it and receive the same object, or the same exception.  A burst of lookups at startup therefore
+	 * parses the file and runs the factory once.
+	 * 
+	 * <p>A name bound to a {@link LinkRef} yields the object at the end of the chain of links.  The chain is
+	 * remembered, so later lookups of the alias read no more than a lookup of the name it points to.
+	 * 
+	 * @return The loaded object.  A directory yields a subcontext bound to it; subcontexts are kept and reused.
 	 * @throws NamingException if the object is not found, or errors occurred while loading or validating.
 	 */
 	@Override
 	public Object lookup(String name) throws NamingException
 	{
-		InputStream fis = null;
+		Object known = knownContext(name);
+		if (known != null)
+			return known;
+
+		Links.Chain chain = links.get(fullName(name), root.provider());
+		if (chain != null)
+			return root.lookup(chain.target);
+
+		String key = fullName(name);
+		Pending f = new Pending();
+		f.owner = Thread.currentThread();
+		Pending prior = pending.putIfAbsent(key, f);
+		if (prior != null)
+			return await(key, prior);
+
 		try
 		{
-			if (scheme == null || scheme.equalsIgnoreCase("file"))
+			Object instance = load(name);
+			pending.remove(key, f);
+			f.complete(instance);
+			return instance;
+		}
+		catch (NamingException | RuntimeException | Error e)
+		{
+			pending.remove(key, f);
+			f.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * @param name A name relative to this context
+	 * @return This context for the empty name, a subcontext already handed out, or null.
+	 */
+	private Object knownContext(String name)
+	{
+		if (name.isEmpty())
+			return this;
+		return children.get(composeName(name, nameInNamespace));
+	}
+
+	/**
+	 * Waits for a lookup started by another caller.  A factory that looks up the name it is building, directly
+	 * or through other names, would wait for itself forever, so that wait is refused.
+	 * 
+	 * @param name The full name being looked up
+	 * @param f The running lookup
+	 * @return Its result
+	 * @throws NamingException The exception the lookup failed with, or if waiting would never end.
+	 */
+	private Object await(String name, Pending f) throws NamingException
+	{
+		Thread self = Thread.currentThread();
+		if (f.owner == self)
+			throw new NamingException("Circular lookup of " + name + ": its factory looked it up again");
+
+		// registered before the check, so of two lookups closing a cycle at least one sees the other
+		waiting.put(self, f);
+		try
+		{
+			Thread t = f.owner;
+			for (int hops = 0; t != null && hops < waiting.size() + 1; hops++)
 			{
-				File f = makePath(name);
-				fis = new FileInputStream(f);
+				if (t == self)
+					throw new NamingException("Circular lookup of " + name + ": it waits on a lookup waiting for this one");
+				Pending next = waiting.get(t);
+				t = next == null ? null : next.owner;
 			}
-			else if (scheme.startsWith("http"))
+			return f.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			InterruptedNamingException ne = new InterruptedNamingException("Interrupted waiting for " + name);
+			ne.initCause(e);
+			throw ne;
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof NamingException)
+				throw (NamingException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			NamingException ne = new NamingException();
+			ne.initCause(cause);
+			throw ne;
+		}
+		finally
+		{
+			waiting.remove(self, f);
+		}
+	}
+
+	/**
+	 * Reads the binding and runs its factory.  Callers go through {@link #lookup(String)} or
+	 * {@link #lookupAsync(String)}, which make sure only one load per name runs at a time.
+	 * 
+	 * @param name The name of the resource to load.
+	 * @return The loaded object or subcontext.
+	 * @throws NamingException if the object is not found, or errors occurred while loading or validating.
+	 */
+	private Object load(String name) throws NamingException
+	{
+		LookupEvent event = new LookupEvent();
+		event.begin();
+		boolean timed = slowThreshold > 0 || event.isEnabled();
+		long start = timed ? System.nanoTime() : 0L;
+		long mark = start, resolveTime = 0L, fetchTime = 0L, parseTime = 0L, loadTime = 0L, instantiateTime = 0L;
+		Provider p = null;
+		Object location = null;
+
+		InputStream fis = null;
+		try
+		{
+			p = provider();
+			Reference ref = references.get(name);
+			if (ref != null)
 			{
-				URI loc = uri.resolve(name + FILE_EXTENSION);
-				fis = loc.toURL().openStream();
+				event.cached = true;
 			}
 			else
 			{
-				throw new NamingException("Scheme “" + scheme + "” not supported by XMLContext.lookup()");
+				if (p.isDirectory(name) && !p.exists(name))
+				{
+					return subcontext(p, name);
+				}
+
+				location = p.locate(name);
+				if (timed)
+				{
+					long now = System.nanoTime();
+					resolveTime = now - mark;
+					mark = now;
+				}
+				fis = p.open(location);
+
+				/*
+				 * Read the whole file before parsing so I/O and parse time can be told apart.
+				 */
+				byte[] data = fis.readAllBytes();
+				if (timed)
+				{
+					long now = System.nanoTime();
+					fetchTime = now - mark;
+					mark = now;
+				}
+
+				ref = parseXML(new ByteArrayInputStream(data));
+				if (p.isCacheable())
+				{
+					references.putIfAbsent(name, ref);
+				}
+				if (timed)
+				{
+					long now = System.nanoTime();
+					parseTime = now - mark;
+					mark = now;
+				}
+			}
+			if (ref instanceof LinkRef)
+			{
+				return root.lookup(links.resolve(root, root.provider(), fullName(name), (LinkRef) ref).target);
+			}
+			event.factoryClass = ref.getFactoryClassName();
+
+			if (ref instanceof XMLReference && ((XMLReference) ref).getLazyInterfaces() != null)
+			{
+				/*
+				 * Lazy bindings defer loading and running the factory to the first method call.
+				 */
+				Object proxy = LazyBinding.proxy((XMLReference) ref, new CompositeName(name), this, env);
+				if (timed)
+				{
+					instantiateTime = System.nanoTime() - mark;
+				}
+				return proxy;
+			}
+
+			Class<?> factoryClass = Class.forName(ref.getFactoryClassName());
+			if (timed)
+			{
+				long now = System.nanoTime();
+				loadTime = now - mark;
+				mark = now;
 			}
-			
-			Reference ref = parseXML(fis);
 
-			ObjectFactory factory = (ObjectFactory) Class.forName(ref.getFactoryClassName()).newInstance();
+			ObjectFactory factory = newFactory(factoryClass);
 			Object instance = factory.getObjectInstance(ref, new CompositeName(name), this, env);
+			if (timed)
+			{
+				instantiateTime = System.nanoTime() - mark;
+			}
 			return instance;
 		}
+		catch (NamingException e)
+		{
+			throw e;
+		}
 		catch (Throwable e)
 		{
 			NamingException ne = new NamingException();
@@ -471,7 +1196,210 @@ public class XMLContext implements Context
 				{
 				}
 			}
+
+			if (event.shouldCommit())
+			{
+				event.name = name;
+				event.scheme = scheme;
+				event.ioDuration = resolveTime + fetchTime;
+				event.parseDuration = parseTime;
+				event.instantiationDuration = loadTime + instantiateTime;
+				event.commit();
+			}
+
+			if (slowThreshold > 0)
+			{
+				long total = System.nanoTime() - start;
+				if (total > slowThreshold)
+				{
+					traceSlow("lookup", name, p == null ? uri : p.describe(location), total, LOOKUP_PHASES, resolveTime, fetchTime, parseTime, loadTime, instantiateTime);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Logs a single line describing an operation that exceeded {@link #SLOW_THRESHOLD}.  Only called once the
+	 * threshold has been crossed, so nothing here is on the fast path.
+	 * 
+	 * @param operation lookup or bind
+	 * @param name The name as given by the caller
+	 * @param location Where the name resolved to, or the Provider URL if resolution didn't get that far
+	 * @param total Elapsed nanoseconds for the whole operation
+	 * @param labels Names of the phases, in the same order as <tt>phases</tt>
+	 * @param phases Elapsed nanoseconds per phase
+	 */
+	private void traceSlow(String operation, String name, Object location, long total, String[] labels, long... phases)
+	{
+		StringBuilder sb = new StringBuilder(160);
+		sb.append("slow ").append(operation);
+		sb.append(" name=").append(name);
+		sb.append(" uri=").append(location);
+		sb.append(" total=").append(String.format("%.3fms", total / 1e6));
+		for (int i = 0; i < phases.length; i++)
+		{
+			sb.append(' ').append(labels[i]).append('=').append(String.format("%.3fms", phases[i] / 1e6));
+		}
+		LOG.warning(sb.toString());
+	}
+
+	/**
+	 * Looks up a name without blocking the caller.  The lookup runs on the context's executor, see
+	 * {@link #setExecutor(Executor)}.  Callers asking for a name while a lookup of it is still running
+	 * share that lookup instead of starting another one.
+	 * 
+	 * <p>The initial context is obtained with <tt>(XMLContext) new InitialContext().lookup("")</tt>.
+	 * 
+	 * @param name The name of the resource to load, as for {@link #lookup(String)}.
+	 * @return A future completed with the loaded object, or exceptionally with the {@link NamingException}.
+	 */
+	public CompletableFuture<Object> lookupAsync(final String name)
+	{
+		Object known = knownContext(name);
+		if (known != null)
+			return CompletableFuture.completedFuture(known);
+
+		final String key = fullName(name);
+		final Pending f = new Pending();
+		CompletableFuture<Object> prior = pending.putIfAbsent(key, f);
+		if (prior != null)
+			return prior.copy();
+
+		Executor e = executor;
+		try
+		{
+			(e != null ? e : DefaultExecutor.get()).execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					f.owner = Thread.currentThread();
+					try
+					{
+						Object instance = load(name);
+						pending.remove(key, f);
+						f.complete(instance);
+					}
+					catch (Throwable t)
+					{
+						pending.remove(key, f);
+						f.completeExceptionally(t);
+					}
+				}
+			});
+		}
+		catch (RejectedExecutionException ree)
+		{
+			pending.remove(key, f);
+			f.completeExceptionally(ree);
 		}
+		return f.copy();
+	}
+
+	/**
+	 * Delegates to {@link #lookupAsync(String)}.
+	 * 
+	 * @param name The name of the resource to load
+	 * @return A future completed with the loaded object
+	 */
+	public CompletableFuture<Object> lookupAsync(Name name)
+	{
+		return lookupAsync(name.toString());
+	}
+
+	/**
+	 * Pins the current generation of the namespace.  Every lookup through the snapshot sees the bindings as
+	 * they were at this moment, so names that change together are read together.  Writes made through any
+	 * context of the namespace start a new generation; changes made to the provider behind the context's back
+	 * are picked up by polling, see {@link #SNAPSHOT_INTERVAL}.
+	 * 
+	 * <p>The first snapshot reads every binding.  While any snapshot is open, later ones do no I/O; one taken
+	 * when none is open first lists the provider to catch up with changes missed meanwhile.
+	 * 
+	 * @return A snapshot, to be closed when done with.
+	 * @throws NamingException if the provider can't be listed, for example over <tt>http</tt>.
+	 */
+	public Snapshot snapshot() throws NamingException
+	{
+		return new Snapshot(this, root, generations, generations.open(root.provider(), root.snapshotInterval));
+	}
+
+	/**
+	 * Runs the factory of a reference that has already been read.
+	 * 
+	 * @param name The full name of the binding
+	 * @param ref The reference
+	 * @return The object
+	 * @throws NamingException if the factory fails
+	 */
+	Object instantiate(String name, Reference ref) throws NamingException
+	{
+		try
+		{
+			if (ref instanceof XMLReference && ((XMLReference) ref).getLazyInterfaces() != null)
+				return LazyBinding.proxy((XMLReference) ref, new CompositeName(name), this, env);
+
+			ObjectFactory factory = newFactory(Class.forName(ref.getFactoryClassName()));
+			return factory.getObjectInstance(ref, new CompositeName(name), this, env);
+		}
+		catch (NamingException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			NamingException ne = new NamingException();
+			ne.setRootCause(e);
+			throw ne;
+		}
+	}
+
+	/**
+	 * @param factoryClass The class named by a reference
+	 * @return A new instance of it
+	 * @throws Exception what its constructor threw, or why it couldn't be called
+	 */
+	static ObjectFactory newFactory(Class<?> factoryClass) throws Exception
+	{
+		try
+		{
+			return (ObjectFactory) factoryClass.getDeclaredConstructor().newInstance();
+		}
+		catch (InvocationTargetException e)
+		{
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The executor used when none is set: virtual threads when the runtime has them, a pool of daemon
+	 * threads otherwise.  Shared by every context, and by {@link com.digi_dmx.ds.DSAdapter} for its background work.
+	 */
+	public static Executor getDefaultExecutor()
+	{
+		return DefaultExecutor.get();
+	}
+
+	/**
+	 * @param executor Runs asynchronous lookups. Null restores the default, which uses virtual threads when
+	 * the runtime has them and a pool of daemon threads otherwise.  Subcontexts created afterwards inherit it.
+	 */
+	public void setExecutor(Executor executor)
+	{
+		this.executor = executor;
+	}
+
+	/**
+	 * @return The JAXB context for the binding format, shared by every context.
+	 */
+	private static JAXBContext jaxb() throws JAXBException
+	{
+		JAXBContext jc = jaxb;
+		if (jc == null)
+			jaxb = jc = JAXBContext.newInstance(com.digi_dmx.gen.Context.class);
+		return jc;
 	}
 
 	/**
@@ -481,60 +1409,91 @@ public class XMLContext implements Context
 	 * @return A Reference suitable for factories. 
 	 * @throws JAXBException 
 	 */
-	private Reference parseXML(InputStream fis) throws JAXBException 
+	Reference parseXML(InputStream fis) throws JAXBException 
 	{
-		JAXBContext ctx = JAXBContext.newInstance(com.digi_dmx.gen.Context.class);
-		Unmarshaller u = ctx.createUnmarshaller();
+		Unmarshaller u = jaxb().createUnmarshaller();
 		com.digi_dmx.gen.Context unmarshaledObject = (com.digi_dmx.gen.Context) u.unmarshal(fis);
 		
-		Reference ref = new Reference(unmarshaledObject.getClazz(), unmarshaledObject.getFactory(), null);
+		Reference ref;
+		boolean link = LinkRef.class.getName().equals(unmarshaledObject.getClazz());
+		if (link)
+		{
+			String linkName = null;
+			for (Attr a : unmarshaledObject.getAttr())
+			{
+				if (a.getName().equals(LINK_ADDRESS))
+					linkName = a.getValue();
+			}
+			ref = new LinkRef(linkName);
+		}
+		else
+		{
+			ref = new XMLReference(unmarshaledObject.getClazz(), unmarshaledObject.getFactory(), unmarshaledObject.getLazy());
+		}
 		for (Attr a : unmarshaledObject.getAttr())
 		{
 			String aname = a.getName();
+			if (link && aname.equals(LINK_ADDRESS))
+				continue;
 			String value = a.getValue();
+			String type = a.getType();
 
-			RefAddr addr = new StringRefAddr(aname, value);
+			RefAddr addr = type == null || type.equals("string") ? new StringRefAddr(aname, value) : new TypedRefAddr(aname, type, value);
 			ref.add(addr);
 		}
 		return ref;
 	}
 
 	/**
-	 * This implementation does not implement this method.
-	 * @throws NoSuchMethodError  This method isn't implemented
+	 * Delegates to {@link #lookupLink(String)}.
 	 */
 	@Override
 	public Object lookupLink(Name name) throws NamingException
 	{
-		throw new NoSuchMethodError();
+		return lookupLink(name.toString());
 	}
 
 	/**
-	 * This implementation does not implement this method.
-	 * @throws NoSuchMethodError  This method isn't implemented
+	 * Like {@link #lookup(String)} but a name bound to a {@link LinkRef} yields the link itself instead of
+	 * the object it points to.
+	 * 
+	 * @param name The name of the binding
+	 * @return The link, or the object if the name isn't a link.
+	 * @throws NamingException if the name can't be read
 	 */
 	@Override
 	public Object lookupLink(String name) throws NamingException
 	{
-		throw new NoSuchMethodError();
+		Links.Chain chain = links.get(fullName(name), root.provider());
+		if (chain != null)
+			return chain.link;
+
+		if (knownContext(name) == null && provider().exists(name))
+		{
+			Reference ref = getReference(name);
+			if (ref instanceof LinkRef)
+				return ref;
+		}
+		return lookup(name);
 	}
 
 	/**
-	 * Delegates to {@link #bind(String, Object)}
+	 * Delegates to {@link #rebind(String, Object)}
 	 */
 	@Override
 	public void rebind(Name name, Object obj) throws NamingException
 	{
-		bind(name.toString(), obj);
+		rebind(name.toString(), obj);
 	}
 
 	/**
-	 * Delegates to {@link #bind(String, Object)}
+	 * As {@link #bind(String, Object)}, but over <tt>http</tt> the binding is replaced even if someone else
+	 * changed it since this context read it.
 	 */
 	@Override
 	public void rebind(String name, Object obj) throws NamingException
 	{
-		bind(name, obj);
+		store(name, referenceOf(obj), true);
 	}
 
 	@Override
@@ -556,10 +1515,45 @@ public class XMLContext implements Context
 	@Override
 	public void rename(String oldName, String newName) throws NamingException
 	{
-		File oldFile = makePath(oldName);
-		File newFile = makePath(newName);
-		
-		oldFile.renameTo(newFile);
+		RenameEvent event = new RenameEvent();
+		event.begin();
+
+		Provider p = provider();
+		p.rename(oldName, newName);
+		references.remove(oldName);
+		references.remove(newName);
+		links.invalidate(fullName(oldName));
+		links.invalidate(fullName(newName));
+
+		Reference moved = null;
+		try
+		{
+			moved = readReference(p, newName);
+		}
+		catch (Exception e)
+		{
+			LOG.log(Level.FINE, "Unable to read " + newName + " after renaming it", e);
+		}
+
+		SearchIndex index = searchIndex.get();
+		if (index != null)
+		{
+			index.remove(fullName(oldName));
+			if (moved != null)
+				index.put(fullName(newName), moved);
+		}
+		if (moved != null)
+			generations.move(fullName(oldName), fullName(newName), moved, p.lastModified(p.locate(newName)));
+		else
+			generations.remove(fullName(oldName));
+
+		if (event.shouldCommit())
+		{
+			event.name = oldName;
+			event.newName = newName;
+			event.scheme = scheme;
+			event.commit();
+		}
 	}
 
 	/**
@@ -577,10 +1571,501 @@ public class XMLContext implements Context
 	@Override
 	public void unbind(String name) throws NamingException
 	{
-		File file = makePath(name);
-		if (file.exists())
+		UnbindEvent event = new UnbindEvent();
+		event.begin();
+
+		provider().delete(name);
+		unbound(name);
+
+		if (event.shouldCommit())
 		{
-			file.delete();
+			event.name = name;
+			event.scheme = scheme;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Delegates to {@link #getAttributes(String)}.
+	 */
+	@Override
+	public Attributes getAttributes(Name name) throws NamingException
+	{
+		return getAttributes(name.toString());
+	}
+
+	/**
+	 * Returns the <tt>attr</tt> elements of a binding.  The binding is only read, its factory isn't run, so
+	 * this is cheap even for bindings like {@link com.digi_dmx.ds.DSAdapter} that are costly to instantiate.
+	 * A subcontext has no attributes.
+	 * 
+	 * @param name The binding
+	 * @return Its attributes, one per attr name, with the values in file order.
+	 * @throws NameNotFoundException if there's no such binding
+	 */
+	@Override
+	public Attributes getAttributes(String name) throws NamingException
+	{
+		return getAttributes(name, (String[]) null);
+	}
+
+	/**
+	 * Delegates to {@link #getAttributes(String, String[])}.
+	 */
+	@Override
+	public Attributes getAttributes(Name name, String[] attrIds) throws NamingException
+	{
+		return getAttributes(name.toString(), attrIds);
+	}
+
+	/**
+	 * As {@link #getAttributes(String)}, but only the attributes named.
+	 * 
+	 * @param name The binding
+	 * @param attrIds The attributes wanted, or null for all of them
+	 * @return The attributes found
+	 */
+	@Override
+	public Attributes getAttributes(String name, String[] attrIds) throws NamingException
+	{
+		Attributes attrs = new BasicAttributes(false);
+		name = trimSlash(name);
+		Provider p = provider();
+		if (name.isEmpty() || (p.isDirectory(name) && !p.exists(name)))
+			return attrs;
+
+		List<String> wanted = attrIds == null ? null : Arrays.asList(attrIds);
+		Enumeration<RefAddr> all = getReference(name).getAll();
+		while (all.hasMoreElements())
+		{
+			RefAddr addr = all.nextElement();
+			String id = addr.getType();
+			if (wanted != null && !wanted.contains(id))
+				continue;
+
+			Attribute a = attrs.get(id);
+			if (a == null)
+			{
+				a = new BasicAttribute(id, true);
+				attrs.put(a);
+			}
+			if (addr.getContent() != null)
+				a.add(addr.getContent());
+		}
+		return attrs;
+	}
+
+	/**
+	 * Delegates to {@link #modifyAttributes(String, int, Attributes)}.
+	 */
+	@Override
+	public void modifyAttributes(Name name, int mod_op, Attributes attrs) throws NamingException
+	{
+		modifyAttributes(name.toString(), mod_op, attrs);
+	}
+
+	/**
+	 * Applies the same operation to each of the attributes.  See {@link #modifyAttributes(String, ModificationItem[])}.
+	 */
+	@Override
+	public void modifyAttributes(String name, int mod_op, Attributes attrs) throws NamingException
+	{
+		modifyAttributes(name, items(mod_op, attrs));
+	}
+
+	/**
+	 * Delegates to {@link #modifyAttributes(String, ModificationItem[])}.
+	 */
+	@Override
+	public void modifyAttributes(Name name, ModificationItem[] mods) throws NamingException
+	{
+		modifyAttributes(name.toString(), mods);
+	}
+
+	/**
+	 * Changes attributes of a binding, rewriting it once with all the changes applied.  The factory isn't run.
+	 * Values are written as strings.
+	 * 
+	 * @param name The binding
+	 * @param mods The changes, applied in order
+	 * @throws AttributeModificationException if an operation isn't one of those defined by {@link DirContext}
+	 */
+	@Override
+	public void modifyAttributes(String name, ModificationItem[] mods) throws NamingException
+	{
+		name = trimSlash(name);
+		store(name, modify(getReference(name), mods), false);
+	}
+
+	private static ModificationItem[] items(int mod_op, Attributes attrs) throws NamingException
+	{
+		List<ModificationItem> mods = new ArrayList<ModificationItem>();
+		if (attrs != null)
+		{
+			NamingEnumeration<? extends Attribute> all = attrs.getAll();
+			while (all.hasMore())
+			{
+				mods.add(new ModificationItem(mod_op, all.next()));
+			}
+		}
+		return mods.toArray(new ModificationItem[mods.size()]);
+	}
+
+	/**
+	 * @return A copy of the reference with the modifications applied.  Typed attributes keep their type.
+	 */
+	private static Reference modify(Reference ref, ModificationItem[] mods) throws NamingException
+	{
+		Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+		Map<String, String> kinds = new HashMap<String, String>();
+		Enumeration<RefAddr> all = ref.getAll();
+		while (all.hasMoreElements())
+		{
+			RefAddr addr = all.nextElement();
+			List<String> list = values.get(addr.getType());
+			if (list == null)
+			{
+				list = new ArrayList<String>();
+				values.put(addr.getType(), list);
+			}
+			if (addr instanceof TypedRefAddr)
+			{
+				kinds.put(addr.getType(), ((TypedRefAddr) addr).getKind());
+				if (((TypedRefAddr) addr).getText() != null)
+					list.add(((TypedRefAddr) addr).getText());
+			}
+			else if (addr.getContent() != null)
+			{
+				list.add(addr.getContent().toString());
+			}
+		}
+
+		for (ModificationItem mod : mods)
+		{
+			Attribute a = mod.getAttribute();
+			String id = a.getID();
+			List<String> given = new ArrayList<String>();
+			NamingEnumeration<?> e = a.getAll();
+			while (e.hasMore())
+			{
+				Object v = e.next();
+				if (v != null)
+					given.add(text(v));
+			}
+
+			switch (mod.getModificationOp())
+			{
+			case ADD_ATTRIBUTE:
+			{
+				List<String> list = values.get(id);
+				if (list == null)
+				{
+					list = new ArrayList<String>();
+					values.put(id, list);
+				}
+				for (String v : given)
+				{
+					if (!list.contains(v))
+						list.add(v);
+				}
+				break;
+			}
+			case REPLACE_ATTRIBUTE:
+				if (given.isEmpty())
+					values.remove(id);
+				else
+					values.put(id, given);
+				break;
+			case REMOVE_ATTRIBUTE:
+				if (given.isEmpty())
+					values.remove(id);
+				else if (values.containsKey(id))
+					values.get(id).removeAll(given);
+				break;
+			default:
+				throw new AttributeModificationException("Unknown modification operation " + mod.getModificationOp());
+			}
+		}
+
+		Reference copy = ref instanceof XMLReference
+				? new XMLReference(ref.getClassName(), ref.getFactoryClassName(), ((XMLReference) ref).getLazy())
+				: new Reference(ref.getClassName(), ref.getFactoryClassName(), null);
+		for (Map.Entry<String, List<String>> entry : values.entrySet())
+		{
+			String id = entry.getKey();
+			if (entry.getValue().isEmpty())
+				copy.add(new StringRefAddr(id, null));
+			for (String v : entry.getValue())
+			{
+				if (kinds.containsKey(id))
+				{
+					try
+					{
+						copy.add(new TypedRefAddr(id, kinds.get(id), v));
+					}
+					catch (IllegalArgumentException e)
+					{
+						throw new InvalidAttributeValueException(e.getMessage());
+					}
+				}
+				else
+				{
+					copy.add(new StringRefAddr(id, v));
+				}
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * @return An attribute value as it would be written in a file.
+	 */
+	private static String text(Object v)
+	{
+		if (v instanceof byte[])
+			return Base64.getEncoder().encodeToString((byte[]) v);
+		if (v instanceof List)
+		{
+			StringBuilder sb = new StringBuilder();
+			for (Object o : (List<?>) v)
+			{
+				if (sb.length() > 0)
+					sb.append(',');
+				sb.append(o);
+			}
+			return sb.toString();
+		}
+		return v.toString();
+	}
+
+	/**
+	 * Delegates to {@link #bind(String, Object, Attributes)}.
+	 */
+	@Override
+	public void bind(Name name, Object obj, Attributes attrs) throws NamingException
+	{
+		bind(name.toString(), obj, attrs);
+	}
+
+	/**
+	 * As {@link #bind(String, Object)}, with the given attributes written in place of the object's own
+	 * attributes of the same names.
+	 */
+	@Override
+	public void bind(String name, Object obj, Attributes attrs) throws NamingException
+	{
+		store(name, withAttributes(referenceOf(obj), attrs), false);
+	}
+
+	/**
+	 * Delegates to {@link #rebind(String, Object, Attributes)}.
+	 */
+	@Override
+	public void rebind(Name name, Object obj, Attributes attrs) throws NamingException
+	{
+		rebind(name.toString(), obj, attrs);
+	}
+
+	/**
+	 * As {@link #rebind(String, Object)}, with the given attributes written as for
+	 * {@link #bind(String, Object, Attributes)}.
+	 */
+	@Override
+	public void rebind(String name, Object obj, Attributes attrs) throws NamingException
+	{
+		store(name, withAttributes(referenceOf(obj), attrs), true);
+	}
+
+	private static Reference withAttributes(Reference ref, Attributes attrs) throws NamingException
+	{
+		if (attrs != null && attrs.size() > 0)
+			ref = modify(ref, items(REPLACE_ATTRIBUTE, attrs));
+		return ref;
+	}
+
+	/**
+	 * Delegates to {@link #createSubcontext(String, Attributes)}.
+	 */
+	@Override
+	public DirContext createSubcontext(Name name, Attributes attrs) throws NamingException
+	{
+		return createSubcontext(name.toString(), attrs);
+	}
+
+	/**
+	 * As {@link #createSubcontext(String)}.  Directories can't carry attributes.
+	 * 
+	 * @throws OperationNotSupportedException if any attributes are given
+	 */
+	@Override
+	public DirContext createSubcontext(String name, Attributes attrs) throws NamingException
+	{
+		if (attrs != null && attrs.size() > 0)
+			throw new OperationNotSupportedException("Subcontexts of XMLContext have no attributes");
+		return (DirContext) createSubcontext(name);
+	}
+
+	/**
+	 * This implementation does not implement this method.
+	 * @throws NoSuchMethodError  This method isn't implemented
+	 */
+	@Override
+	public DirContext getSchema(Name name) throws NamingException
+	{
+		throw new NoSuchMethodError();
+	}
+
+	/**
+	 * This implementation does not implement this method.
+	 * @throws NoSuchMethodError  This method isn't implemented
+	 */
+	@Override
+	public DirContext getSchema(String name) throws NamingException
+	{
+		throw new NoSuchMethodError();
+	}
+
+	/**
+	 * This implementation does not implement this method.
+	 * @throws NoSuchMethodError  This method isn't implemented
+	 */
+	@Override
+	public DirContext getSchemaClassDefinition(Name name) throws NamingException
+	{
+		throw new NoSuchMethodError();
+	}
+
+	/**
+	 * This implementation does not implement this method.
+	 * @throws NoSuchMethodError  This method isn't implemented
+	 */
+	@Override
+	public DirContext getSchemaClassDefinition(String name) throws NamingException
+	{
+		throw new NoSuchMethodError();
+	}
+
+	/**
+	 * Delegates to {@link #search(String, Attributes)}.
+	 */
+	@Override
+	public NamingEnumeration<SearchResult> search(Name name, Attributes matchingAttributes) throws NamingException
+	{
+		return search(name.toString(), matchingAttributes);
+	}
+
+	/**
+	 * Finds the bindings directly under a context having all of the given attributes.  Attributes without values
+	 * need only be present.  All attributes of the bindings found are returned.
+	 */
+	@Override
+	public NamingEnumeration<SearchResult> search(String name, Attributes matchingAttributes) throws NamingException
+	{
+		return search(name, matchingAttributes, null);
+	}
+
+	/**
+	 * Delegates to {@link #search(String, Attributes, String[])}.
+	 */
+	@Override
+	public NamingEnumeration<SearchResult> search(Name name, Attributes matchingAttributes, String[] attributesToReturn) throws NamingException
+	{
+		return search(name.toString(), matchingAttributes, attributesToReturn);
+	}
+
+	/**
+	 * As {@link #search(String, Attributes)}, returning only the attributes named.
+	 */
+	@Override
+	public NamingEnumeration<SearchResult> search(String name, Attributes matchingAttributes, String[] attributesToReturn) throws NamingException
+	{
+		SearchControls cons = new SearchControls();
+		cons.setReturningAttributes(attributesToReturn);
+		return search(name, SearchFilter.matching(matchingAttributes), cons);
+	}
+
+	/**
+	 * Delegates to {@link #search(String, String, SearchControls)}.
+	 */
+	@Override
+	public NamingEnumeration<SearchResult> search(Name name, String filter, SearchControls cons) throws NamingException
+	{
+		return search(name.toString(), filter, cons);
+	}
+
+	/**
+	 * Finds bindings by their attributes, for example <tt>(class=com.digi_dmx.ds.DSAdapter)</tt> or
+	 * <tt>(&amp;(factory=*DSFactory)(url=*prod*))</tt>.  Besides the <tt>attr</tt> elements, the pseudo attributes
+	 * <tt>class</tt> and <tt>factory</tt> can be matched.  The search is answered from an index built on the
+	 * first search and kept current by writes through this class, so no files are read after that.  Searches wait
+	 * for the index to be built, no longer than the time limit of the controls.  Results are produced as the
+	 * enumeration is read.
+	 * 
+	 * @param name The context to search from
+	 * @param filter The filter in RFC 4515 form
+	 * @param cons Scope, limits and what to return, or null for a one level search returning all attributes
+	 * @throws javax.naming.directory.InvalidSearchFilterException if the filter can't be parsed
+	 * @throws javax.naming.TimeLimitExceededException if the index wasn't built within the time limit
+	 * @throws NamingException if the provider couldn't be indexed, for example because it can't be listed
+	 */
+	@Override
+	public NamingEnumeration<SearchResult> search(String name, String filter, SearchControls cons) throws NamingException
+	{
+		return search(name, SearchFilter.parse(filter), cons);
+	}
+
+	/**
+	 * Delegates to {@link #search(String, String, Object[], SearchControls)}.
+	 */
+	@Override
+	public NamingEnumeration<SearchResult> search(Name name, String filterExpr, Object[] filterArgs, SearchControls cons) throws NamingException
+	{
+		return search(name.toString(), filterExpr, filterArgs, cons);
+	}
+
+	/**
+	 * As {@link #search(String, String, SearchControls)}, with <tt>{n}</tt> in the filter replaced by the
+	 * escaped n-th argument.
+	 */
+	@Override
+	public NamingEnumeration<SearchResult> search(String name, String filterExpr, Object[] filterArgs, SearchControls cons) throws NamingException
+	{
+		return search(name, SearchFilter.format(filterExpr, filterArgs), cons);
+	}
+
+	private NamingEnumeration<SearchResult> search(String name, SearchFilter filter, SearchControls cons) throws NamingException
+	{
+		provider();
+		if (cons == null)
+			cons = new SearchControls();
+		SearchIndex index = index();
+		index.await(cons.getTimeLimit());
+		name = trimSlash(name);
+		return index.search(this, name, fullName(name), filter, cons);
+	}
+
+	/**
+	 * @return The search index of the namespace, its building started by the first caller.  One whose scan
+	 * failed is replaced, so a provider that was briefly unreachable doesn't fail every later search.
+	 */
+	private SearchIndex index() throws NamingException
+	{
+		SearchIndex index = searchIndex.get();
+		if (index != null && index.isFailed())
+		{
+			searchIndex.compareAndSet(index, null);
+			index = searchIndex.get();
+		}
+		if (index == null)
+		{
+			SearchIndex created = new SearchIndex();
+			if (searchIndex.compareAndSet(null, created))
+			{
+				Executor e = root.executor;
+				created.build(root, root.provider(), e != null ? e : DefaultExecutor.get());
+			}
+			index = searchIndex.get();
 		}
+		return index;
 	}
 }
@@ -0,0 +1,66 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import javax.naming.Reference;
+
+/**
+ * A reference read from an XML file.  Besides the attributes handed to the factory, it carries the
+ * settings of the <tt>context</tt> element that are meant for {@link XMLContext} itself.
+ * 
+ * @author Eric E Bardes
+ */
+class XMLReference extends Reference
+{
+	private static final long serialVersionUID = 1L;
+
+	private final String[] lazy;
+
+	/**
+	 * @param className The class of the bound object
+	 * @param factory The factory class
+	 * @param lazy The interfaces to proxy, comma separated, or null if the binding isn't lazy.
+	 */
+	XMLReference(String className, String factory, String lazy)
+	{
+		super(className, factory, null);
+		this.lazy = lazy == null || lazy.trim().isEmpty() ? null : lazy.trim().split("\\s*,\\s*");
+	}
+
+	/**
+	 * @return The interfaces a lazy binding is proxied as, or null if the binding isn't lazy.
+	 */
+	String[] getLazyInterfaces()
+	{
+		return lazy;
+	}
+
+	/**
+	 * @return The lazy attribute as written in the file.
+	 */
+	String getLazy()
+	{
+		return lazy == null ? null : String.join(",", lazy);
+	}
+}
@@ -0,0 +1,811 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx.ds;
+
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The built-in pool engine, selected with <tt>engine="builtin"</tt>.  Borrowing takes no locks:
+ * <ul>
+ * <li>each platform thread first tries the connections it returned itself, kept in a thread local; virtual threads
+ * are too many and too short lived to benefit, so they skip this;</li>
+ * <li>then claims any free connection in the shared bag with a compare-and-set;</li>
+ * <li>then opens a new connection if the pool isn't full;</li>
+ * <li>and otherwise waits for a returning thread to hand its connection over directly.</li>
+ * </ul>
+ * Without a validation interval a connection is checked with {@link Connection#isValid(int)} when it is borrowed,
+ * unless it was in use less than half a second ago.  With one, idle connections are checked by a background thread
+ * instead.  The same background thread closes connections idle too long and keeps minIdle open, so it also runs
+ * when either of those is set.
+ * 
+ * @author Eric E Bardes
+ */
+class BagPool implements Pool
+{
+	private static final Logger LOG = Logger.getLogger(BagPool.class.getName());
+
+	private static final int REMOVED = -1;
+
+	private static final int FREE = 0;
+
+	private static final int IN_USE = 1;
+
+	private static final int RESERVED = 2;
+
+	/** connections used more recently than this aren't checked when borrowed */
+	private static final long RECENT = TimeUnit.MILLISECONDS.toNanos(500);
+
+	/** how long a waiting thread blocks before looking at the bag again */
+	private static final long POLL = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/**
+	 * How many times a returning thread offers its connection to a thread about to wait before leaving it in the bag
+	 */
+	private static final int HANDOFF_TRIES = 64;
+
+	/** how many open statements a borrowed connection tracks before it looks for closed ones to forget */
+	private static final int STATEMENTS = 16;
+
+	/** how many returned connections a thread remembers */
+	private static final int AFFINITY = 16;
+
+	/** how often the background thread runs when no validation interval sets it */
+	private static final long HOUSEKEEPING = 30 * 1000;
+
+	private static final ScheduledExecutorService HOUSEKEEPER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, "DSAdapter-housekeeper");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * @return The current thread's returned connections, or null on a virtual thread.
+	 */
+	private List<WeakReference<Entry>> mine()
+	{
+		if (Unpinned.isVirtual())
+			return null;
+		return local.get();
+	}
+
+	/**
+	 * A physical connection and whether it's free.
+	 */
+	private static final class Entry
+	{
+		final AtomicInteger state = new AtomicInteger(IN_USE);
+
+		final Connection connection;
+
+		final long created = System.nanoTime();
+
+		volatile long lastUsed = created;
+
+		Entry(Connection connection)
+		{
+			this.connection = connection;
+		}
+
+		boolean claim()
+		{
+			return state.compareAndSet(FREE, IN_USE);
+		}
+
+		boolean reserve()
+		{
+			return state.compareAndSet(FREE, RESERVED);
+		}
+	}
+
+	private final String driverClassName;
+
+	private final String url;
+
+	private final Properties info = new Properties();
+
+	private boolean defaultReadOnly;
+
+	private int maxTotal = 8;
+
+	private int minIdle;
+
+	private long validationInterval;
+
+	private int validationTimeout = 1;
+
+	private long maxLifetime;
+
+	private long idleTimeout;
+
+	private long maxWait;
+
+	private volatile Driver driver;
+
+	private final CopyOnWriteArrayList<Entry> shared = new CopyOnWriteArrayList<Entry>();
+
+	private final ThreadLocal<List<WeakReference<Entry>>> local = new ThreadLocal<List<WeakReference<Entry>>>()
+	{
+		@Override
+		protected List<WeakReference<Entry>> initialValue()
+		{
+			return new ArrayList<WeakReference<Entry>>(AFFINITY);
+		}
+	};
+
+	private final SynchronousQueue<Entry> handoff = new SynchronousQueue<Entry>(true);
+
+	private final AtomicInteger waiters = new AtomicInteger();
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final AtomicInteger active = new AtomicInteger();
+
+	private final AtomicBoolean started = new AtomicBoolean();
+
+	private volatile boolean closed;
+
+	private volatile ScheduledFuture<?> housekeeping;
+
+	private volatile int loginTimeout;
+
+	private volatile PrintWriter logWriter;
+
+	/**
+	 * @param driverClassName The JDBC driver, or null to go through {@link DriverManager}
+	 * @param url The database
+	 * @param username The user, may be null
+	 * @param password The password, may be null
+	 */
+	BagPool(String driverClassName, String url, String username, String password)
+	{
+		this.driverClassName = driverClassName;
+		this.url = url;
+		if (username != null)
+			info.setProperty("user", username);
+		if (password != null)
+			info.setProperty("password", password);
+	}
+
+	void setDefaultReadOnly(boolean defaultReadOnly)
+	{
+		this.defaultReadOnly = defaultReadOnly;
+	}
+
+	void setMaxTotal(int maxTotal)
+	{
+		this.maxTotal = maxTotal;
+	}
+
+	void setMinIdle(int minIdle)
+	{
+		this.minIdle = minIdle;
+	}
+
+	/**
+	 * @param millis Time between background checks, zero to check on borrow instead.
+	 */
+	void setValidationInterval(long millis)
+	{
+		this.validationInterval = millis;
+	}
+
+	/**
+	 * @param seconds Time a connection gets to answer {@link Connection#isValid(int)}
+	 */
+	void setValidationTimeout(int seconds)
+	{
+		this.validationTimeout = seconds;
+	}
+
+	/**
+	 * @param millis Age after which a connection is closed, zero for no limit.
+	 */
+	void setMaxLifetime(long millis)
+	{
+		this.maxLifetime = TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	/**
+	 * @param millis Idle time after which connections beyond minIdle are closed, zero to keep them.
+	 */
+	void setIdleTimeout(long millis)
+	{
+		this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	/**
+	 * @param millis How long {@link #getConnection()} waits for a connection when the pool is full, zero, the
+	 *        default, to wait as long as it takes.
+	 */
+	void setMaxWait(long millis)
+	{
+		this.maxWait = millis;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException
+	{
+		return getConnection(maxWait);
+	}
+
+	/**
+	 * @param timeoutMillis The longest to wait for a connection when the pool is full, zero to wait as long as it
+	 *        takes
+	 */
+	@Override
+	public Connection getConnection(long timeoutMillis) throws SQLException
+	{
+		if (closed)
+			throw new SQLException("Pool for " + url + " is closed");
+		if ((validationInterval > 0 || minIdle > 0 || idleTimeout > 0) && started.compareAndSet(false, true))
+		{
+			long period = validationInterval > 0 ? validationInterval : HOUSEKEEPING;
+			if (idleTimeout > 0)
+				period = Math.min(period, Math.max(1, TimeUnit.NANOSECONDS.toMillis(idleTimeout)));
+			housekeeping = HOUSEKEEPER.scheduleWithFixedDelay(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					housekeep();
+				}
+			}, period, period, TimeUnit.MILLISECONDS);
+		}
+
+		Entry e = borrow(TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+		active.incrementAndGet();
+		return (Connection) Proxy.newProxyInstance(BagPool.class.getClassLoader(), new Class<?>[] { Connection.class }, new Borrowed(e));
+	}
+
+	/**
+	 * Not supported, as with {@link org.apache.commons.dbcp2.BasicDataSource}.
+	 */
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException
+	{
+		throw new SQLFeatureNotSupportedException("The built-in pool only connects with the credentials it was configured with");
+	}
+
+	/**
+	 * @param timeout Nanoseconds to wait for a connection when the pool is full, zero to wait as long as it takes
+	 */
+	private Entry borrow(long timeout) throws SQLException
+	{
+		List<WeakReference<Entry>> mine = mine();
+		for (int i = mine == null ? -1 : mine.size() - 1; i >= 0; i--)
+		{
+			Entry e = mine.remove(i).get();
+			if (e != null && e.claim() && usable(e))
+				return e;
+		}
+
+		long deadline = timeout > 0 ? System.nanoTime() + timeout : Long.MAX_VALUE;
+		for (;;)
+		{
+			if (closed)
+				throw new SQLException("Pool for " + url + " is closed");
+
+			Entry e = claimShared();
+			if (e != null)
+				return e;
+
+			e = create();
+			if (e != null)
+				return e;
+
+			long wait = Math.min(POLL, deadline - System.nanoTime());
+			if (wait <= 0)
+				throw new SQLTimeoutException("No connection to " + url + " became free within " + TimeUnit.NANOSECONDS.toMillis(timeout) + "ms");
+
+			/*
+			 * Only counted as a waiter once about to block, so returning threads offer their connection only when
+			 * someone will take it.  The bag is looked at once more after counting, in case a connection was freed
+			 * by a thread that didn't see this one waiting.
+			 */
+			waiters.incrementAndGet();
+			try
+			{
+				e = claimShared();
+				if (e != null)
+					return e;
+				e = handoff.poll(wait, TimeUnit.NANOSECONDS);
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted waiting for a connection to " + url, ie);
+			}
+			finally
+			{
+				waiters.decrementAndGet();
+			}
+			if (e != null && e.claim() && usable(e))
+				return e;
+		}
+	}
+
+	/**
+	 * @return A free connection from the bag, now in use, or null if there's none.
+	 */
+	private Entry claimShared()
+	{
+		for (Entry e : shared)
+		{
+			if (e.claim() && usable(e))
+				return e;
+		}
+		return null;
+	}
+
+	/**
+	 * Checks a connection that has just been claimed.  If it's no good it is removed from the pool.
+	 */
+	private boolean usable(Entry e)
+	{
+		long now = System.nanoTime();
+		boolean ok = !expired(e, now) && (validationInterval > 0 || now - e.lastUsed < RECENT || valid(e));
+		if (!ok)
+			remove(e);
+		return ok;
+	}
+
+	private boolean expired(Entry e, long now)
+	{
+		return maxLifetime > 0 && now - e.created > maxLifetime;
+	}
+
+	private boolean valid(Entry e)
+	{
+		try
+		{
+			return e.connection.isValid(validationTimeout);
+		}
+		catch (SQLException | RuntimeException x)
+		{
+			LOG.log(Level.FINE, "Validating a connection to " + url, x);
+			return false;
+		}
+	}
+
+	/**
+	 * Opens a connection if the pool has room for one.
+	 * 
+	 * @return The new connection, already in use, or null if the pool is full
+	 */
+	private Entry create() throws SQLException
+	{
+		int n;
+		do
+		{
+			n = size.get();
+			if (n >= maxTotal)
+				return null;
+		}
+		while (!size.compareAndSet(n, n + 1));
+
+		try
+		{
+			Entry e = new Entry(connect());
+			shared.add(e);
+			return e;
+		}
+		catch (SQLException | RuntimeException x)
+		{
+			size.decrementAndGet();
+			throw x;
+		}
+	}
+
+	private Connection connect() throws SQLException
+	{
+		Connection c;
+		if (driverClassName == null)
+		{
+			c = DriverManager.getConnection(url, info);
+		}
+		else
+		{
+			c = driver().connect(url, info);
+			if (c == null)
+				throw new SQLException("Driver " + driverClassName + " does not accept " + url);
+		}
+		if (defaultReadOnly)
+			c.setReadOnly(true);
+		return c;
+	}
+
+	private Driver driver() throws SQLException
+	{
+		Driver d = driver;
+		if (d == null)
+		{
+			try
+			{
+				ClassLoader loader = Thread.currentThread().getContextClassLoader();
+				if (loader == null)
+					loader = BagPool.class.getClassLoader();
+				d = (Driver) Class.forName(driverClassName, true, loader).getDeclaredConstructor().newInstance();
+			}
+			catch (ReflectiveOperationException | ClassCastException e)
+			{
+				throw new SQLException("Cannot load JDBC driver class '" + driverClassName + "'", e);
+			}
+			driver = d;
+		}
+		return d;
+	}
+
+	/**
+	 * Puts a connection the caller owns back in the bag, handing it straight to a waiting thread if there is one.
+	 */
+	private void free(Entry e)
+	{
+		e.state.set(FREE);
+		for (int i = 0; i < HANDOFF_TRIES && waiters.get() > 0; i++)
+		{
+			if (e.state.get() != FREE || handoff.offer(e))
+				return;
+			Thread.yield();
+		}
+	}
+
+	private void release(Entry e)
+	{
+		active.decrementAndGet();
+		long now = System.nanoTime();
+		if (closed || expired(e, now))
+		{
+			remove(e);
+			return;
+		}
+
+		e.lastUsed = now;
+		free(e);
+
+		List<WeakReference<Entry>> mine = mine();
+		if (mine != null && mine.size() < AFFINITY)
+			mine.add(new WeakReference<Entry>(e));
+	}
+
+	/**
+	 * Closes a connection the caller owns and forgets it.
+	 */
+	private void remove(Entry e)
+	{
+		e.state.set(REMOVED);
+		if (shared.remove(e))
+			size.decrementAndGet();
+		try
+		{
+			e.connection.close();
+		}
+		catch (SQLException | RuntimeException x)
+		{
+			LOG.log(Level.FINE, "Closing a connection to " + url, x);
+		}
+	}
+
+	/**
+	 * Checks the idle connections if there's a validation interval, closes those that are dead, too old or idle too
+	 * long, and tops the pool up to minIdle.
+	 */
+	private void housekeep()
+	{
+		long now = System.nanoTime();
+		int idle = 0;
+		for (Entry e : shared)
+		{
+			if (e.state.get() == FREE)
+				idle++;
+		}
+
+		for (Entry e : shared)
+		{
+			if (!e.reserve())
+				continue;
+			boolean stale = idleTimeout > 0 && now - e.lastUsed > idleTimeout && idle > minIdle;
+			if (stale || expired(e, now) || (validationInterval > 0 && !valid(e)))
+			{
+				idle--;
+				remove(e);
+			}
+			else
+			{
+				free(e);
+			}
+		}
+
+		try
+		{
+			while (!closed && size.get() < minIdle)
+			{
+				Entry e = create();
+				if (e == null)
+					break;
+				e.lastUsed = System.nanoTime();
+				free(e);
+			}
+		}
+		catch (SQLException | RuntimeException e)
+		{
+			LOG.log(Level.WARNING, "Unable to refill the pool for " + url, e);
+		}
+	}
+
+	@Override
+	public int getNumActive()
+	{
+		return active.get();
+	}
+
+	@Override
+	public void close() throws SQLException
+	{
+		closed = true;
+		ScheduledFuture<?> h = housekeeping;
+		if (h != null)
+			h.cancel(false);
+		for (Entry e : shared)
+		{
+			if (e.reserve())
+				remove(e);
+		}
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException
+	{
+		return logWriter;
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException
+	{
+		logWriter = out;
+	}
+
+	/**
+	 * Only recorded: connections are opened by the driver, which applies its own login timeout.  How long
+	 * borrowers wait for a full pool is {@link #setMaxWait(long)}.
+	 */
+	@Override
+	public void setLoginTimeout(int seconds)
+	{
+		loginTimeout = seconds;
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException
+	{
+		return loginTimeout;
+	}
+
+	@Override
+	public Logger getParentLogger()
+	{
+		return LOG;
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException
+	{
+		if (iface.isInstance(this))
+			return iface.cast(this);
+		throw new SQLException(getClass().getName() + " is not a wrapper for " + iface.getName());
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException
+	{
+		return iface.isInstance(this);
+	}
+
+	/**
+	 * The connection handed out.  Closing it returns the physical connection to the bag, after closing the
+	 * statements the borrower left open, rolling back and restoring anything the borrower changed that would
+	 * surprise the next one.
+	 */
+	private class Borrowed implements InvocationHandler
+	{
+		private final Entry entry;
+
+		private final AtomicBoolean returned = new AtomicBoolean();
+
+		private final List<Statement> statements = new ArrayList<Statement>();
+
+		/** guards statements; a lock rather than a monitor so a virtual thread holding it can still unmount */
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private boolean manualCommit;
+
+		private boolean readOnlyChanged;
+
+		Borrowed(Entry entry)
+		{
+			this.entry = entry;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+		{
+			switch (method.getName())
+			{
+			case "close":
+				if (returned.compareAndSet(false, true))
+					giveBack();
+				return null;
+			case "unwrap":
+				// the physical connection must not escape, or closing it would bypass the pool
+				if (((Class<?>) args[0]).isInstance(proxy))
+					return proxy;
+				break;
+			case "isWrapperFor":
+				if (((Class<?>) args[0]).isInstance(proxy))
+					return true;
+				break;
+			case "isClosed":
+				return returned.get();
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Pooled" + (returned.get() ? "(closed)" : "(" + entry.connection + ")");
+			case "setAutoCommit":
+				manualCommit = !(Boolean) args[0];
+				break;
+			case "setReadOnly":
+				readOnlyChanged = true;
+				break;
+			default:
+			}
+
+			if (returned.get())
+				throw new SQLException("Connection is closed");
+			Object result;
+			try
+			{
+				result = method.invoke(entry.connection, args);
+			}
+			catch (InvocationTargetException e)
+			{
+				throw e.getCause();
+			}
+			if (result instanceof Statement)
+				opened((Statement) result);
+			return result;
+		}
+
+		/**
+		 * Remembers a statement to close when the connection is returned, forgetting those already closed
+		 * whenever the list doubles.
+		 */
+		private void opened(Statement st) throws SQLException
+		{
+			lock.lock();
+			try
+			{
+				if (statements.size() >= STATEMENTS && Integer.bitCount(statements.size()) == 1)
+				{
+					for (Iterator<Statement> i = statements.iterator(); i.hasNext();)
+					{
+						if (i.next().isClosed())
+							i.remove();
+					}
+				}
+				statements.add(st);
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Closes the statements left open.  They are taken off the list under the lock and closed after it is
+		 * released, so no lock is held across the driver's I/O.
+		 */
+		private void closeStatements()
+		{
+			List<Statement> left;
+			lock.lock();
+			try
+			{
+				left = new ArrayList<Statement>(statements);
+				statements.clear();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+			for (Statement st : left)
+			{
+				try
+				{
+					st.close();
+				}
+				catch (SQLException | RuntimeException e)
+				{
+					LOG.log(Level.FINE, "Closing a statement left open on " + url, e);
+				}
+			}
+		}
+
+		private void giveBack()
+		{
+			closeStatements();
+			try
+			{
+				if (manualCommit)
+				{
+					entry.connection.rollback();
+					entry.connection.setAutoCommit(true);
+				}
+				if (readOnlyChanged)
+					entry.connection.setReadOnly(defaultReadOnly);
+			}
+			catch (SQLException | RuntimeException e)
+			{
+				LOG.log(Level.FINE, "Resetting a connection to " + url, e);
+				active.decrementAndGet();
+				remove(entry);
+				return;
+			}
+			release(entry);
+		}
+	}
+}
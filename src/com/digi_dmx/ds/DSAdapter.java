@@ -26,7 +26,16 @@ package com.digi_dmx.ds;
 import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.naming.NamingException;
@@ -35,17 +44,45 @@ import javax.naming.Referenceable;
 import javax.naming.StringRefAddr;
 import javax.sql.DataSource;
 
-import org.apache.commons.dbcp2.BasicDataSource;
+import com.digi_dmx.XMLContext;
 
 /**
  * The purpose of this class is to provide an adapter for JDBC DataSources that don't implement
  * {@link javax.naming.Referenceable}. A notable example is the Mysql and MariaDB drivers.
- * Most methods delegate to {@link org.apache.commons.dbcp2.BasicDataSource}
+ * Most methods delegate to {@link org.apache.commons.dbcp2.BasicDataSource}, or to the built-in pool
+ * when the binding asks for <tt>engine="builtin"</tt>.
  * 
  * @author eric
  */
 public class DSAdapter implements DataSource, Referenceable
 {
+	private static final Logger LOG = Logger.getLogger(DSAdapter.class.getName());
+
+	private static final int DEFAULT_REPLICA_RETRY = 30;
+
+	private static final int DEFAULT_HOT_SWAP_INTERVAL = 30;
+
+	private static final int DEFAULT_VALIDATION_TIMEOUT = 1;
+
+	private static final int DEFAULT_MAX_TOTAL = 8;
+
+	private static final int DEFAULT_LEAK_THRESHOLD = 60;
+
+	/** the engine name that selects {@link BagPool} */
+	private static final String BUILTIN = "builtin";
+
+	/** how often a retired pool is checked for borrowed connections */
+	private static final long DRAIN_POLL = 500;
+
+	/** how long a retired pool waits for borrowed connections before it's closed anyway */
+	private static final long DRAIN_LIMIT = 10 * 60 * 1000;
+
+	/** how long pre-warming waits for a connection to be free before giving up on the pool */
+	private static final long PREWARM_WAIT = 10 * 1000;
+
+	/** how long a replica pool is waited on before the next replica, or the primary, is tried */
+	private static final int REPLICA_WAIT = 2;
+
 	private String driver;
 
 	private String url;
@@ -53,8 +90,59 @@ public class DSAdapter implements DataSource, Referenceable
 	private String username;
 
 	private String password;
-	
-	private BasicDataSource ds;
+
+	private int minIdle;
+
+	private int maxTotal = DEFAULT_MAX_TOTAL;
+
+	private String engine;
+
+	private boolean prewarm;
+
+	private String replicas;
+
+	private String balance;
+
+	private int replicaRetry = DEFAULT_REPLICA_RETRY;
+
+	private int maxWaiters;
+
+	private int maxWait;
+
+	/** bounds the borrowed connections when maxWaiters is set, null otherwise */
+	private volatile Semaphore permits;
+
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	private boolean instrument;
+
+	private int leakThreshold = DEFAULT_LEAK_THRESHOLD;
+
+	/** the binding name, once looked up */
+	private String name;
+
+	/** where instrumented connections report, null when they aren't instrumented */
+	private volatile QueryStats stats;
+
+	private boolean hotSwap;
+
+	private int hotSwapInterval = DEFAULT_HOT_SWAP_INTERVAL;
+
+	private int validationInterval;
+
+	private int validationTimeout = DEFAULT_VALIDATION_TIMEOUT;
+
+	private int maxLifetime;
+
+	private int idleTimeout;
+
+	private volatile Pool ds;
+
+	private volatile ReplicaSet replicaSet;
+
+	private final AtomicInteger warmed = new AtomicInteger();
+
+	private final CompletableFuture<Void> ready = new CompletableFuture<Void>();
 
 	/**
 	 * @param driver The driver class name to be used. For example: <tt>org.mariadb.jdbc.Driver</tt>
@@ -88,6 +176,253 @@ public class DSAdapter implements DataSource, Referenceable
 		this.password = password;
 	}
 
+	/**
+	 * @param minIdle The number of idle connections the pool keeps. Zero, the default, keeps none.
+	 */
+	public void setMinIdle(int minIdle)
+	{
+		this.minIdle = minIdle;
+	}
+
+	/**
+	 * @param maxTotal The most connections the pool opens at once. Defaults to 8.
+	 */
+	public void setMaxTotal(int maxTotal)
+	{
+		this.maxTotal = maxTotal;
+	}
+
+	/**
+	 * @param engine The pool implementation: <tt>dbcp</tt>, the default, or <tt>builtin</tt> for the lock-free pool,
+	 * which needs no other library and scales better when many threads borrow at once.
+	 */
+	public void setEngine(String engine)
+	{
+		this.engine = engine;
+	}
+
+	/**
+	 * @param prewarm If true, opening the adapter fills the pool and each replica's up to {@link #setMinIdle(int)
+	 * minIdle} connections, but no more than {@link #setMaxTotal(int) maxTotal}, in the background, so the first
+	 * requests don't pay for connecting.
+	 */
+	public void setPrewarm(boolean prewarm)
+	{
+		this.prewarm = prewarm;
+	}
+
+	/**
+	 * @param replicas The urls of read replicas, separated by whitespace or commas.  Each replica gets its own pool
+	 * using the same driver and credentials as the primary {@link #setUrl(String) url}.
+	 */
+	public void setReplicas(String replicas)
+	{
+		this.replicas = replicas;
+	}
+
+	/**
+	 * @param balance How read-only connections are spread over the replicas: <tt>round-robin</tt> (the default),
+	 * <tt>least-active</tt> or <tt>latency-weighted</tt> (also <tt>latency</tt>), which favours the replicas that have
+	 * recently been quickest to hand out a connection.
+	 */
+	public void setBalance(String balance)
+	{
+		this.balance = balance;
+	}
+
+	/**
+	 * @param replicaRetry Seconds a replica that failed to connect stays out of rotation. Defaults to 30.  A replica
+	 * that merely had no connection free isn't taken out.
+	 */
+	public void setReplicaRetry(int replicaRetry)
+	{
+		this.replicaRetry = replicaRetry;
+	}
+
+	/**
+	 * @param validationInterval Seconds between background checks of the idle connections.  Each check asks the
+	 * driver whether the connection is still alive with {@link Connection#isValid(int)} and drops the ones that aren't,
+	 * so {@link #getConnection()} no longer checks a connection before handing it out.  Zero, the default, turns the
+	 * background check off and every connection is checked when it is borrowed instead.
+	 */
+	public void setValidationInterval(int validationInterval)
+	{
+		this.validationInterval = validationInterval;
+	}
+
+	/**
+	 * @param validationTimeout Seconds a connection gets to answer a check. Defaults to 1.
+	 */
+	public void setValidationTimeout(int validationTimeout)
+	{
+		this.validationTimeout = validationTimeout;
+	}
+
+	/**
+	 * @param maxLifetime Seconds after which a connection is closed rather than reused, however healthy it is.  Zero,
+	 * the default, means no limit.
+	 */
+	public void setMaxLifetime(int maxLifetime)
+	{
+		this.maxLifetime = maxLifetime;
+	}
+
+	/**
+	 * @param idleTimeout Seconds a connection may sit idle before the background check closes it, as long as
+	 * {@link #setMinIdle(int) minIdle} are left.  Zero, the default, leaves idle connections to the pool's own defaults.
+	 */
+	public void setIdleTimeout(int idleTimeout)
+	{
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * @param maxWaiters If more than zero, threads wait their turn for a connection on a fair
+	 * {@link java.util.concurrent.Semaphore} with {@link #setMaxTotal(int) maxTotal} permits instead of inside the
+	 * pool, and no more than this many may wait at once; any more fail straight away.  Waiting this way parks the
+	 * thread, so a virtual thread gives up its carrier while it waits.  Zero, the default, leaves waiting to the pool.
+	 */
+	public void setMaxWaiters(int maxWaiters)
+	{
+		this.maxWaiters = maxWaiters;
+	}
+
+	/**
+	 * @param maxWait Seconds a thread waits for a connection before failing: for a permit when
+	 * {@link #setMaxWaiters(int) maxWaiters} is set, inside the pool otherwise.  Zero, the default, waits as long as
+	 * it takes.
+	 */
+	public void setMaxWait(int maxWait)
+	{
+		this.maxWait = maxWait;
+	}
+
+	/**
+	 * @param instrument If true, connections are wrapped to record statement execute times, rows fetched and how long
+	 * connections are held.  The figures are kept per binding name and published through JMX as
+	 * <tt>com.digi_dmx:type=DSAdapter,name=<i>binding</i></tt>.  When false, the default, connections are handed out
+	 * unwrapped.
+	 */
+	public void setInstrument(boolean instrument)
+	{
+		this.instrument = instrument;
+	}
+
+	/**
+	 * @return true if connections are instrumented.
+	 */
+	public boolean isInstrument()
+	{
+		return instrument;
+	}
+
+	/**
+	 * @param leakThreshold Seconds an instrumented connection may be held before JMX lists it, with the stack that
+	 * borrowed it, as a possible leak. Defaults to 60. Zero turns leak tracking off, sparing the stack capture on
+	 * every borrow.
+	 */
+	public void setLeakThreshold(int leakThreshold)
+	{
+		this.leakThreshold = leakThreshold;
+	}
+
+	/**
+	 * @param hotSwap If true, the binding is checked every {@link #setHotSwapInterval(int) hotSwapInterval} seconds
+	 * and when it changes a new pool is built in the background and swapped in.  Connections already borrowed from
+	 * the old pool keep working; it is closed once they've all been returned.  A binding that turns this off stops
+	 * the watching, and a changed interval takes effect after the swap.
+	 */
+	public void setHotSwap(boolean hotSwap)
+	{
+		this.hotSwap = hotSwap;
+	}
+
+	/**
+	 * @return true if the binding is watched for changes.
+	 */
+	public boolean isHotSwap()
+	{
+		return hotSwap;
+	}
+
+	/**
+	 * @param hotSwapInterval Seconds between checks of the binding. Defaults to 30.
+	 */
+	public void setHotSwapInterval(int hotSwapInterval)
+	{
+		this.hotSwapInterval = hotSwapInterval;
+	}
+
+	/**
+	 * @return Seconds between checks of the binding.
+	 */
+	public int getHotSwapInterval()
+	{
+		return hotSwapInterval;
+	}
+
+	/**
+	 * A connection for reading.  With replicas configured it comes from one of the healthy replicas, chosen by
+	 * the {@link #setBalance(String) balance} strategy.  Without replicas, or when none is healthy, it comes from
+	 * the primary.  Either way the connection is read only.
+	 * 
+	 * @return A read only connection
+	 * @throws SQLException if no connection could be had
+	 */
+	public Connection getReadOnlyConnection() throws SQLException
+	{
+		Connection c = replicaSet != null ? replicaSet.getConnection() : null;
+		if (c == null)
+		{
+			c = getConnection();
+			c.setReadOnly(true);
+			return c;
+		}
+		return track(c);
+	}
+
+	/**
+	 * @return A view of this adapter whose {@link DataSource#getConnection()} hands out
+	 * {@link #getReadOnlyConnection() read only connections}, for code that only takes a DataSource.
+	 */
+	public DataSource getReadOnlyDataSource()
+	{
+		return new ReadOnlyDataSource();
+	}
+
+	/**
+	 * @return The number of replicas currently in rotation.
+	 */
+	public int getHealthyReplicas()
+	{
+		return replicaSet == null ? 0 : replicaSet.getHealthy();
+	}
+
+	/**
+	 * @return Completes once pre-warming has filled the pool, or exceptionally if it couldn't.  Already complete
+	 * when pre-warming isn't enabled.  Health checks can wait on this.
+	 */
+	public CompletableFuture<Void> ready()
+	{
+		return ready;
+	}
+
+	/**
+	 * @return true once pre-warming has finished successfully, or if it isn't enabled.
+	 */
+	public boolean isReady()
+	{
+		return ready.isDone() && !ready.isCompletedExceptionally();
+	}
+
+	/**
+	 * @return The number of connections opened so far by pre-warming.
+	 */
+	public int getWarmedConnections()
+	{
+		return warmed.get();
+	}
+
 	@Override
 	public PrintWriter getLogWriter() throws SQLException
 	{
@@ -113,9 +448,9 @@ public class DSAdapter implements DataSource, Referenceable
 	}
 
 	@Override
-	public Logger getParentLogger() throws SQLFeatureNotSupportedException
+	public Logger getParentLogger()
 	{
-		return getParentLogger();
+		return LOG;
 	}
 
 	@Override
@@ -138,28 +473,520 @@ public class DSAdapter implements DataSource, Referenceable
 		r.add(new StringRefAddr("username", username));
 		r.add(new StringRefAddr("password", password));
 		r.add(new StringRefAddr("driver", driver));
+		if (minIdle > 0)
+			r.add(new StringRefAddr("minIdle", Integer.toString(minIdle)));
+		if (maxTotal != DEFAULT_MAX_TOTAL)
+			r.add(new StringRefAddr("maxTotal", Integer.toString(maxTotal)));
+		if (engine != null)
+			r.add(new StringRefAddr("engine", engine));
+		if (prewarm)
+			r.add(new StringRefAddr("prewarm", Boolean.toString(prewarm)));
+		if (replicas != null)
+			r.add(new StringRefAddr("replicas", replicas));
+		if (balance != null)
+			r.add(new StringRefAddr("balance", balance));
+		if (replicaRetry != DEFAULT_REPLICA_RETRY)
+			r.add(new StringRefAddr("replicaRetry", Integer.toString(replicaRetry)));
+		if (validationInterval > 0)
+			r.add(new StringRefAddr("validationInterval", Integer.toString(validationInterval)));
+		if (validationTimeout != DEFAULT_VALIDATION_TIMEOUT)
+			r.add(new StringRefAddr("validationTimeout", Integer.toString(validationTimeout)));
+		if (maxLifetime > 0)
+			r.add(new StringRefAddr("maxLifetime", Integer.toString(maxLifetime)));
+		if (idleTimeout > 0)
+			r.add(new StringRefAddr("idleTimeout", Integer.toString(idleTimeout)));
+		if (maxWaiters > 0)
+			r.add(new StringRefAddr("maxWaiters", Integer.toString(maxWaiters)));
+		if (maxWait > 0)
+			r.add(new StringRefAddr("maxWait", Integer.toString(maxWait)));
+		if (instrument)
+			r.add(new StringRefAddr("instrument", Boolean.toString(instrument)));
+		if (leakThreshold != DEFAULT_LEAK_THRESHOLD)
+			r.add(new StringRefAddr("leakThreshold", Integer.toString(leakThreshold)));
+		if (hotSwap)
+			r.add(new StringRefAddr("hotSwap", Boolean.toString(hotSwap)));
+		if (hotSwapInterval != DEFAULT_HOT_SWAP_INTERVAL)
+			r.add(new StringRefAddr("hotSwapInterval", Integer.toString(hotSwapInterval)));
 		return r;
 	}
 
 	@Override
 	public Connection getConnection() throws SQLException
 	{
-		return ds.getConnection();
+		return connect(false, null, null);
 	}
 
 	@Override
 	public Connection getConnection(String username, String password) throws SQLException
 	{
-		return ds.getConnection(username, password);
+		return connect(true, username, password);
+	}
+
+	/**
+	 * Requests a connection without blocking the caller, using virtual threads when the runtime has them.
+	 * 
+	 * @return Completes with a connection, or exceptionally with the SQLException {@link #getConnection()} would throw.
+	 */
+	public CompletableFuture<Connection> getConnectionAsync()
+	{
+		return getConnectionAsync(XMLContext.getDefaultExecutor());
+	}
+
+	/**
+	 * Requests a connection without blocking the caller.  If the future is cancelled or completed by someone else
+	 * before the connection arrives, the connection is closed.
+	 * 
+	 * @param executor Where to wait for the connection
+	 * @return Completes with a connection, or exceptionally with the SQLException {@link #getConnection()} would throw.
+	 */
+	public CompletableFuture<Connection> getConnectionAsync(Executor executor)
+	{
+		final CompletableFuture<Connection> f = new CompletableFuture<Connection>();
+		executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					Connection c = getConnection();
+					if (!f.complete(c))
+						c.close();
+				}
+				catch (SQLException | RuntimeException e)
+				{
+					f.completeExceptionally(e);
+				}
+			}
+		});
+		return f;
+	}
+
+	private Connection connect(boolean credentials, String username, String password) throws SQLException
+	{
+		Semaphore s = permits;
+		if (s == null)
+			return track(borrow(credentials, username, password));
+
+		acquire(s);
+		try
+		{
+			return track(Permit.wrap(borrow(credentials, username, password), s));
+		}
+		catch (SQLException | RuntimeException e)
+		{
+			s.release();
+			throw e;
+		}
+	}
+
+	private Connection borrow(boolean credentials, String username, String password) throws SQLException
+	{
+		Pool p = ds;
+		try
+		{
+			return credentials ? p.getConnection(username, password) : p.getConnection();
+		}
+		catch (SQLException e)
+		{
+			/*
+			 * The pool may have been swapped out and closed since it was read.
+			 */
+			if (p != ds)
+				return credentials ? ds.getConnection(username, password) : ds.getConnection();
+			throw e;
+		}
+	}
+
+	/**
+	 * Takes a permit, in arrival order.  Parks rather than holding a monitor.
+	 */
+	private void acquire(Semaphore s) throws SQLException
+	{
+		try
+		{
+			/*
+			 * The timed form honours fairness, unlike tryAcquire().
+			 */
+			if (s.tryAcquire(0, TimeUnit.SECONDS))
+				return;
+
+			if (waiting.incrementAndGet() > maxWaiters)
+			{
+				waiting.decrementAndGet();
+				throw new SQLTransientConnectionException("More than " + maxWaiters + " threads are waiting for a connection to " + url);
+			}
+			try
+			{
+				if (maxWait <= 0)
+					s.acquire();
+				else if (!s.tryAcquire(maxWait, TimeUnit.SECONDS))
+					throw new SQLTimeoutException("No connection to " + url + " became free within " + maxWait + "s");
+			}
+			finally
+			{
+				waiting.decrementAndGet();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted waiting for a connection to " + url, e);
+		}
+	}
+
+	/**
+	 * @return The number of threads waiting for a permit.
+	 */
+	public int getWaiting()
+	{
+		return waiting.get();
+	}
+
+	private Connection track(Connection c)
+	{
+		QueryStats s = stats;
+		return s == null ? c : Instrumented.wrap(c, s);
+	}
+
+	/**
+	 * Starts or stops instrumenting connections as the binding asks.
+	 * 
+	 * @param name The binding name the figures are kept under
+	 */
+	void instrument(String name)
+	{
+		this.name = name;
+		QueryStats s = null;
+		if (instrument)
+		{
+			s = QueryStats.forName(name, leakThreshold);
+			s.setLeakThreshold(leakThreshold);
+		}
+		stats = s;
+	}
+
+	/**
+	 * Takes over the pools of an adapter built from a changed binding.  The new primary pool is tried first;
+	 * if it can't hand out a connection the swap is abandoned and the current pools stay.  New calls switch
+	 * to the new pools at once, the old ones are closed once their borrowed connections have been returned.
+	 * 
+	 * @param next An opened adapter
+	 * @throws SQLException if the new pool doesn't work. The new pools are closed.
+	 */
+	void swap(DSAdapter next) throws SQLException
+	{
+		try
+		{
+			next.ready.join();
+			next.ds.getConnection().close();
+		}
+		catch (SQLException | RuntimeException e)
+		{
+			retire(next.ds, next.replicaSet, 0);
+			throw e;
+		}
+
+		Pool oldDs;
+		ReplicaSet oldReplicas;
+		synchronized (this)
+		{
+			driver = next.driver;
+			url = next.url;
+			username = next.username;
+			password = next.password;
+			minIdle = next.minIdle;
+			maxTotal = next.maxTotal;
+			engine = next.engine;
+			prewarm = next.prewarm;
+			replicas = next.replicas;
+			balance = next.balance;
+			replicaRetry = next.replicaRetry;
+			hotSwap = next.hotSwap;
+			hotSwapInterval = next.hotSwapInterval;
+			maxWaiters = next.maxWaiters;
+			maxWait = next.maxWait;
+			permits = next.permits;
+			instrument = next.instrument;
+			leakThreshold = next.leakThreshold;
+			validationInterval = next.validationInterval;
+			validationTimeout = next.validationTimeout;
+			maxLifetime = next.maxLifetime;
+			idleTimeout = next.idleTimeout;
+
+			oldDs = ds;
+			oldReplicas = replicaSet;
+			ds = next.ds;
+			replicaSet = next.replicaSet;
+		}
+		if (name != null)
+			instrument(name);
+		LOG.log(Level.INFO, "Swapped in a new pool for {0}", url);
+		retire(oldDs, oldReplicas);
+	}
+
+	/**
+	 * @return The primary pool in use, for {@link HotSwap} to close once the adapter is gone.
+	 */
+	Pool pool()
+	{
+		return ds;
+	}
+
+	/**
+	 * @return The replica pools in use, or null.
+	 */
+	ReplicaSet replicaSet()
+	{
+		return replicaSet;
+	}
+
+	/**
+	 * Closes pools that are no longer used, once nothing is borrowed from them or {@link #DRAIN_LIMIT} has passed.
+	 */
+	static void retire(Pool p, ReplicaSet r)
+	{
+		retire(p, r, System.currentTimeMillis() + DRAIN_LIMIT);
+	}
+
+	/**
+	 * Closes pools that are no longer used, once nothing is borrowed from them or the deadline passes.
+	 */
+	private static void retire(final Pool p, final ReplicaSet r, final long deadline)
+	{
+		if (p.getNumActive() > 0 && System.currentTimeMillis() < deadline)
+		{
+			HotSwap.schedule(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					retire(p, r, deadline);
+				}
+			}, DRAIN_POLL);
+			return;
+		}
+
+		try
+		{
+			p.close();
+		}
+		catch (SQLException e)
+		{
+			LOG.log(Level.FINE, "Closing retired pool", e);
+		}
+		if (r != null)
+			r.close();
 	}
 
 	void open()
 	{
-		ds = new BasicDataSource();
-		ds.setDriverClassName(driver);
-		ds.setUsername(username);
-		ds.setPassword(password);
-		ds.setUrl(url);
+		ds = pool(url, false);
+		if (maxWaiters > 0)
+			permits = new Semaphore(maxTotal, true);
+
+		if (replicas != null && !replicas.trim().isEmpty())
+		{
+			ReplicaSet.Balance b = ReplicaSet.Balance.parse(balance);
+			List<ReplicaSet.Replica> list = new ArrayList<ReplicaSet.Replica>();
+			for (String u : replicas.trim().split("[\\s,]+"))
+			{
+				Pool r = pool(u, true);
+				list.add(new ReplicaSet.Replica(u, r));
+			}
+			replicaSet = new ReplicaSet(list, b, replicaRetry * 1000L, REPLICA_WAIT * 1000L);
+		}
+
+		if (prewarm && minIdle > 0 && maxTotal > 0)
+		{
+			XMLContext.getDefaultExecutor().execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					prewarm();
+				}
+			});
+		}
+		else
+		{
+			ready.complete(null);
+		}
+	}
+
+	private Pool pool(String u, boolean readOnly)
+	{
+		if (BUILTIN.equalsIgnoreCase(engine))
+		{
+			BagPool b = new BagPool(driver, u, username, password);
+			b.setDefaultReadOnly(readOnly);
+			b.setMaxTotal(maxTotal);
+			b.setMinIdle(minIdle);
+			b.setValidationInterval(validationInterval * 1000L);
+			b.setValidationTimeout(validationTimeout);
+			b.setMaxLifetime(maxLifetime * 1000L);
+			b.setIdleTimeout(idleTimeout * 1000L);
+			b.setMaxWait(maxWait * 1000L);
+			return b;
+		}
+		else if (engine != null && !"dbcp".equalsIgnoreCase(engine))
+		{
+			throw new IllegalArgumentException("Unknown pool engine " + engine);
+		}
+
+		Pool.Dbcp p = new Pool.Dbcp();
+		p.setDefaultReadOnly(readOnly);
+		p.setDriverClassName(driver);
+		p.setUsername(username);
+		p.setPassword(password);
+		p.setUrl(u);
+		p.setMinIdle(minIdle);
+		p.setMaxTotal(maxTotal);
+		if (maxWait > 0)
+			p.setMaxWaitMillis(maxWait * 1000L);
+
+		/*
+		 * Without a validation query the pool validates with Connection.isValid().
+		 */
+		p.setValidationQueryTimeout(validationTimeout);
+		if (validationInterval > 0)
+		{
+			p.setTestOnBorrow(false);
+			p.setTestWhileIdle(true);
+			p.setTimeBetweenEvictionRunsMillis(validationInterval * 1000L);
+			p.setNumTestsPerEvictionRun(-1);
+		}
+		if (maxLifetime > 0)
+			p.setMaxConnLifetimeMillis(maxLifetime * 1000L);
+		if (idleTimeout > 0)
+			p.setSoftMinEvictableIdleTimeMillis(idleTimeout * 1000L);
+		return p;
+	}
+
+	/**
+	 * Fills the primary pool, then each replica's.  Only the primary failing makes {@link #ready()} fail; a replica
+	 * that can't be filled is left to the replica set to eject.
+	 */
+	private void prewarm()
+	{
+		int target = Math.min(minIdle, maxTotal);
+		try
+		{
+			prewarm(ds, url, target);
+		}
+		catch (SQLException | RuntimeException e)
+		{
+			LOG.log(Level.WARNING, "Pre-warming stopped after " + warmed.get() + "/" + target + " connections to " + url, e);
+			ready.completeExceptionally(e);
+			return;
+		}
+
+		ReplicaSet r = replicaSet;
+		if (r != null)
+		{
+			for (Pool p : r.getPools())
+			{
+				try
+				{
+					prewarm(p, "a replica of " + url, target);
+				}
+				catch (SQLException | RuntimeException e)
+				{
+					LOG.log(Level.WARNING, "Pre-warming a replica of " + url + " stopped", e);
+				}
+			}
+		}
+		ready.complete(null);
+	}
+
+	/**
+	 * Borrows connections until the pool holds <tt>target</tt> of them, then hands them all back.
+	 */
+	private void prewarm(Pool p, String what, int target) throws SQLException
+	{
+		List<Connection> borrowed = new ArrayList<Connection>(target);
+		try
+		{
+			for (int i = 0; i < target; i++)
+			{
+				borrowed.add(p.getConnection(PREWARM_WAIT));
+				int n = warmed.incrementAndGet();
+				LOG.log(Level.FINE, "Pre-warmed {0} connections, {1}/{2} to {3}", new Object[] { n, i + 1, target, what });
+			}
+			LOG.log(Level.INFO, "Pre-warmed {0} connections to {1}", new Object[] { target, what });
+		}
+		finally
+		{
+			for (Connection c : borrowed)
+			{
+				try
+				{
+					c.close();
+				}
+				catch (SQLException ignore)
+				{
+				}
+			}
+		}
 	}
 
+	/**
+	 * The read only view returned by {@link DSAdapter#getReadOnlyDataSource()}.
+	 */
+	private class ReadOnlyDataSource implements DataSource
+	{
+		@Override
+		public Connection getConnection() throws SQLException
+		{
+			return getReadOnlyConnection();
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException
+		{
+			return getReadOnlyConnection();
+		}
+
+		@Override
+		public PrintWriter getLogWriter() throws SQLException
+		{
+			return DSAdapter.this.getLogWriter();
+		}
+
+		@Override
+		public void setLogWriter(PrintWriter out) throws SQLException
+		{
+			DSAdapter.this.setLogWriter(out);
+		}
+
+		@Override
+		public void setLoginTimeout(int seconds) throws SQLException
+		{
+			DSAdapter.this.setLoginTimeout(seconds);
+		}
+
+		@Override
+		public int getLoginTimeout() throws SQLException
+		{
+			return DSAdapter.this.getLoginTimeout();
+		}
+
+		@Override
+		public Logger getParentLogger()
+		{
+			return DSAdapter.this.getParentLogger();
+		}
+
+		@Override
+		public <T> T unwrap(Class<T> iface) throws SQLException
+		{
+			return DSAdapter.this.unwrap(iface);
+		}
+
+		@Override
+		public boolean isWrapperFor(Class<?> iface) throws SQLException
+		{
+			return DSAdapter.this.isWrapperFor(iface);
+		}
+	}
 }
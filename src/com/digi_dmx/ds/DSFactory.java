@@ -23,31 +23,183 @@ SOFTWARE.
 */
 package com.digi_dmx.ds;
 
+import java.time.Duration;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import javax.naming.ConfigurationException;
 import javax.naming.Context;
 import javax.naming.Name;
+import javax.naming.NamingException;
+import javax.naming.RefAddr;
 import javax.naming.Reference;
 import javax.naming.spi.ObjectFactory;
 
+import com.digi_dmx.XMLContext;
+
 /**
  * This class contructs the Datasource Adapter
  * @author eric
  */
 public class DSFactory implements ObjectFactory
 {
+	private static final Logger LOG = Logger.getLogger(DSFactory.class.getName());
+
 	@Override
 	public Object getObjectInstance(Object obj, Name name, Context nameCtx, Hashtable<?, ?> environment) throws Exception
 	{
-		Reference ref = (Reference) obj;
+		DSAdapter a = configure((Reference) obj);
+		a.open();
+		a.instrument(fullName(name, nameCtx));
+
+		if (a.isHotSwap())
+		{
+			if (nameCtx instanceof XMLContext)
+				HotSwap.watch(a, (XMLContext) nameCtx, name, a.getHotSwapInterval());
+			else
+				LOG.warning("hotSwap needs an XMLContext, " + name + " won't be watched");
+		}
+		return a;
+	}
+
+	/**
+	 * @param ref A DSAdapter binding
+	 * @return An adapter configured from the binding, not yet opened.
+	 * @throws ConfigurationException if the binding asks for something that doesn't exist
+	 */
+	static DSAdapter configure(Reference ref) throws ConfigurationException
+	{
 		DSAdapter a = new DSAdapter();
 		a.setDriver(ref.get("driver").getContent().toString());
 		a.setUrl(ref.get("url").getContent().toString());
-		if (ref.get("username") != null && ref.get("username").getContent() != null)
-			a.setUsername(ref.get("username").getContent().toString());
-		if (ref.get("password") != null && ref.get("password").getContent() != null)
-			a.setPassword(ref.get("password").getContent().toString());
-                a.open();
-                return a;
+		if (value(ref, "username") != null)
+			a.setUsername(value(ref, "username"));
+		if (value(ref, "password") != null)
+			a.setPassword(value(ref, "password"));
+		if (number(ref, "minIdle") != null)
+			a.setMinIdle(number(ref, "minIdle"));
+		if (flag(ref, "prewarm") != null)
+			a.setPrewarm(flag(ref, "prewarm"));
+		if (value(ref, "replicas") != null)
+			a.setReplicas(value(ref, "replicas"));
+		if (value(ref, "balance") != null)
+		{
+			try
+			{
+				ReplicaSet.Balance.parse(value(ref, "balance"));
+			}
+			catch (IllegalArgumentException e)
+			{
+				ConfigurationException ce = new ConfigurationException(e.getMessage());
+				ce.setRootCause(e);
+				throw ce;
+			}
+			a.setBalance(value(ref, "balance"));
+		}
+		if (seconds(ref, "replicaRetry") != null)
+			a.setReplicaRetry(seconds(ref, "replicaRetry"));
+		if (number(ref, "maxTotal") != null)
+			a.setMaxTotal(number(ref, "maxTotal"));
+		if (value(ref, "engine") != null)
+			a.setEngine(value(ref, "engine"));
+		if (seconds(ref, "validationInterval") != null)
+			a.setValidationInterval(seconds(ref, "validationInterval"));
+		if (seconds(ref, "validationTimeout") != null)
+			a.setValidationTimeout(seconds(ref, "validationTimeout"));
+		if (seconds(ref, "maxLifetime") != null)
+			a.setMaxLifetime(seconds(ref, "maxLifetime"));
+		if (seconds(ref, "idleTimeout") != null)
+			a.setIdleTimeout(seconds(ref, "idleTimeout"));
+		if (number(ref, "maxWaiters") != null)
+			a.setMaxWaiters(number(ref, "maxWaiters"));
+		if (seconds(ref, "maxWait") != null)
+			a.setMaxWait(seconds(ref, "maxWait"));
+		if (flag(ref, "instrument") != null)
+			a.setInstrument(flag(ref, "instrument"));
+		if (seconds(ref, "leakThreshold") != null)
+			a.setLeakThreshold(seconds(ref, "leakThreshold"));
+		if (flag(ref, "hotSwap") != null)
+			a.setHotSwap(flag(ref, "hotSwap"));
+		if (seconds(ref, "hotSwapInterval") != null)
+			a.setHotSwapInterval(seconds(ref, "hotSwapInterval"));
+		return a;
+	}
+
+	/**
+	 * @return The name relative to the root of the namespace when the context can say, else the name as given.
+	 */
+	private static String fullName(Name name, Context nameCtx)
+	{
+		try
+		{
+			if (nameCtx != null)
+				return nameCtx.composeName(name.toString(), nameCtx.getNameInNamespace());
+		}
+		catch (NamingException | RuntimeException e)
+		{
+			LOG.log(Level.FINE, "Using " + name + " as given", e);
+		}
+		return name.toString();
+	}
+
+	/**
+	 * @param ref The reference
+	 * @param type The attribute name
+	 * @return The attribute's value or null if it's missing.  A list is joined with spaces.
+	 */
+	@SuppressWarnings("unchecked")
+	private static String value(Reference ref, String type)
+	{
+		RefAddr addr = ref.get(type);
+		if (addr == null || addr.getContent() == null)
+			return null;
+		if (addr.getContent() instanceof List)
+			return String.join(" ", (List<String>) addr.getContent());
+		return addr.getContent().toString();
+	}
+
+	/**
+	 * @return The attribute as a number, whether declared <tt>int</tt> or written as a plain string, or null if it's missing.
+	 */
+	private static Integer number(Reference ref, String type)
+	{
+		RefAddr addr = ref.get(type);
+		if (addr == null || addr.getContent() == null)
+			return null;
+		if (addr.getContent() instanceof Number)
+			return ((Number) addr.getContent()).intValue();
+		return Integer.valueOf(addr.getContent().toString());
+	}
+
+	/**
+	 * @return The attribute in seconds, from a <tt>duration</tt> or a number, or null if it's missing.  A duration
+	 * is rounded up to whole seconds, so <tt>500ms</tt> is one second rather than zero, which would turn the
+	 * setting off.
+	 */
+	private static Integer seconds(Reference ref, String type)
+	{
+		RefAddr addr = ref.get(type);
+		if (addr != null && addr.getContent() instanceof Duration)
+		{
+			Duration d = (Duration) addr.getContent();
+			long s = d.getSeconds() + (d.getNano() > 0 ? 1 : 0);
+			return (int) Math.min(s, Integer.MAX_VALUE);
+		}
+		return number(ref, type);
+	}
+
+	/**
+	 * @return The attribute as a boolean, or null if it's missing.
+	 */
+	private static Boolean flag(Reference ref, String type)
+	{
+		RefAddr addr = ref.get(type);
+		if (addr == null || addr.getContent() == null)
+			return null;
+		if (addr.getContent() instanceof Boolean)
+			return (Boolean) addr.getContent();
+		return Boolean.valueOf(addr.getContent().toString());
 	}
 }
@@ -0,0 +1,190 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx.ds;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.naming.Name;
+import javax.naming.Reference;
+
+import com.digi_dmx.XMLContext;
+
+/**
+ * Watches the binding of a {@link DSAdapter} declared with <tt>hotSwap</tt> and swaps in a new pool when the
+ * binding changes.  All adapters share one daemon thread for checking; the new pool is waited on and swapped in
+ * on the default executor, so a slow pre-warm doesn't hold up the others.  The adapter is only weakly held, so an
+ * adapter that is no longer used stops being watched; its pools are held here and closed by the check that finds
+ * it gone.
+ * 
+ * @author Eric E Bardes
+ */
+class HotSwap implements Runnable
+{
+	private static final Logger LOG = Logger.getLogger(HotSwap.class.getName());
+
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, "DSAdapter-hotswap");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private final WeakReference<DSAdapter> adapter;
+
+	private final XMLContext ctx;
+
+	private final String name;
+
+	private volatile ScheduledFuture<?> future;
+
+	/** the adapter's pools, kept up to date across swaps, which never refer back to the adapter */
+	private volatile Pool pool;
+
+	private volatile ReplicaSet replicas;
+
+	/** the interval the check is scheduled at */
+	private volatile int seconds;
+
+	/** true while a new pool is being swapped in, so the binding isn't checked again meanwhile */
+	private volatile boolean swapping;
+
+	private HotSwap(DSAdapter adapter, XMLContext ctx, String name)
+	{
+		this.adapter = new WeakReference<DSAdapter>(adapter);
+		this.ctx = ctx;
+		this.name = name;
+		this.pool = adapter.pool();
+		this.replicas = adapter.replicaSet();
+	}
+
+	/**
+	 * @param adapter The adapter to keep current
+	 * @param ctx The context it was looked up in
+	 * @param name Its name in that context
+	 * @param seconds How often to check the binding
+	 */
+	static void watch(DSAdapter adapter, XMLContext ctx, Name name, int seconds)
+	{
+		new HotSwap(adapter, ctx, name.toString()).schedule(seconds);
+	}
+
+	private synchronized void schedule(int seconds)
+	{
+		this.seconds = seconds;
+		future = TIMER.scheduleWithFixedDelay(this, seconds, seconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Follows the hot swap settings of a binding that has just been swapped in.
+	 */
+	private synchronized void reschedule(DSAdapter current)
+	{
+		if (!current.isHotSwap())
+		{
+			future.cancel(false);
+			LOG.log(Level.INFO, "Binding {0} no longer asks for hot swap, it is no longer watched", name);
+		}
+		else if (current.getHotSwapInterval() != seconds)
+		{
+			future.cancel(false);
+			schedule(current.getHotSwapInterval());
+		}
+	}
+
+	/**
+	 * Runs one pool drain on the shared thread.
+	 * 
+	 * @param task The drain
+	 * @param delayMillis When to run it
+	 */
+	static void schedule(Runnable task, long delayMillis)
+	{
+		TIMER.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void run()
+	{
+		final DSAdapter current = adapter.get();
+		if (current == null)
+		{
+			future.cancel(false);
+			LOG.log(Level.FINE, "The adapter for {0} is no longer used, closing its pools", name);
+			DSAdapter.retire(pool, replicas);
+			return;
+		}
+		if (swapping)
+			return;
+
+		try
+		{
+			Reference ref = ctx.getReference(name);
+			final DSAdapter next = DSFactory.configure(ref);
+			if (next.getReference().equals(current.getReference()))
+				return;
+
+			LOG.log(Level.INFO, "Binding {0} changed, building a new pool", name);
+			next.open();
+			swapping = true;
+			XMLContext.getDefaultExecutor().execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						current.swap(next);
+						pool = current.pool();
+						replicas = current.replicaSet();
+						reschedule(current);
+					}
+					catch (Exception e)
+					{
+						LOG.log(Level.WARNING, "Unable to hot swap " + name + ", keeping the current pool", e);
+					}
+					finally
+					{
+						swapping = false;
+					}
+				}
+			});
+		}
+		catch (Exception e)
+		{
+			swapping = false;
+			LOG.log(Level.WARNING, "Unable to hot swap " + name + ", keeping the current pool", e);
+		}
+	}
+}
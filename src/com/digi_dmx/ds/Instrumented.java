@@ -0,0 +1,112 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx.ds;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Wraps a connection, and the statements and result sets it creates, to feed a {@link QueryStats}.  Only used
+ * when the binding asks for <tt>instrument</tt>; otherwise connections are handed out as they come from the pool.
+ * 
+ * @author Eric E Bardes
+ */
+class Instrumented implements InvocationHandler
+{
+	private final Object target;
+
+	/** the proxy that created this one, handed back by getConnection() and getStatement() */
+	private final Object parent;
+
+	private final QueryStats stats;
+
+	private Instrumented(Object target, Object parent, QueryStats stats)
+	{
+		this.target = target;
+		this.parent = parent;
+		this.stats = stats;
+	}
+
+	/**
+	 * @param c A connection just borrowed
+	 * @param stats Where to record its use
+	 * @return The connection to hand out
+	 */
+	static Connection wrap(Connection c, QueryStats stats)
+	{
+		Connection proxy = proxy(Connection.class, c, null, stats);
+		stats.borrowed(proxy);
+		return proxy;
+	}
+
+	private static <T> T proxy(Class<T> type, Object target, Object parent, QueryStats stats)
+	{
+		return type.cast(Proxy.newProxyInstance(Instrumented.class.getClassLoader(), new Class<?>[] { type }, new Instrumented(target, parent, stats)));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+	{
+		String name = method.getName();
+		if (name.equals("equals"))
+			return proxy == args[0];
+		if (name.equals("hashCode"))
+			return System.identityHashCode(proxy);
+
+		if (target instanceof Connection && name.equals("close"))
+			stats.returned(proxy);
+		if (parent != null && (name.equals("getConnection") || name.equals("getStatement")) && method.getParameterTypes().length == 0)
+			return parent;
+
+		boolean execute = target instanceof Statement && name.startsWith("execute");
+		long start = execute ? System.nanoTime() : 0;
+		Object result;
+		try
+		{
+			result = method.invoke(target, args);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw e.getCause();
+		}
+		finally
+		{
+			if (execute)
+				stats.executed(System.nanoTime() - start);
+		}
+
+		if (target instanceof ResultSet && name.equals("next") && Boolean.TRUE.equals(result))
+			stats.fetched();
+
+		Class<?> type = method.getReturnType();
+		if (result != null && (Statement.class.isAssignableFrom(type) || type == ResultSet.class))
+			return proxy(type, result, proxy, stats);
+		return result;
+	}
+}
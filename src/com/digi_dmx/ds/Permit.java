@@ -0,0 +1,87 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx.ds;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A connection borrowed under one of the permits of a {@link DSAdapter}.  Closing it gives the connection back to
+ * the pool first and the permit second, so the next thread through the semaphore finds the connection free.
+ * 
+ * @author Eric E Bardes
+ */
+class Permit implements InvocationHandler
+{
+	private final Connection target;
+
+	private final Semaphore permits;
+
+	private final AtomicBoolean released = new AtomicBoolean();
+
+	private Permit(Connection target, Semaphore permits)
+	{
+		this.target = target;
+		this.permits = permits;
+	}
+
+	/**
+	 * @param c A connection borrowed after acquiring a permit
+	 * @param permits Where the permit came from
+	 * @return The connection to hand out
+	 */
+	static Connection wrap(Connection c, Semaphore permits)
+	{
+		return (Connection) Proxy.newProxyInstance(Permit.class.getClassLoader(), new Class<?>[] { Connection.class }, new Permit(c, permits));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+	{
+		String name = method.getName();
+		if (name.equals("equals"))
+			return proxy == args[0];
+		if (name.equals("hashCode"))
+			return System.identityHashCode(proxy);
+
+		try
+		{
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw e.getCause();
+		}
+		finally
+		{
+			if (name.equals("close") && released.compareAndSet(false, true))
+				permits.release();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx.ds;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.NoSuchElementException;
+
+import javax.sql.DataSource;
+
+/**
+ * What {@link DSAdapter} needs from a pool engine, so the commons-dbcp2 pool and the built-in {@link BagPool} can
+ * be used interchangeably.
+ * 
+ * @author Eric E Bardes
+ */
+interface Pool extends DataSource
+{
+	/**
+	 * @return The number of connections currently borrowed.
+	 */
+	int getNumActive();
+
+	/**
+	 * Closes the idle connections and stops handing out new ones.  Borrowed connections are closed as they are returned.
+	 * 
+	 * @throws SQLException if a connection couldn't be closed
+	 */
+	void close() throws SQLException;
+
+	/**
+	 * Borrows a connection, whatever the pool's own limit on waiting.
+	 * 
+	 * @param timeoutMillis The longest to wait for one to be free
+	 * @return The connection, returned to the pool when closed
+	 * @throws SQLException if none became free in time or one couldn't be opened
+	 */
+	Connection getConnection(long timeoutMillis) throws SQLException;
+
+	/**
+	 * The commons-dbcp2 engine, the default.
+	 */
+	class Dbcp extends org.apache.commons.dbcp2.BasicDataSource implements Pool
+	{
+		/**
+		 * {@inheritDoc}  The connection's close is moved off virtual threads, see {@link Unpinned}.
+		 */
+		@Override
+		public Connection getConnection() throws SQLException
+		{
+			return Unpinned.wrap(super.getConnection());
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException
+		{
+			return Unpinned.wrap(super.getConnection(username, password));
+		}
+
+		@Override
+		public Connection getConnection(long timeoutMillis) throws SQLException
+		{
+			createDataSource();
+			try
+			{
+				return Unpinned.wrap(getConnectionPool().borrowObject(timeoutMillis));
+			}
+			catch (NoSuchElementException e)
+			{
+				throw new SQLTimeoutException("No connection to " + getUrl() + " became free within " + timeoutMillis + "ms", e);
+			}
+			catch (SQLException | RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new SQLException("Unable to borrow a connection to " + getUrl(), e);
+			}
+		}
+	}
+}
@@ -0,0 +1,263 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx.ds;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Statistics for the connections of one binding, shared by every {@link DSAdapter} looked up under that name.
+ * Counters are {@link LongAdder}s so threads recording at the same time don't contend.
+ * 
+ * @author Eric E Bardes
+ */
+class QueryStats implements QueryStatsMBean
+{
+	private static final Logger LOG = Logger.getLogger(QueryStats.class.getName());
+
+	private static final Map<String, QueryStats> BY_NAME = new ConcurrentHashMap<String, QueryStats>();
+
+	private final LongAdder executions = new LongAdder();
+
+	private final LongAdder executeNanos = new LongAdder();
+
+	private final AtomicLong maxExecuteNanos = new AtomicLong();
+
+	private final LongAdder rows = new LongAdder();
+
+	private final LongAdder borrows = new LongAdder();
+
+	private final LongAdder holdNanos = new LongAdder();
+
+	private final AtomicLong maxHoldNanos = new AtomicLong();
+
+	/** connections currently borrowed, to when and by whom */
+	private final Map<Object, Borrow> held = new ConcurrentHashMap<Object, Borrow>();
+
+	private volatile int leakThreshold;
+
+	/**
+	 * Who borrowed a connection.  The stack is captured as a Throwable, only while leaks are tracked, and only
+	 * rendered if it's reported.
+	 */
+	static final class Borrow extends Throwable
+	{
+		private static final long serialVersionUID = 1L;
+
+		final long start = System.nanoTime();
+
+		final String thread = Thread.currentThread().getName();
+
+		Borrow(boolean stack)
+		{
+			super("borrowed here", null, false, stack);
+		}
+	}
+
+	private QueryStats(int leakThreshold)
+	{
+		this.leakThreshold = leakThreshold;
+	}
+
+	/**
+	 * @param name The binding
+	 * @param leakThreshold Seconds before a held connection is suspected of leaking
+	 * @return The statistics for the binding, registered with the platform MBean server the first time.
+	 */
+	static QueryStats forName(String name, int leakThreshold)
+	{
+		QueryStats s = BY_NAME.get(name);
+		if (s != null)
+			return s;
+
+		QueryStats created = new QueryStats(leakThreshold);
+		s = BY_NAME.putIfAbsent(name, created);
+		if (s != null)
+			return s;
+
+		try
+		{
+			ObjectName on = new ObjectName("com.digi_dmx:type=DSAdapter,name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(created, on);
+		}
+		catch (JMException e)
+		{
+			LOG.log(Level.WARNING, "Unable to register statistics for " + name, e);
+		}
+		return created;
+	}
+
+	Borrow borrowed(Object connection)
+	{
+		Borrow b = new Borrow(leakThreshold > 0);
+		held.put(connection, b);
+		return b;
+	}
+
+	void returned(Object connection)
+	{
+		Borrow b = held.remove(connection);
+		if (b == null)
+			return;
+		long t = System.nanoTime() - b.start;
+		borrows.increment();
+		holdNanos.add(t);
+		max(maxHoldNanos, t);
+	}
+
+	void executed(long nanos)
+	{
+		executions.increment();
+		executeNanos.add(nanos);
+		max(maxExecuteNanos, nanos);
+	}
+
+	void fetched()
+	{
+		rows.increment();
+	}
+
+	private static void max(AtomicLong max, long value)
+	{
+		long m;
+		while (value > (m = max.get()) && !max.compareAndSet(m, value))
+		{
+		}
+	}
+
+	private static double millis(long nanos)
+	{
+		return nanos / 1e6;
+	}
+
+	@Override
+	public long getExecutions()
+	{
+		return executions.sum();
+	}
+
+	@Override
+	public double getAverageExecuteMillis()
+	{
+		long n = executions.sum();
+		return n == 0 ? 0 : millis(executeNanos.sum()) / n;
+	}
+
+	@Override
+	public double getMaxExecuteMillis()
+	{
+		return millis(maxExecuteNanos.get());
+	}
+
+	@Override
+	public long getRowsFetched()
+	{
+		return rows.sum();
+	}
+
+	@Override
+	public long getBorrows()
+	{
+		return borrows.sum();
+	}
+
+	@Override
+	public double getAverageHoldMillis()
+	{
+		long n = borrows.sum();
+		return n == 0 ? 0 : millis(holdNanos.sum()) / n;
+	}
+
+	@Override
+	public double getMaxHoldMillis()
+	{
+		return millis(maxHoldNanos.get());
+	}
+
+	@Override
+	public int getHeld()
+	{
+		return held.size();
+	}
+
+	@Override
+	public int getLeakThreshold()
+	{
+		return leakThreshold;
+	}
+
+	@Override
+	public void setLeakThreshold(int seconds)
+	{
+		leakThreshold = seconds;
+	}
+
+	@Override
+	public String[] getLeakSuspects()
+	{
+		if (leakThreshold <= 0)
+			return new String[0];
+
+		long now = System.nanoTime();
+		long limit = TimeUnit.SECONDS.toNanos(leakThreshold);
+		List<String> suspects = new ArrayList<String>();
+		for (Borrow b : held.values())
+		{
+			long t = now - b.start;
+			if (t > limit)
+			{
+				StringWriter w = new StringWriter();
+				w.write("held " + TimeUnit.NANOSECONDS.toSeconds(t) + "s by " + b.thread + ": ");
+				b.printStackTrace(new PrintWriter(w));
+				suspects.add(w.toString());
+			}
+		}
+		return suspects.toArray(new String[suspects.size()]);
+	}
+
+	@Override
+	public void reset()
+	{
+		executions.reset();
+		executeNanos.reset();
+		maxExecuteNanos.set(0);
+		rows.reset();
+		borrows.reset();
+		holdNanos.reset();
+		maxHoldNanos.set(0);
+	}
+}
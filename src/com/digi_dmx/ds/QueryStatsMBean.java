@@ -0,0 +1,94 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx.ds;
+
+/**
+ * The statistics kept for an instrumented {@link DSAdapter} binding, registered as
+ * <tt>com.digi_dmx:type=DSAdapter,name=<i>binding</i></tt>.  Times are in milliseconds.
+ * 
+ * @author Eric E Bardes
+ */
+public interface QueryStatsMBean
+{
+	/**
+	 * @return The number of statements executed.
+	 */
+	long getExecutions();
+
+	/**
+	 * @return The mean time a statement took to execute.
+	 */
+	double getAverageExecuteMillis();
+
+	/**
+	 * @return The longest time a statement took to execute.
+	 */
+	double getMaxExecuteMillis();
+
+	/**
+	 * @return The number of rows read from result sets.
+	 */
+	long getRowsFetched();
+
+	/**
+	 * @return The number of connections borrowed and returned.
+	 */
+	long getBorrows();
+
+	/**
+	 * @return The mean time a connection was held.
+	 */
+	double getAverageHoldMillis();
+
+	/**
+	 * @return The longest time a connection was held.
+	 */
+	double getMaxHoldMillis();
+
+	/**
+	 * @return The number of connections currently borrowed.
+	 */
+	int getHeld();
+
+	/**
+	 * @return Seconds a connection may be held before it is reported as a leak suspect.
+	 */
+	int getLeakThreshold();
+
+	/**
+	 * @param seconds Seconds a connection may be held before it is reported as a leak suspect.  Zero stops tracking
+	 * leaks, and borrowing no longer captures a stack.
+	 */
+	void setLeakThreshold(int seconds);
+
+	/**
+	 * @return One entry per connection held longer than the threshold, with the thread and stack that borrowed it.
+	 */
+	String[] getLeakSuspects();
+
+	/**
+	 * Starts counting again.  Connections currently borrowed stay tracked.
+	 */
+	void reset();
+}
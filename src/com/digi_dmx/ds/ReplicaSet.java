@@ -0,0 +1,289 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx.ds;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The read replicas of a {@link DSAdapter}, each with its own pool.  Picks a replica for every read-only
+ * connection and takes replicas that fail to connect out of rotation for a while.  A replica whose pool has
+ * no connection free within a short wait is passed over for that borrow only, so a burst of reads that fills
+ * every replica's pool doesn't eject healthy replicas.
+ * 
+ * @author Eric E Bardes
+ */
+class ReplicaSet
+{
+	private static final Logger LOG = Logger.getLogger(ReplicaSet.class.getName());
+
+	/**
+	 * How a replica is chosen.
+	 */
+	enum Balance
+	{
+		/** Each replica in turn */
+		ROUND_ROBIN,
+
+		/** The replica with the fewest borrowed connections */
+		LEAST_ACTIVE,
+
+		/**
+		 * Randomly, favouring replicas that have recently been quicker to hand out connections.  The latency is
+		 * the time to borrow from the replica's pool, not the time queries take.
+		 */
+		LATENCY_WEIGHTED;
+
+		/**
+		 * @param s round-robin, least-active or latency-weighted, also accepted as latency or borrow-time. Null
+		 *        means round-robin.
+		 * @return The strategy
+		 * @throws IllegalArgumentException if the strategy isn't one of these
+		 */
+		static Balance parse(String s)
+		{
+			if (s == null || s.trim().isEmpty())
+				return ROUND_ROBIN;
+			switch (s.trim().toLowerCase())
+			{
+			case "round-robin":
+				return ROUND_ROBIN;
+			case "least-active":
+				return LEAST_ACTIVE;
+			case "latency-weighted":
+			case "latency":
+			case "borrow-time":
+				return LATENCY_WEIGHTED;
+			default:
+				throw new IllegalArgumentException("Unknown balance " + s + ", expected round-robin, least-active or latency-weighted");
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			return name().toLowerCase().replace('_', '-');
+		}
+	}
+
+	/**
+	 * One replica and what's known about its health.
+	 */
+	static class Replica
+	{
+		final String url;
+
+		final Pool ds;
+
+		/** when the replica may be tried again after a failure, 0 if healthy */
+		volatile long ejectedUntil;
+
+		/** moving average of the time getConnection takes, in nanoseconds */
+		volatile double borrowTime = 1e6;
+
+		Replica(String url, Pool ds)
+		{
+			this.url = url;
+			this.ds = ds;
+		}
+
+		boolean isHealthy(long now)
+		{
+			return ejectedUntil <= now;
+		}
+	}
+
+	private final Replica[] replicas;
+
+	private final Balance balance;
+
+	private final long retryMillis;
+
+	private final long waitMillis;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * @param replicas The replicas
+	 * @param balance How to choose among them
+	 * @param retryMillis How long a failed replica stays out of rotation
+	 * @param waitMillis How long to wait for a replica's pool to have a connection free
+	 */
+	ReplicaSet(List<Replica> replicas, Balance balance, long retryMillis, long waitMillis)
+	{
+		this.replicas = replicas.toArray(new Replica[replicas.size()]);
+		this.balance = balance;
+		this.retryMillis = retryMillis;
+		this.waitMillis = waitMillis;
+	}
+
+	/**
+	 * @return A connection from a healthy replica, or null if none could provide one.
+	 */
+	Connection getConnection()
+	{
+		Set<Replica> full = new HashSet<Replica>();
+		for (int attempt = 0; attempt < replicas.length; attempt++)
+		{
+			long now = System.currentTimeMillis();
+			Replica r = choose(now, full);
+			if (r == null)
+				return null;
+
+			long start = System.nanoTime();
+			try
+			{
+				Connection c = r.ds.getConnection(waitMillis);
+				r.borrowTime = 0.8 * r.borrowTime + 0.2 * (System.nanoTime() - start);
+				return c;
+			}
+			catch (SQLTimeoutException e)
+			{
+				/*
+				 * Both pool engines only time out when every connection is borrowed.  That's load, not a fault.
+				 */
+				full.add(r);
+				r.borrowTime = 0.8 * r.borrowTime + 0.2 * (System.nanoTime() - start);
+				LOG.log(Level.FINE, "Replica " + r.url + " has no connection free", e);
+			}
+			catch (SQLException | RuntimeException e)
+			{
+				r.ejectedUntil = now + retryMillis;
+				LOG.log(Level.WARNING, "Replica " + r.url + " ejected for " + retryMillis + "ms", e);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param skip Replicas already tried for this borrow
+	 */
+	private Replica choose(long now, Set<Replica> skip)
+	{
+		int n = replicas.length;
+		switch (balance)
+		{
+		case LEAST_ACTIVE:
+		{
+			Replica best = null;
+			for (Replica r : replicas)
+			{
+				if (r.isHealthy(now) && !skip.contains(r) && (best == null || r.ds.getNumActive() < best.ds.getNumActive()))
+					best = r;
+			}
+			return best;
+		}
+		case LATENCY_WEIGHTED:
+		{
+			double total = 0;
+			for (Replica r : replicas)
+			{
+				if (r.isHealthy(now) && !skip.contains(r))
+					total += 1 / r.borrowTime;
+			}
+			if (total == 0)
+				return null;
+			double pick = ThreadLocalRandom.current().nextDouble(total);
+			Replica last = null;
+			for (Replica r : replicas)
+			{
+				if (r.isHealthy(now) && !skip.contains(r))
+				{
+					last = r;
+					pick -= 1 / r.borrowTime;
+					if (pick < 0)
+						return r;
+				}
+			}
+			return last;
+		}
+		default:
+		{
+			int start = next.getAndIncrement() & Integer.MAX_VALUE;
+			for (int i = 0; i < n; i++)
+			{
+				Replica r = replicas[(start + i) % n];
+				if (r.isHealthy(now) && !skip.contains(r))
+					return r;
+			}
+			return null;
+		}
+		}
+	}
+
+	/**
+	 * @return The pool of every replica, healthy or not.
+	 */
+	List<Pool> getPools()
+	{
+		List<Pool> pools = new ArrayList<Pool>(replicas.length);
+		for (Replica r : replicas)
+		{
+			pools.add(r.ds);
+		}
+		return pools;
+	}
+
+	/**
+	 * @return The number of replicas currently in rotation.
+	 */
+	int getHealthy()
+	{
+		long now = System.currentTimeMillis();
+		int healthy = 0;
+		for (Replica r : replicas)
+		{
+			if (r.isHealthy(now))
+				healthy++;
+		}
+		return healthy;
+	}
+
+	/**
+	 * Closes every replica pool.
+	 */
+	void close()
+	{
+		for (Replica r : replicas)
+		{
+			try
+			{
+				r.ds.close();
+			}
+			catch (SQLException e)
+			{
+				LOG.log(Level.FINE, "Closing " + r.url, e);
+			}
+		}
+	}
+}
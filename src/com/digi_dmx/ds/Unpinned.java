@@ -0,0 +1,173 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx.ds;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A commons-dbcp2 connection whose close runs on a platform thread when it's called from a virtual one.  DBCP gives
+ * the connection back to its pool inside a synchronized method, and a virtual thread that blocks there is pinned to
+ * its carrier.  The virtual thread waits for the close without holding a monitor.
+ * 
+ * @author Eric E Bardes
+ */
+class Unpinned implements InvocationHandler
+{
+	/**
+	 * <tt>Thread.isVirtual()</tt>, Java 21 and later.  Looked up reflectively so the library still runs on older
+	 * releases, where it is null.
+	 */
+	private static final MethodHandle IS_VIRTUAL = lookupIsVirtual();
+
+	private static final ExecutorService CLOSER = Executors.newCachedThreadPool(new ThreadFactory()
+	{
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, "DSAdapter-closer-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private final Connection target;
+
+	private Unpinned(Connection target)
+	{
+		this.target = target;
+	}
+
+	/**
+	 * @param c A connection borrowed from a commons-dbcp2 pool
+	 * @return The connection to hand out
+	 */
+	static Connection wrap(Connection c)
+	{
+		return (Connection) Proxy.newProxyInstance(Unpinned.class.getClassLoader(), new Class<?>[] { Connection.class }, new Unpinned(c));
+	}
+
+	private static MethodHandle lookupIsVirtual()
+	{
+		try
+		{
+			return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+		}
+		catch (ReflectiveOperationException | RuntimeException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @return Whether the current thread is a virtual thread
+	 */
+	static boolean isVirtual()
+	{
+		if (IS_VIRTUAL == null)
+			return false;
+		try
+		{
+			return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+		}
+		catch (Throwable t)
+		{
+			// not thrown: isVirtual takes no arguments and declares nothing
+			return false;
+		}
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+	{
+		String name = method.getName();
+		if (name.equals("equals"))
+			return proxy == args[0];
+		if (name.equals("hashCode"))
+			return System.identityHashCode(proxy);
+		if (name.equals("unwrap") && ((Class<?>) args[0]).isInstance(proxy))
+			return proxy;
+		if (name.equals("isWrapperFor") && ((Class<?>) args[0]).isInstance(proxy))
+			return true;
+		if (name.equals("close") && isVirtual())
+		{
+			close();
+			return null;
+		}
+
+		try
+		{
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw e.getCause();
+		}
+	}
+
+	private void close() throws SQLException
+	{
+		try
+		{
+			CLOSER.submit(new Callable<Void>()
+			{
+				@Override
+				public Void call() throws SQLException
+				{
+					target.close();
+					return null;
+				}
+			}).get();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException)
+				throw (SQLException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw (Error) cause;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted closing a connection", e);
+		}
+	}
+}
@@ -49,6 +49,10 @@ public class Attr
 	@XmlJavaTypeAdapter(NormalizedStringAdapter.class)
 	protected String value;
 
+	@XmlAttribute(name = "type")
+	@XmlJavaTypeAdapter(NormalizedStringAdapter.class)
+	protected String type;
+
 	/**
 	 * Gets the value of the name property.
 	 * 
@@ -95,4 +99,27 @@ public class Attr
 		this.value = value;
 	}
 
+	/**
+	 * Gets the value of the type property.
+	 * 
+	 * @return possible object is {@link String }, null for a string
+	 * 
+	 */
+	public String getType()
+	{
+		return type;
+	}
+
+	/**
+	 * Sets the value of the type property.
+	 * 
+	 * @param value
+	 *            allowed object is {@link String }
+	 * 
+	 */
+	public void setType(String value)
+	{
+		this.type = value;
+	}
+
 }
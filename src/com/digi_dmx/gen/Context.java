@@ -47,10 +47,14 @@ public class Context
 	@XmlJavaTypeAdapter(NormalizedStringAdapter.class)
 	protected String clazz;
 
-	@XmlAttribute(name = "factory", required = true)
+	@XmlAttribute(name = "factory")
 	@XmlJavaTypeAdapter(NormalizedStringAdapter.class)
 	protected String factory;
 
+	@XmlAttribute(name = "lazy")
+	@XmlJavaTypeAdapter(NormalizedStringAdapter.class)
+	protected String lazy;
+
 	protected List<Attr> attr;
 
 	/**
@@ -99,6 +103,29 @@ public class Context
 		this.factory = value;
 	}
 
+	/**
+	 * Gets the value of the lazy property.
+	 * 
+	 * @return possible object is {@link String }
+	 * 
+	 */
+	public String getLazy()
+	{
+		return lazy;
+	}
+
+	/**
+	 * Sets the value of the lazy property.
+	 * 
+	 * @param value
+	 *            allowed object is {@link String }
+	 * 
+	 */
+	public void setLazy(String value)
+	{
+		this.lazy = value;
+	}
+
 	/**
 	 * Gets the value of the attr property.
 	 * 
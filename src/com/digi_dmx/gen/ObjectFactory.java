@@ -62,4 +62,24 @@ public class ObjectFactory
 		return new Attr();
 	}
 
+	/**
+	 * Create an instance of {@link Bindings }
+	 * @return The new Bindings
+	 * 
+	 */
+	public Bindings createBindings()
+	{
+		return new Bindings();
+	}
+
+	/**
+	 * Create an instance of {@link Binding }
+	 * @return The new Binding
+	 * 
+	 */
+	public Binding createBinding()
+	{
+		return new Binding();
+	}
+
 }
@@ -0,0 +1,173 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.Context;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Which executor an asynchronous lookup runs on.
+ * 
+ * @author Eric E Bardes
+ */
+public class AsyncLookupTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private XMLContext ctx;
+
+	/** runs tasks on the calling thread and remembers them */
+	private static class Counting implements Executor
+	{
+		final List<Runnable> ran = new ArrayList<Runnable>();
+
+		@Override
+		public void execute(Runnable task)
+		{
+			ran.add(task);
+			task.run();
+		}
+	}
+
+	@Before
+	public void open() throws Exception
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+		ctx = new XMLContext(env);
+		ctx.bind("a", Value.of("A"));
+		ctx.createSubcontext("sub").bind("b", Value.of("B"));
+	}
+
+	private static Thread ranOnDefault() throws Exception
+	{
+		final CompletableFuture<Thread> ranOn = new CompletableFuture<Thread>();
+		DefaultExecutor.get().execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				ranOn.complete(Thread.currentThread());
+			}
+		});
+		return ranOn.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void lookupRunsOnTheContextsExecutor() throws Exception
+	{
+		Counting executor = new Counting();
+		ctx.setExecutor(executor);
+		assertEquals("A", ctx.lookupAsync("a").get(5, TimeUnit.SECONDS));
+		assertEquals(1, executor.ran.size());
+	}
+
+	@Test
+	public void subcontextsInheritTheExecutor() throws Exception
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+		XMLContext fresh = new XMLContext(env);
+		Counting executor = new Counting();
+		fresh.setExecutor(executor);
+
+		XMLContext sub = (XMLContext) fresh.lookup("sub");
+		assertEquals("B", sub.lookupAsync("b").get(5, TimeUnit.SECONDS));
+		assertEquals(1, executor.ran.size());
+	}
+
+	@Test
+	public void nullRestoresTheDefault() throws Exception
+	{
+		Counting executor = new Counting();
+		ctx.setExecutor(executor);
+		ctx.setExecutor(null);
+
+		assertEquals("A", ctx.lookupAsync("a").get(5, TimeUnit.SECONDS));
+		assertTrue(executor.ran.isEmpty());
+		assertNotSame(Thread.currentThread(), ranOnDefault());
+	}
+
+	@Test
+	public void defaultIsVirtualThreadsOrAFallbackPool() throws Exception
+	{
+		Thread t = ranOnDefault();
+
+		if (Runtime.version().feature() >= 21)
+		{
+			assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual").invoke(t));
+		}
+		else
+		{
+			assertTrue(t.isDaemon());
+			assertTrue(t.getName(), t.getName().startsWith("EasyJNDI-lookup-"));
+		}
+		assertSame(DefaultExecutor.get(), DefaultExecutor.get());
+	}
+
+	@Test
+	public void rejectedLookupFailsAndIsNotShared() throws Exception
+	{
+		ctx.setExecutor(new Executor()
+		{
+			@Override
+			public void execute(Runnable task)
+			{
+				throw new RejectedExecutionException("full");
+			}
+		});
+		try
+		{
+			ctx.lookupAsync("a").get(5, TimeUnit.SECONDS);
+			fail("the rejected lookup completed");
+		}
+		catch (ExecutionException e)
+		{
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+
+		ctx.setExecutor(new Counting());
+		assertEquals("A", ctx.lookupAsync("a").get(5, TimeUnit.SECONDS));
+	}
+}
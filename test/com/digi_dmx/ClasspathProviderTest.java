@@ -0,0 +1,116 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Hashtable;
+
+import javax.naming.Context;
+import javax.naming.NameClassPair;
+import javax.naming.NamingEnumeration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Bindings read from a jar on the class path.
+ * 
+ * @author Eric E Bardes
+ */
+public class ClasspathProviderTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ClassLoader saved;
+
+	private URLClassLoader loader;
+
+	@Before
+	public void packageBindings() throws Exception
+	{
+		File src = folder.newFolder("src");
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, src.toURI().toString());
+		XMLContext writer = new XMLContext(env);
+		writer.bind("packaged/a", Value.of("A"));
+		writer.bind("packaged/with space", Value.of("S"));
+		writer.close();
+
+		File jar = new File(folder.getRoot(), "bindings.jar");
+		ArchiveExport.export(src, jar);
+
+		saved = Thread.currentThread().getContextClassLoader();
+		loader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, getClass().getClassLoader());
+		Thread.currentThread().setContextClassLoader(loader);
+	}
+
+	@After
+	public void restore() throws Exception
+	{
+		Thread.currentThread().setContextClassLoader(saved);
+		loader.close();
+	}
+
+	private static XMLContext open(String url) throws Exception
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, url);
+		return new XMLContext(env);
+	}
+
+	@Test
+	public void bindingsAreReadFromAJarUnderABaseDirectory() throws Exception
+	{
+		XMLContext ctx = open("classpath:packaged");
+		assertEquals("A", ctx.lookup("a"));
+		assertEquals("S", ctx.lookup("with space"));
+	}
+
+	@Test
+	public void bareClasspathIndexesJars() throws Exception
+	{
+		XMLContext ctx = open("classpath:");
+		assertEquals("A", ctx.lookup("packaged/a"));
+		assertEquals("S", ctx.lookup("packaged/with space"));
+
+		NamingEnumeration<NameClassPair> names = ctx.list("packaged");
+		int count = 0;
+		for (NameClassPair p : Collections.list(names))
+		{
+			assertTrue(p.getName(), p.getName().equals("a") || p.getName().equals("with space"));
+			count++;
+		}
+		assertEquals(2, count);
+	}
+}
@@ -0,0 +1,243 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.Context;
+import javax.naming.Name;
+import javax.naming.NamingException;
+import javax.naming.Reference;
+import javax.naming.Referenceable;
+import javax.naming.StringRefAddr;
+import javax.naming.spi.ObjectFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Concurrent lookups of one name sharing a single load.
+ * 
+ * @author Eric E Bardes
+ */
+public class CoalescingTest
+{
+	private static final int THREADS = 8;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private XMLContext ctx;
+
+	private ExecutorService threads;
+
+	/** how many times {@link Scripted} ran */
+	static final AtomicInteger runs = new AtomicInteger();
+
+	/** held by {@link Scripted} before it looks another name up, if set */
+	static volatile CyclicBarrier barrier;
+
+	/**
+	 * Does what its <tt>action</tt> address says: <tt>slow</tt> returns a new object after a pause, <tt>fail</tt>
+	 * throws after a pause, and <tt>lookup:name</tt> returns whatever the name looks up to.
+	 */
+	public static class Scripted implements ObjectFactory
+	{
+		@Override
+		public Object getObjectInstance(Object obj, Name name, Context nameCtx, Hashtable<?, ?> environment) throws Exception
+		{
+			runs.incrementAndGet();
+			String action = (String) ((Reference) obj).get("action").getContent();
+			if (action.startsWith("lookup:"))
+			{
+				CyclicBarrier b = barrier;
+				if (b != null)
+					b.await(5, TimeUnit.SECONDS);
+				return nameCtx.lookup(action.substring("lookup:".length()));
+			}
+			Thread.sleep(200);
+			if (action.equals("fail"))
+				throw new NamingException("failed once");
+			return new Object();
+		}
+	}
+
+	private static Referenceable scripted(String action)
+	{
+		return Value.wrap(new Reference(Object.class.getName(), new StringRefAddr("action", action), Scripted.class.getName(), null));
+	}
+
+	@Before
+	public void open() throws Exception
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+		ctx = new XMLContext(env);
+		threads = Executors.newCachedThreadPool();
+		runs.set(0);
+		barrier = null;
+	}
+
+	@After
+	public void close()
+	{
+		threads.shutdownNow();
+	}
+
+	/** starts the same lookup on every thread at once */
+	private List<Future<Object>> lookupFromAll(final String name)
+	{
+		final CountDownLatch go = new CountDownLatch(1);
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for (int i = 0; i < THREADS; i++)
+		{
+			results.add(threads.submit(new Callable<Object>()
+			{
+				@Override
+				public Object call() throws Exception
+				{
+					go.await();
+					return ctx.lookup(name);
+				}
+			}));
+		}
+		go.countDown();
+		return results;
+	}
+
+	@Test
+	public void concurrentLookupsRunTheFactoryOnce() throws Exception
+	{
+		ctx.bind("slow", scripted("slow"));
+		List<Future<Object>> results = lookupFromAll("slow");
+		Object first = results.get(0).get(10, TimeUnit.SECONDS);
+		for (Future<Object> r : results)
+		{
+			assertSame(first, r.get(10, TimeUnit.SECONDS));
+		}
+		assertEquals(1, runs.get());
+	}
+
+	@Test
+	public void concurrentLookupsShareTheFailure() throws Exception
+	{
+		ctx.bind("fail", scripted("fail"));
+		List<Future<Object>> results = lookupFromAll("fail");
+		NamingException first = null;
+		for (Future<Object> r : results)
+		{
+			try
+			{
+				r.get(10, TimeUnit.SECONDS);
+				fail("the lookup succeeded");
+			}
+			catch (ExecutionException e)
+			{
+				NamingException ne = (NamingException) e.getCause();
+				if (first == null)
+					first = ne;
+				assertSame(first, ne);
+			}
+		}
+		assertEquals(1, runs.get());
+	}
+
+	@Test
+	public void factoryLookingItselfUpFails() throws Exception
+	{
+		ctx.bind("self", scripted("lookup:self"));
+		Future<Object> r = threads.submit(new Callable<Object>()
+		{
+			@Override
+			public Object call() throws Exception
+			{
+				return ctx.lookup("self");
+			}
+		});
+		try
+		{
+			r.get(10, TimeUnit.SECONDS);
+			fail("the lookup succeeded");
+		}
+		catch (ExecutionException e)
+		{
+			assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("Circular lookup of self"));
+		}
+	}
+
+	@Test
+	public void lookupsWaitingOnEachOtherFail() throws Exception
+	{
+		ctx.bind("a", scripted("lookup:b"));
+		ctx.bind("b", scripted("lookup:a"));
+		barrier = new CyclicBarrier(2);
+
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for (final String name : new String[] { "a", "b" })
+		{
+			results.add(threads.submit(new Callable<Object>()
+			{
+				@Override
+				public Object call() throws Exception
+				{
+					return ctx.lookup(name);
+				}
+			}));
+		}
+
+		boolean circular = false;
+		for (Future<Object> r : results)
+		{
+			try
+			{
+				r.get(10, TimeUnit.SECONDS);
+				fail("the lookup succeeded");
+			}
+			catch (ExecutionException e)
+			{
+				circular |= String.valueOf(e.getCause().getMessage()).contains("Circular lookup");
+			}
+		}
+		assertTrue(circular);
+	}
+}
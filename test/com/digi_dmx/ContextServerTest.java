@@ -0,0 +1,199 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.zip.GZIPInputStream;
+
+import javax.naming.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Plain HTTP requests to a {@link ContextServer} on an ephemeral port.
+ * 
+ * @author Eric E Bardes
+ */
+public class ContextServerTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private XMLContext ctx;
+
+	private ContextServer server;
+
+	@Before
+	public void start() throws Exception
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+		ctx = new XMLContext(env);
+		server = new ContextServer(ctx, new InetSocketAddress("127.0.0.1", 0));
+		server.start();
+	}
+
+	@After
+	public void stop()
+	{
+		server.stop(0);
+	}
+
+	private HttpURLConnection open(String path) throws IOException
+	{
+		return (HttpURLConnection) server.getURI().resolve(path).toURL().openConnection();
+	}
+
+	private static byte[] body(HttpURLConnection c) throws IOException
+	{
+		try (InputStream in = c.getInputStream())
+		{
+			return in.readAllBytes();
+		}
+	}
+
+	private byte[] file(String name) throws IOException
+	{
+		return Files.readAllBytes(folder.getRoot().toPath().resolve(name));
+	}
+
+	@Test
+	public void bindingIsServedAsStored() throws Exception
+	{
+		ctx.bind("jdbc/main", Value.of("M"));
+
+		HttpURLConnection c = open("jdbc/main.xml");
+		assertEquals(200, c.getResponseCode());
+		assertEquals("application/xml", c.getContentType());
+		assertNotNull(c.getHeaderField("ETag"));
+		assertArrayEquals(file("jdbc/main.xml"), body(c));
+	}
+
+	@Test
+	public void missingBindingIsNotFound() throws Exception
+	{
+		assertEquals(404, open("missing.xml").getResponseCode());
+		assertFalse(new File(folder.getRoot(), "missing.xml").exists());
+	}
+
+	@Test
+	public void matchingETagIsNotModified() throws Exception
+	{
+		ctx.bind("a", Value.of("A"));
+		HttpURLConnection first = open("a.xml");
+		String etag = first.getHeaderField("ETag");
+		body(first);
+
+		HttpURLConnection again = open("a.xml");
+		again.setRequestProperty("If-None-Match", etag);
+		assertEquals(304, again.getResponseCode());
+		assertEquals(etag, again.getHeaderField("ETag"));
+
+		ctx.rebind("a", Value.of("B"));
+		HttpURLConnection changed = open("a.xml");
+		changed.setRequestProperty("If-None-Match", etag);
+		assertEquals(200, changed.getResponseCode());
+		assertFalse(etag.equals(changed.getHeaderField("ETag")));
+		assertArrayEquals(file("a.xml"), body(changed));
+	}
+
+	@Test
+	public void gzipIsSentToClientsThatAcceptIt() throws Exception
+	{
+		ctx.bind("a", Value.of("A"));
+
+		HttpURLConnection zipped = open("a.xml");
+		zipped.setRequestProperty("Accept-Encoding", "gzip");
+		assertEquals(200, zipped.getResponseCode());
+		assertEquals("gzip", zipped.getHeaderField("Content-Encoding"));
+		String etag = zipped.getHeaderField("ETag");
+		try (InputStream in = new GZIPInputStream(zipped.getInputStream()))
+		{
+			assertArrayEquals(file("a.xml"), in.readAllBytes());
+		}
+
+		HttpURLConnection plain = open("a.xml");
+		assertEquals(200, plain.getResponseCode());
+		assertNull(plain.getHeaderField("Content-Encoding"));
+		assertEquals(etag, plain.getHeaderField("ETag"));
+		assertArrayEquals(file("a.xml"), body(plain));
+	}
+
+	@Test
+	public void oversizedPutIsRefused() throws Exception
+	{
+		put(false);
+	}
+
+	@Test
+	public void oversizedChunkedPutIsRefused() throws Exception
+	{
+		put(true);
+	}
+
+	/**
+	 * Sends a PUT longer than the server takes.
+	 * 
+	 * @param chunked true to send it without a Content-Length
+	 */
+	private void put(boolean chunked) throws Exception
+	{
+		server.setWritable(true);
+		server.setMaxBody(64);
+		byte[] big = new byte[1024];
+		Arrays.fill(big, (byte) ' ');
+
+		HttpURLConnection c = open("big.xml");
+		c.setRequestMethod("PUT");
+		c.setDoOutput(true);
+		if (chunked)
+			c.setChunkedStreamingMode(256);
+		else
+			c.setFixedLengthStreamingMode(big.length);
+		try (OutputStream out = c.getOutputStream())
+		{
+			out.write(big);
+		}
+		assertEquals(413, c.getResponseCode());
+		assertFalse(ctx.provider().exists("big"));
+	}
+}
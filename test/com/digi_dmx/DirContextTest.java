@@ -0,0 +1,174 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+
+import javax.naming.Context;
+import javax.naming.NameNotFoundException;
+import javax.naming.Reference;
+import javax.naming.Referenceable;
+import javax.naming.StringRefAddr;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Reading and changing the attributes of bindings through {@link DirContext}.
+ * 
+ * @author Eric E Bardes
+ */
+public class DirContextTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private XMLContext ctx;
+
+	@Before
+	public void open() throws Exception
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+		ctx = new XMLContext(env);
+	}
+
+	/**
+	 * @return A binding whose factory doesn't exist, so only reads that skip the factory succeed.
+	 */
+	private static Referenceable unloadable()
+	{
+		Reference ref = new Reference(String.class.getName(), "com.example.NoSuchFactory", null);
+		ref.add(new StringRefAddr("host", "a"));
+		ref.add(new StringRefAddr("port", "5432"));
+		ref.add(new StringRefAddr("host", "b"));
+		return Value.wrap(ref);
+	}
+
+	private static List<Object> values(Attribute a) throws Exception
+	{
+		if (a == null)
+			return null;
+		List<Object> values = new ArrayList<Object>();
+		for (int i = 0; i < a.size(); i++)
+		{
+			values.add(a.get(i));
+		}
+		return values;
+	}
+
+	@Test
+	public void attributesAreReadWithoutRunningTheFactory() throws Exception
+	{
+		ctx.bind("db", unloadable());
+		DirContext dir = ctx;
+		assertEquals(Arrays.<Object> asList("a", "b"), values(dir.getAttributes("db").get("host")));
+		assertEquals(Arrays.<Object> asList("5432"), values(dir.getAttributes("db").get("port")));
+	}
+
+	@Test
+	public void onlyTheAttributesAskedForAreReturned() throws Exception
+	{
+		ctx.bind("db", unloadable());
+		Attributes attrs = ctx.getAttributes("db", new String[] { "port" });
+		assertEquals(1, attrs.size());
+		assertNull(attrs.get("host"));
+	}
+
+	@Test
+	public void subcontextHasNoAttributes() throws Exception
+	{
+		ctx.createSubcontext("jdbc");
+		assertEquals(0, ctx.getAttributes("jdbc").size());
+	}
+
+	@Test
+	public void modificationsAreWritten() throws Exception
+	{
+		ctx.bind("db", unloadable());
+		ctx.modifyAttributes("db", new ModificationItem[] {
+				new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("host", "c")),
+				new ModificationItem(DirContext.REPLACE_ATTRIBUTE, new BasicAttribute("port", "6543")),
+				new ModificationItem(DirContext.REMOVE_ATTRIBUTE, new BasicAttribute("host", "a")) });
+
+		XMLContext fresh = new XMLContext(ctx.getEnvironment());
+		assertEquals(Arrays.<Object> asList("b", "c"), values(fresh.getAttributes("db").get("host")));
+		assertEquals(Arrays.<Object> asList("6543"), values(fresh.getAttributes("db").get("port")));
+	}
+
+	@Test
+	public void bindingWithAttributesOverridesTheObjects() throws Exception
+	{
+		ctx.bind("db", unloadable(), new BasicAttributes("port", "1"));
+		assertEquals(Arrays.<Object> asList("1"), values(ctx.getAttributes("db").get("port")));
+		assertEquals(Arrays.<Object> asList("a", "b"), values(ctx.getAttributes("db").get("host")));
+	}
+
+	@Test
+	public void missingBindingHasNoAttributes() throws Exception
+	{
+		try
+		{
+			ctx.getAttributes("a/b/missing");
+			fail("read attributes of a missing binding");
+		}
+		catch (NameNotFoundException e)
+		{
+			assertEquals("a/b/missing", e.getExplanation());
+		}
+		assertFalse("a read created directories", new File(folder.getRoot(), "a").exists());
+	}
+
+	@Test
+	public void missingBindingHasNoReference() throws Exception
+	{
+		try
+		{
+			ctx.getReference("a/b/missing");
+			fail("read the reference of a missing binding");
+		}
+		catch (NameNotFoundException e)
+		{
+			assertEquals("a/b/missing", e.getExplanation());
+		}
+		assertFalse("a read created directories", new File(folder.getRoot(), "a").exists());
+	}
+}
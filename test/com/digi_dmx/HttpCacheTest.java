@@ -0,0 +1,173 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.naming.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * When an {@link HttpCache} fetches bindings from a {@link ContextServer}, with a short time to live.
+ * 
+ * @author Eric E Bardes
+ */
+public class HttpCacheTest
+{
+	/** milliseconds a binding is kept */
+	private static final long TTL = 600;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private RecordingServer server;
+
+	private HttpCache cache;
+
+	@Before
+	public void start() throws Exception
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+		XMLContext ctx = new XMLContext(env);
+		ctx.bind("a", Value.of("A"));
+
+		server = new RecordingServer(ctx);
+		cache = new HttpCache(server.getURI(), TTL);
+	}
+
+	@After
+	public void stop()
+	{
+		cache.close();
+		server.stop();
+	}
+
+	@Test
+	public void nameInUseIsRefreshedBeforeItExpires() throws Exception
+	{
+		HttpCache.Entry first = cache.get("a");
+		Thread.sleep(TTL / 4);
+		assertSame(first, cache.get("a"));
+
+		long deadline = first.fetched + TTL;
+		while (cache.peek("a") == first && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		HttpCache.Entry refreshed = cache.peek("a");
+		assertNotSame("not refreshed before it expired", first, refreshed);
+		assertTrue(refreshed.fetched < deadline);
+		assertArrayEquals(first.data, refreshed.data);
+		assertEquals(first.changed, refreshed.changed);
+		assertEquals(Arrays.asList("GET /a.xml 200", "GET /a.xml 304"), server.requests(2));
+	}
+
+	@Test
+	public void idleNameAgesOut() throws Exception
+	{
+		HttpCache.Entry first = cache.get("a");
+		long deadline = first.fetched + 2 * TTL;
+		while (cache.peek("a") != null && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		assertNull("still held", cache.peek("a"));
+		assertTrue("dropped before it expired", System.currentTimeMillis() >= first.fetched + TTL);
+		assertEquals(Collections.singletonList("GET /a.xml 200"), server.requests(1));
+	}
+
+	@Test
+	public void refreshesAreSpreadWithinTheJitter()
+	{
+		long low = (long) (TTL * HttpCache.REFRESH_AHEAD);
+		long high = (long) (TTL * (HttpCache.REFRESH_AHEAD + HttpCache.JITTER));
+		long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+		for (int i = 0; i < 1000; i++)
+		{
+			long delay = cache.refreshDelay();
+			assertTrue(delay + " is before " + low, delay >= low);
+			assertTrue(delay + " is after " + high, delay <= high);
+			min = Math.min(min, delay);
+			max = Math.max(max, delay);
+		}
+		assertTrue("the delays aren't spread: " + min + ".." + max, max - min > (high - low) / 2);
+	}
+
+	@Test
+	public void concurrentMissesShareOneFetch() throws Exception
+	{
+		server.delay = 200;
+		final CountDownLatch go = new CountDownLatch(1);
+		ExecutorService threads = Executors.newFixedThreadPool(8);
+		try
+		{
+			List<Future<HttpCache.Entry>> got = new ArrayList<Future<HttpCache.Entry>>();
+			for (int i = 0; i < 8; i++)
+			{
+				got.add(threads.submit(new Callable<HttpCache.Entry>()
+				{
+					@Override
+					public HttpCache.Entry call() throws Exception
+					{
+						go.await();
+						return cache.get("a");
+					}
+				}));
+			}
+			go.countDown();
+			HttpCache.Entry first = got.get(0).get();
+			for (Future<HttpCache.Entry> f : got)
+			{
+				assertSame(first, f.get());
+			}
+		}
+		finally
+		{
+			threads.shutdown();
+		}
+		assertEquals(Collections.singletonList("GET /a.xml 200"), server.requests(1));
+	}
+}
@@ -0,0 +1,131 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+
+import javax.naming.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * What an {@link HttpMirror} asks a {@link ContextServer} for when it refreshes.
+ * 
+ * @author Eric E Bardes
+ */
+public class HttpMirrorTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private XMLContext ctx;
+
+	private RecordingServer server;
+
+	private HttpMirror mirror;
+
+	@Before
+	public void start() throws Exception
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+		ctx = new XMLContext(env);
+		for (int i = 0; i < 10; i++)
+		{
+			ctx.bind("b" + i, Value.of("V" + i));
+		}
+
+		server = new RecordingServer(ctx);
+		mirror = new HttpMirror(server.getURI(), 0);
+	}
+
+	@After
+	public void stop()
+	{
+		mirror.close();
+		server.stop();
+	}
+
+	/**
+	 * @return The value of a binding as the mirror holds it
+	 */
+	private String value(HttpMirror.Entry e) throws Exception
+	{
+		return (String) ctx.parseXML(new ByteArrayInputStream(e.data)).get("value").getContent();
+	}
+
+	@Test
+	public void firstUsePullsEverythingAtOnce() throws Exception
+	{
+		assertEquals("V3", value(mirror.get("b3")));
+		assertEquals(10, mirror.list("").size());
+		assertEquals(Collections.singletonList("GET /?bulk 200"), server.requests(1));
+	}
+
+	@Test
+	public void unchangedNamespaceCostsOne304() throws Exception
+	{
+		HttpMirror.Entry before = mirror.get("b3");
+		server.clear(1);
+
+		mirror.refresh();
+		assertEquals(Collections.singletonList("GET /?manifest 304"), server.requests(1));
+		assertSame(before, mirror.get("b3"));
+	}
+
+	@Test
+	public void onlyChangedBindingsAreFetched() throws Exception
+	{
+		HttpMirror.Entry kept = mirror.get("b3");
+		HttpMirror.Entry old = mirror.get("b5");
+		ctx.rebind("b5", Value.of("changed"));
+		ctx.unbind("b7");
+		ctx.bind("b10", Value.of("new"));
+		server.clear(1);
+
+		mirror.refresh();
+		assertEquals(Arrays.asList("GET /?manifest 200", "GET /b10.xml 200", "GET /b5.xml 200"), server.requests(3));
+		assertSame(kept, mirror.get("b3"));
+		assertNotSame(old, mirror.get("b5"));
+		assertEquals("changed", value(mirror.get("b5")));
+		assertEquals("new", value(mirror.get("b10")));
+		assertNull(mirror.get("b7"));
+
+		server.clear(3);
+		mirror.refresh();
+		assertEquals(Collections.singletonList("GET /?manifest 304"), server.requests(1));
+	}
+}
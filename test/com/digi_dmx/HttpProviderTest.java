@@ -0,0 +1,200 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetSocketAddress;
+import java.util.Hashtable;
+
+import javax.naming.Context;
+import javax.naming.NameAlreadyBoundException;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+import javax.naming.RefAddr;
+import javax.naming.Reference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Writing through the <tt>http</tt> scheme to a {@link ContextServer} on an ephemeral port.
+ * 
+ * @author Eric E Bardes
+ */
+public class HttpProviderTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ContextServer server;
+
+	@Before
+	public void start() throws Exception
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+		server = new ContextServer(new XMLContext(env), new InetSocketAddress("127.0.0.1", 0));
+		server.setWritable(true);
+		server.start();
+	}
+
+	@After
+	public void stop()
+	{
+		server.stop(0);
+	}
+
+	private XMLContext client() throws NamingException
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, server.getURI().toString());
+		return new XMLContext(env);
+	}
+
+	/**
+	 * @return The binding as the server has it now, read by a client that has cached nothing.
+	 */
+	private String read(String name) throws NamingException
+	{
+		return (String) client().lookup(name);
+	}
+
+	@Test
+	public void bindRebindUnbind() throws Exception
+	{
+		XMLContext ctx = client();
+		ctx.bind("jdbc/a", Value.of("1"));
+		assertEquals("1", read("jdbc/a"));
+
+		ctx.rebind("jdbc/a", Value.of("2"));
+		assertEquals("2", read("jdbc/a"));
+
+		ctx.unbind("jdbc/a");
+		try
+		{
+			read("jdbc/a");
+			fail("jdbc/a was unbound");
+		}
+		catch (NameNotFoundException expected)
+		{
+		}
+	}
+
+	@Test
+	public void batchCommits() throws Exception
+	{
+		XMLContext ctx = client();
+		ctx.bind("old", Value.of("0"));
+		ctx.batch().bind("x", Value.of("1")).bind("y", Value.of("2")).unbind("old").commit();
+		assertEquals("1", read("x"));
+		assertEquals("2", read("y"));
+		try
+		{
+			read("old");
+			fail("old was unbound");
+		}
+		catch (NameNotFoundException expected)
+		{
+		}
+
+		try
+		{
+			ctx.batch().bind("x", Value.of("3")).rebind("y", Value.of("4")).commit();
+			fail("x is already bound");
+		}
+		catch (NameAlreadyBoundException expected)
+		{
+		}
+		assertEquals("1", read("x"));
+		assertEquals("4", read("y"));
+	}
+
+	@Test
+	public void staleIfMatchIsRefused() throws Exception
+	{
+		XMLContext mine = client();
+		XMLContext theirs = client();
+		mine.bind("s", Value.of("1"));
+		assertEquals("1", theirs.lookup("s"));
+		mine.rebind("s", Value.of("2"));
+
+		try
+		{
+			theirs.bind("s", Value.of("3"));
+			fail("s changed since it was read");
+		}
+		catch (NamingException e)
+		{
+			assertTrue(String.valueOf(e.getRootCause()), e.getRootCause().getMessage().contains("412"));
+		}
+		assertEquals("2", read("s"));
+
+		theirs.rebind("s", Value.of("4"));
+		assertEquals("4", read("s"));
+	}
+
+	@Test
+	public void failedWriteSendsNothing() throws Exception
+	{
+		XMLContext ctx = client();
+		ctx.bind("f", Value.of("1"));
+
+		final IllegalStateException failure = new IllegalStateException("unprintable");
+		Reference broken = Value.of("2").getReference();
+		broken.add(new RefAddr("extra")
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Object getContent()
+			{
+				return new Object()
+				{
+					@Override
+					public String toString()
+					{
+						throw failure;
+					}
+				};
+			}
+		});
+		try
+		{
+			ctx.rebind("f", broken);
+			fail("the document couldn't be written");
+		}
+		catch (NamingException e)
+		{
+			assertSame(failure, e.getRootCause());
+		}
+		assertEquals("1", read("f"));
+	}
+}
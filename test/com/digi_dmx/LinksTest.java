@@ -0,0 +1,91 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Hashtable;
+
+import javax.naming.Context;
+import javax.naming.LinkRef;
+import javax.naming.directory.BasicAttributes;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Binding and following {@link LinkRef}s.
+ * 
+ * @author Eric E Bardes
+ */
+public class LinksTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private XMLContext ctx;
+
+	@Before
+	public void open() throws Exception
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+		ctx = new XMLContext(env);
+		ctx.bind("a", Value.of("A"));
+		ctx.bind("b", Value.of("B"));
+	}
+
+	private String valueOf(String name) throws Exception
+	{
+		return (String) ctx.lookup(name);
+	}
+
+	@Test
+	public void linkBindsWithAttributes() throws Exception
+	{
+		ctx.bind("l", new LinkRef("a"), new BasicAttributes("note", "alias"));
+		assertEquals("A", valueOf("l"));
+		assertEquals("alias", ctx.getAttributes("l").get("note").get());
+	}
+
+	@Test
+	public void linkEditedBehindTheContextIsFollowed() throws Exception
+	{
+		ctx.bind("l", new LinkRef("a"));
+		ctx.bind("m", new LinkRef("b"));
+		assertEquals("A", valueOf("l"));
+
+		File l = new File(folder.getRoot(), "l.xml");
+		long stamp = l.lastModified();
+		Files.copy(new File(folder.getRoot(), "m.xml").toPath(), l.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		l.setLastModified(stamp + 5000);
+
+		assertEquals("B", valueOf("l"));
+	}
+}
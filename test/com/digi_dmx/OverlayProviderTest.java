@@ -0,0 +1,159 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+
+import javax.naming.Context;
+import javax.naming.NameClassPair;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Layers of an {@link OverlayProvider} changing behind the context.
+ * 
+ * @author Eric E Bardes
+ */
+public class OverlayProviderTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File top;
+
+	private File bottom;
+
+	private XMLContext ctx;
+
+	@Before
+	public void open() throws Exception
+	{
+		top = folder.newFolder("top");
+		bottom = folder.newFolder("bottom");
+		context(bottom).bind("a", Value.of("bottom"));
+		ctx = context(0L, top, bottom);
+	}
+
+	private static XMLContext context(File... layers) throws Exception
+	{
+		return context(0L, layers);
+	}
+
+	private static XMLContext context(long interval, File... layers) throws Exception
+	{
+		StringBuilder url = new StringBuilder();
+		for (File f : layers)
+		{
+			url.append(f.toURI()).append(' ');
+		}
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, url.toString().trim());
+		env.put(XMLContext.OVERLAY_INTERVAL, Long.toString(interval));
+		return new XMLContext(env);
+	}
+
+	@Test
+	public void bindingAddedToHigherLayerTakesOver() throws Exception
+	{
+		assertEquals("bottom", ctx.lookup("a"));
+		context(top).bind("a", Value.of("top"));
+		assertEquals("top", ctx.lookup("a"));
+	}
+
+	@Test
+	public void bindingRemovedFromWinningLayerUncoversTheNext() throws Exception
+	{
+		context(top).bind("a", Value.of("top"));
+		assertEquals("top", ctx.lookup("a"));
+
+		new File(top, "a.xml").delete();
+		assertEquals("bottom", ctx.lookup("a"));
+	}
+
+	@Test
+	public void formerWinnerCanBecomeADirectory() throws Exception
+	{
+		assertEquals("bottom", ctx.lookup("a"));
+		assertTrue(new File(top, "a").mkdir());
+		assertTrue(ctx.provider().isDirectory("a"));
+	}
+
+	@Test
+	public void layersAreNotCheckedAgainWithinTheInterval() throws Exception
+	{
+		XMLContext slow = context(60000L, top, bottom);
+		assertEquals("bottom", slow.lookup("a"));
+
+		context(top).bind("a", Value.of("behind"));
+		assertEquals("bottom", slow.lookup("a"));
+
+		slow.rebind("a", Value.of("top"));
+		assertEquals("top", slow.lookup("a"));
+	}
+
+	@Test
+	public void listMergesTheLayersAndSeesWrites() throws Exception
+	{
+		context(top).bind("b", Value.of("top"));
+		XMLContext slow = context(60000L, top, bottom);
+		assertEquals(Arrays.asList("a", "b"), names(slow, ""));
+
+		slow.bind("c", Value.of("top"));
+		slow.createSubcontext("d");
+		assertEquals(Arrays.asList("a", "b", "c", "d"), names(slow, ""));
+
+		slow.unbind("b");
+		assertEquals(Arrays.asList("a", "c", "d"), names(slow, ""));
+	}
+
+	@Test
+	public void listSeesLayersChangedBehindTheContext() throws Exception
+	{
+		assertEquals(Arrays.asList("a"), names(ctx, ""));
+		context(top).bind("b", Value.of("top"));
+		assertEquals(Arrays.asList("a", "b"), names(ctx, ""));
+	}
+
+	private static List<String> names(Context c, String name) throws Exception
+	{
+		List<String> names = new ArrayList<String>();
+		for (NameClassPair p : Collections.list(c.list(name)))
+		{
+			names.add(p.getName());
+		}
+		Collections.sort(names);
+		return names;
+	}
+}
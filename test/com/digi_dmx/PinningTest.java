@@ -0,0 +1,299 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import javax.naming.Context;
+import javax.naming.NamingException;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.digi_dmx.ds.DSAdapter;
+
+/**
+ * Loads the code that runs on the default executor from many more virtual threads than there are carriers, under
+ * a JFR recording of <tt>jdk.VirtualThreadPinned</tt>, and expects no pinning in EasyJNDI's own frames.  Skipped
+ * before Java 21, where the default executor has no virtual threads; the <tt>jdk21</tt> build profile runs it again
+ * on a Java 21 toolchain.
+ * 
+ * @author Eric E Bardes
+ */
+public class PinningTest
+{
+	private static final String PINNED = "jdk.VirtualThreadPinned";
+
+	private static final int TASKS = 1000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private XMLContext ctx;
+
+	private Recording recording;
+
+	@Before
+	public void start() throws Exception
+	{
+		Assume.assumeTrue("needs virtual threads", Runtime.version().feature() >= 21);
+
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+		ctx = new XMLContext(env);
+
+		recording = new Recording();
+		recording.enable(PINNED).withThreshold(Duration.ZERO).withStackTrace();
+		recording.start();
+	}
+
+	@After
+	public void stop()
+	{
+		if (recording != null)
+			recording.close();
+	}
+
+	private void exhaust(String engine) throws Exception
+	{
+		exhaust(engine, false);
+	}
+
+	/**
+	 * @param leaveOpen Whether borrowers leave their statements for the pool to close when the connection is returned
+	 */
+	private void exhaust(String engine, final boolean leaveOpen) throws Exception
+	{
+		DSAdapter d = new DSAdapter();
+		d.setDriver("org.h2.Driver");
+		d.setUrl("jdbc:h2:mem:pinning-" + engine + (leaveOpen ? "-open" : ""));
+		d.setEngine(engine);
+		d.setMaxTotal(2);
+		d.setMaxWaiters(2 * TASKS);
+		d.setMaxWait(60);
+		ctx.rebind("jdbc/" + engine, d);
+		final DSAdapter ds = (DSAdapter) ctx.lookup("jdbc/" + engine);
+
+		List<CompletableFuture<?>> done = new ArrayList<CompletableFuture<?>>();
+		for (int i = 0; i < TASKS; i++)
+		{
+			done.add(CompletableFuture.runAsync(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						query(ds.getConnection(), leaveOpen);
+					}
+					catch (SQLException | InterruptedException e)
+					{
+						throw new IllegalStateException(e);
+					}
+				}
+			}, XMLContext.getDefaultExecutor()));
+			done.add(ds.getConnectionAsync().thenAccept(new Consumer<Connection>()
+			{
+				@Override
+				public void accept(Connection c)
+				{
+					try
+					{
+						query(c, leaveOpen);
+					}
+					catch (SQLException | InterruptedException e)
+					{
+						throw new IllegalStateException(e);
+					}
+				}
+			}));
+		}
+		CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[done.size()])).join();
+	}
+
+	private static void query(Connection c, boolean leaveOpen) throws SQLException, InterruptedException
+	{
+		if (leaveOpen)
+		{
+			try (Connection held = c)
+			{
+				ResultSet rs = held.createStatement().executeQuery("select 1");
+				rs.next();
+				held.prepareStatement("select 2").executeQuery();
+				Thread.sleep(1);
+			}
+			return;
+		}
+		try (Connection held = c; Statement st = held.createStatement(); ResultSet rs = st.executeQuery("select 1"))
+		{
+			rs.next();
+			Thread.sleep(1);
+		}
+	}
+
+	@Test
+	public void exhaustedDbcpPoolDoesNotPin() throws Exception
+	{
+		exhaust("dbcp");
+		assertEquals(new ArrayList<String>(), pinned());
+	}
+
+	@Test
+	public void exhaustedBuiltinPoolDoesNotPin() throws Exception
+	{
+		exhaust("builtin");
+		assertEquals(new ArrayList<String>(), pinned());
+	}
+
+	@Test
+	public void closingLeftoverStatementsDoesNotPin() throws Exception
+	{
+		exhaust("builtin", true);
+		assertEquals(new ArrayList<String>(), pinned());
+	}
+
+	@Test
+	public void contextServerWritesDoNotPin() throws Exception
+	{
+		ContextServer server = new ContextServer(ctx, new InetSocketAddress("127.0.0.1", 0));
+		server.setWritable(true);
+		server.start();
+		try
+		{
+			Hashtable<String, Object> env = new Hashtable<String, Object>();
+			env.put(Context.PROVIDER_URL, server.getURI().toString());
+			final Context remote = new XMLContext(env);
+
+			/*
+			 * The clients are platform threads, only the server's handlers run on virtual threads.
+			 */
+			ExecutorService clients = Executors.newFixedThreadPool(16);
+			try
+			{
+				List<Future<Void>> done = new ArrayList<Future<Void>>();
+				for (int i = 0; i < TASKS / 4; i++)
+				{
+					final String name = "w/" + (i % 8);
+					done.add(clients.submit(new Callable<Void>()
+					{
+						@Override
+						public Void call() throws NamingException
+						{
+							DSAdapter d = new DSAdapter();
+							d.setUrl("jdbc:h2:mem:" + name);
+							remote.rebind(name, d);
+							return null;
+						}
+					}));
+				}
+				for (Future<Void> f : done)
+				{
+					f.get();
+				}
+			}
+			finally
+			{
+				clients.shutdown();
+			}
+		}
+		finally
+		{
+			server.stop(0);
+		}
+		assertEquals(new ArrayList<String>(), pinned());
+	}
+
+	/**
+	 * Libraries that block inside their own monitors: a pinning with one of their frames above EasyJNDI's is theirs.
+	 * EasyJNDI moves the calls it knows about off its virtual threads, DBCP's close and the HTTP server's request
+	 * reads, but can't make the rest monitor-free.
+	 */
+	private static final String[] THIRD_PARTY = { "org.h2.", "org.apache.commons.dbcp2.", "sun.net.httpserver." };
+
+	/**
+	 * @return The top frames of every pinning with an EasyJNDI frame on the stack and none of a library that blocks
+	 *         in its own monitors above it.
+	 */
+	private List<String> pinned() throws IOException
+	{
+		recording.stop();
+		Path f = folder.newFile("pinning.jfr").toPath();
+		recording.dump(f);
+
+		List<String> found = new ArrayList<String>();
+		for (RecordedEvent e : RecordingFile.readAllEvents(f))
+		{
+			if (!PINNED.equals(e.getEventType().getName()) || e.getStackTrace() == null)
+				continue;
+			StringBuilder sb = new StringBuilder();
+			boolean ours = false;
+			boolean theirs = false;
+			for (RecordedFrame frame : e.getStackTrace().getFrames())
+			{
+				String where = frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+				if (!ours)
+				{
+					for (String library : THIRD_PARTY)
+					{
+						theirs |= where.startsWith(library);
+					}
+				}
+				ours |= where.startsWith("com.digi_dmx.") && !theirs;
+				sb.append(where).append(" < ");
+			}
+			if (ours)
+				found.add(sb.toString());
+		}
+		Files.deleteIfExists(f);
+		return found;
+	}
+}
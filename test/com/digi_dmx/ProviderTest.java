@@ -0,0 +1,95 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Hashtable;
+
+import javax.naming.Context;
+import javax.naming.NameNotFoundException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Choosing a provider for a URL, and releasing it.
+ * 
+ * @author Eric E Bardes
+ */
+public class ProviderTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void localZipIsAnArchive() throws Exception
+	{
+		assertTrue(Provider.forUri(URI.create("file:/opt/app/bindings.zip")) instanceof ArchiveProvider);
+		assertTrue(Provider.forUri(URI.create("/opt/app/bindings.jar")) instanceof ArchiveProvider);
+		assertTrue(Provider.forUri(URI.create("jar:file:/opt/app/bindings.jar!/jndi")) instanceof ArchiveProvider);
+	}
+
+	@Test
+	public void remoteZipIsNotAnArchive() throws Exception
+	{
+		assertTrue(Provider.forUri(URI.create("http://config.example.com/bindings.zip")) instanceof HttpProvider);
+	}
+
+	@Test
+	public void closingTheRootContextReleasesTheArchive() throws Exception
+	{
+		File src = folder.newFolder("src");
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, src.toURI().toString());
+		XMLContext writer = new XMLContext(env);
+		writer.bind("a", Value.of("A"));
+
+		File archive = new File(folder.getRoot(), "bindings.zip");
+		ArchiveExport.export(src, archive);
+
+		env.put(Context.PROVIDER_URL, archive.toURI().toString());
+		XMLContext ctx = new XMLContext(env);
+		assertEquals("A", ctx.lookup("a"));
+
+		writer.bind("b", Value.of("B"));
+		ArchiveExport.export(src, archive);
+		try
+		{
+			ctx.lookup("b");
+			fail("the open archive was read again");
+		}
+		catch (NameNotFoundException expected)
+		{
+		}
+
+		ctx.close();
+		assertEquals("B", ctx.lookup("b"));
+	}
+}
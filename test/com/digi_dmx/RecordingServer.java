@@ -0,0 +1,134 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A {@link ContextServer}'s handler behind one that records each request with the status it was answered with,
+ * for tests of what clients ask for.
+ * 
+ * @author Eric E Bardes
+ */
+class RecordingServer
+{
+	private final List<String> requests = new CopyOnWriteArrayList<String>();
+
+	private final HttpServer server;
+
+	private final ExecutorService threads = Executors.newCachedThreadPool();
+
+	/** milliseconds each request is held before it is served */
+	volatile long delay;
+
+	/**
+	 * Starts serving on an ephemeral port.
+	 * 
+	 * @param ctx The context to publish
+	 */
+	RecordingServer(XMLContext ctx) throws IOException
+	{
+		final ContextServer handler = new ContextServer(ctx, new InetSocketAddress("127.0.0.1", 0));
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler()
+		{
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				String request = exchange.getRequestMethod() + " " + exchange.getRequestURI();
+				try
+				{
+					if (delay > 0)
+						Thread.sleep(delay);
+					handler.handle(exchange);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				finally
+				{
+					requests.add(request + " " + exchange.getResponseCode());
+				}
+			}
+		});
+		server.setExecutor(threads);
+		server.start();
+	}
+
+	/**
+	 * @return A provider URL for the context
+	 */
+	URI getURI()
+	{
+		return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+	}
+
+	/**
+	 * A request is recorded after the client has its answer, so this waits for them.
+	 * 
+	 * @param count How many requests were made
+	 * @return The requests recorded, sorted
+	 */
+	List<String> requests(int count) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + 5000;
+		while (requests.size() < count && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		List<String> sorted = new ArrayList<String>(requests);
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * Forgets the requests recorded so far, once the count given has arrived.
+	 * 
+	 * @param count How many requests were made
+	 */
+	void clear(int count) throws InterruptedException
+	{
+		requests(count);
+		requests.clear();
+	}
+
+	void stop()
+	{
+		server.stop(0);
+		threads.shutdown();
+	}
+}
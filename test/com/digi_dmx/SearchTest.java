@@ -0,0 +1,168 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.naming.Context;
+import javax.naming.NamingEnumeration;
+import javax.naming.TimeLimitExceededException;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.digi_dmx.ds.DSAdapter;
+
+/**
+ * Searching, and the index behind it.
+ * 
+ * @author Eric E Bardes
+ */
+public class SearchTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** holds back whatever it is given until told to run it */
+	private final List<Runnable> held = new ArrayList<Runnable>();
+
+	private XMLContext ctx;
+
+	@Before
+	public void open() throws Exception
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+		ctx = new XMLContext(env);
+		ctx.setExecutor(new Executor()
+		{
+			@Override
+			public void execute(Runnable task)
+			{
+				held.add(task);
+			}
+		});
+
+		DSAdapter d = new DSAdapter();
+		d.setUrl("jdbc:h2:mem:search");
+		ctx.rebind("jdbc/main", d);
+	}
+
+	private static SearchControls subtree(int millis)
+	{
+		SearchControls sc = new SearchControls();
+		sc.setSearchScope(SearchControls.SUBTREE_SCOPE);
+		sc.setTimeLimit(millis);
+		return sc;
+	}
+
+	@Test
+	public void indexIsBuiltOnFirstSearch() throws Exception
+	{
+		ctx.lookup("jdbc");
+		ctx.list("jdbc");
+		assertTrue(held.isEmpty());
+
+		try
+		{
+			ctx.search("", "(class=com.digi_dmx.ds.DSAdapter)", subtree(50));
+		}
+		catch (TimeLimitExceededException expected)
+		{
+		}
+		assertEquals(1, held.size());
+
+		held.get(0).run();
+		NamingEnumeration<SearchResult> found = ctx.search("", "(class=com.digi_dmx.ds.DSAdapter)", subtree(0));
+		assertEquals("jdbc/main", found.next().getName());
+		assertEquals(1, held.size());
+	}
+
+	@Test(expected = TimeLimitExceededException.class)
+	public void searchHonoursTimeLimit() throws Exception
+	{
+		ctx.search("", "(url=*search*)", subtree(50));
+	}
+
+	@Test
+	public void failedIndexIsBuiltAgain() throws Exception
+	{
+		File archive = new File(folder.getRoot().getParentFile(), folder.getRoot().getName() + ".zip");
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, archive.toURI().toString());
+		XMLContext zipped = new XMLContext(env);
+		zipped.setExecutor(new Executor()
+		{
+			@Override
+			public void execute(Runnable task)
+			{
+				held.add(task);
+			}
+		});
+
+		try
+		{
+			zipped.search("", "(class=com.digi_dmx.ds.DSAdapter)", subtree(50));
+		}
+		catch (TimeLimitExceededException expected)
+		{
+		}
+		held.get(0).run();
+
+		/*
+		 * The archive wasn't there for the first scan.  Once it is, the next search indexes it.
+		 */
+		ArchiveExport.export(folder.getRoot(), archive);
+		try
+		{
+			try
+			{
+				zipped.search("", "(class=com.digi_dmx.ds.DSAdapter)", subtree(50));
+			}
+			catch (TimeLimitExceededException expected)
+			{
+			}
+			assertEquals(2, held.size());
+			held.get(1).run();
+			NamingEnumeration<SearchResult> found = zipped.search("", "(class=com.digi_dmx.ds.DSAdapter)", subtree(0));
+			assertEquals("jdbc/main", found.next().getName());
+		}
+		finally
+		{
+			zipped.close();
+			archive.delete();
+		}
+	}
+}
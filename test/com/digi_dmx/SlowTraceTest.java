@@ -0,0 +1,144 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import javax.naming.ConfigurationException;
+import javax.naming.Context;
+import javax.naming.Name;
+import javax.naming.Reference;
+import javax.naming.StringRefAddr;
+import javax.naming.spi.ObjectFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Logging lookups and binds slower than {@link XMLContext#SLOW_THRESHOLD}.
+ * 
+ * @author Eric E Bardes
+ */
+public class SlowTraceTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Logger log = Logger.getLogger(XMLContext.class.getName());
+
+	private final List<String> logged = new ArrayList<String>();
+
+	private final Handler handler = new Handler()
+	{
+		@Override
+		public void publish(LogRecord record)
+		{
+			logged.add(record.getMessage());
+		}
+
+		@Override
+		public void flush()
+		{
+		}
+
+		@Override
+		public void close()
+		{
+		}
+	};
+
+	@Before
+	public void listen()
+	{
+		log.addHandler(handler);
+	}
+
+	@After
+	public void stop()
+	{
+		log.removeHandler(handler);
+	}
+
+	/**
+	 * Takes its time, then answers the <tt>value</tt> of the binding.
+	 */
+	public static class Slow implements ObjectFactory
+	{
+		@Override
+		public Object getObjectInstance(Object obj, Name name, Context nameCtx, Hashtable<?, ?> environment) throws InterruptedException
+		{
+			Thread.sleep(50);
+			return ((Reference) obj).get("value").getContent();
+		}
+	}
+
+	private XMLContext context(String threshold) throws Exception
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+		env.put(XMLContext.SLOW_THRESHOLD, threshold);
+		return new XMLContext(env);
+	}
+
+	@Test
+	public void slowLookupIsLoggedWithItsPhases() throws Exception
+	{
+		XMLContext ctx = context("10");
+		ctx.bind("slow", Value.wrap(new Reference(String.class.getName(), new StringRefAddr("value", "v"), Slow.class.getName(), null)));
+		logged.clear();
+
+		assertEquals("v", ctx.lookup("slow"));
+		assertEquals(1, logged.size());
+		String line = logged.get(0);
+		assertTrue(line, line.startsWith("slow lookup name=slow "));
+		for (String phase : new String[] { "resolve=", "fetch=", "parse=", "load=", "instantiate=" })
+			assertTrue(line, line.contains(phase));
+	}
+
+	@Test
+	public void fastLookupIsNotLogged() throws Exception
+	{
+		XMLContext ctx = context("60000");
+		ctx.bind("fast", Value.of("v"));
+		assertEquals("v", ctx.lookup("fast"));
+		assertTrue(logged.toString(), logged.isEmpty());
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void malformedThresholdIsAConfigurationError() throws Exception
+	{
+		context("soon");
+	}
+}
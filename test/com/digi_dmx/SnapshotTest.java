@@ -0,0 +1,189 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Hashtable;
+
+import javax.naming.Context;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Reading a namespace through {@link Snapshot}s while it changes.
+ * 
+ * @author Eric E Bardes
+ */
+public class SnapshotTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private XMLContext ctx;
+
+	@Before
+	public void open() throws Exception
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+		env.put(XMLContext.SNAPSHOT_INTERVAL, "50");
+		ctx = new XMLContext(env);
+		ctx.bind("a", Value.of("A"));
+		ctx.bind("b", Value.of("B"));
+	}
+
+	@Test
+	public void writesStackAndFold() throws Exception
+	{
+		try (Snapshot before = ctx.snapshot())
+		{
+			int writes = 3 * Generations.Generation.DEPTH;
+			String[] last = new String[7];
+			for (int i = 0; i < writes; i++)
+			{
+				last[i % 7] = Integer.toString(i);
+				ctx.rebind("n" + (i % 7), Value.of(last[i % 7]));
+			}
+			ctx.unbind("n0");
+
+			try (Snapshot after = ctx.snapshot())
+			{
+				assertTrue(after.getGeneration() >= before.getGeneration() + writes + 1);
+				assertEquals("A", after.lookup("a"));
+				for (int n = 1; n < 7; n++)
+					assertEquals(last[n], after.lookup("n" + n));
+				try
+				{
+					after.lookup("n0");
+					fail("n0 was unbound");
+				}
+				catch (NameNotFoundException expected)
+				{
+				}
+			}
+
+			try
+			{
+				before.lookup("n1");
+				fail("n1 was bound after the snapshot");
+			}
+			catch (NameNotFoundException expected)
+			{
+			}
+		}
+	}
+
+	@Test
+	public void changeBehindTheContextIsPolledWhileOpen() throws Exception
+	{
+		try (Snapshot s = ctx.snapshot())
+		{
+			edit("a", "b");
+			long deadline = System.currentTimeMillis() + 5000;
+			while (true)
+			{
+				try (Snapshot t = ctx.snapshot())
+				{
+					if ("B".equals(t.lookup("a")))
+						break;
+				}
+				assertTrue("never published", System.currentTimeMillis() < deadline);
+				Thread.sleep(20);
+			}
+			assertEquals("A", s.lookup("a"));
+		}
+	}
+
+	@Test
+	public void changeBehindTheContextIsCaughtUpAfterClose() throws Exception
+	{
+		long first;
+		try (Snapshot s = ctx.snapshot())
+		{
+			first = s.getGeneration();
+		}
+		edit("a", "b");
+		try (Snapshot s = ctx.snapshot())
+		{
+			assertEquals("B", s.lookup("a"));
+			assertTrue(s.getGeneration() > first);
+		}
+	}
+
+	@Test
+	public void writesWhileTheFirstSnapshotReadsAreKept() throws Exception
+	{
+		final int writes = 200;
+		for (int i = 0; i < writes; i++)
+			ctx.bind("w" + i, Value.of("old"));
+		final XMLContext writer = ctx;
+		Thread t = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					for (int i = 0; i < writes; i++)
+						writer.rebind("w" + i, Value.of("new"));
+				}
+				catch (NamingException e)
+				{
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		t.start();
+		ctx.snapshot().close();
+		t.join();
+
+		try (Snapshot s = ctx.snapshot())
+		{
+			for (int i = 0; i < writes; i++)
+				assertEquals("w" + i, "new", s.lookup("w" + i));
+		}
+	}
+
+	/**
+	 * Overwrites one binding's file with another's, as a push would.
+	 */
+	private void edit(String name, String from) throws Exception
+	{
+		File f = new File(folder.getRoot(), name + ".xml");
+		long stamp = f.lastModified();
+		Files.copy(new File(folder.getRoot(), from + ".xml").toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		f.setLastModified(stamp + 5000);
+	}
+}
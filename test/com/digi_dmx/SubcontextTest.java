@@ -0,0 +1,178 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+
+import javax.naming.Context;
+import javax.naming.ContextNotEmptyException;
+import javax.naming.NameAlreadyBoundException;
+import javax.naming.NameClassPair;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Subcontexts backed by directories of the provider.
+ * 
+ * @author Eric E Bardes
+ */
+public class SubcontextTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private XMLContext ctx;
+
+	@Before
+	public void open() throws Exception
+	{
+		Hashtable<String, Object> env = new Hashtable<String, Object>();
+		env.put(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+		ctx = new XMLContext(env);
+	}
+
+	private static List<String> names(Context c, String name) throws Exception
+	{
+		List<String> names = new ArrayList<String>();
+		for (NameClassPair p : Collections.list(c.list(name)))
+		{
+			names.add(p.getName());
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	@Test
+	public void createdSubcontextIsADirectory() throws Exception
+	{
+		Context sub = ctx.createSubcontext("jdbc");
+		assertTrue(new File(folder.getRoot(), "jdbc").isDirectory());
+		assertEquals("jdbc", sub.getNameInNamespace());
+
+		sub.bind("main", Value.of("M"));
+		assertTrue(new File(folder.getRoot(), "jdbc/main.xml").isFile());
+		assertEquals("M", ctx.lookup("jdbc/main"));
+	}
+
+	@Test(expected = NameAlreadyBoundException.class)
+	public void existingSubcontextCantBeCreatedAgain() throws Exception
+	{
+		ctx.createSubcontext("jdbc");
+		ctx.createSubcontext("jdbc");
+	}
+
+	@Test
+	public void subcontextsAreListed() throws Exception
+	{
+		ctx.bind("a", Value.of("A"));
+		ctx.createSubcontext("jdbc");
+		ctx.createSubcontext("jdbc/replicas");
+		assertEquals(Arrays.asList("a", "jdbc"), names(ctx, ""));
+		assertEquals(Collections.singletonList("replicas"), names(ctx, "jdbc"));
+		assertEquals(Collections.emptyList(), names((Context) ctx.lookup("jdbc"), "replicas"));
+	}
+
+	@Test
+	public void destroyedSubcontextIsRemoved() throws Exception
+	{
+		ctx.createSubcontext("jdbc");
+		ctx.destroySubcontext("jdbc");
+		assertFalse(new File(folder.getRoot(), "jdbc").exists());
+		assertEquals(Collections.emptyList(), names(ctx, ""));
+
+		// a directory that doesn't exist is ignored
+		ctx.destroySubcontext("jdbc");
+	}
+
+	@Test(expected = ContextNotEmptyException.class)
+	public void subcontextWithBindingsIsNotDestroyed() throws Exception
+	{
+		ctx.createSubcontext("jdbc").bind("main", Value.of("M"));
+		ctx.destroySubcontext("jdbc");
+	}
+
+	@Test
+	public void subcontextsAreHandedOutOnceUntilDestroyed() throws Exception
+	{
+		Context created = ctx.createSubcontext("jdbc");
+		Context nested = ((Context) ctx.lookup("jdbc")).createSubcontext("replicas");
+		assertSame(created, ctx.lookup("jdbc"));
+		assertSame(nested, ctx.lookup("jdbc/replicas"));
+
+		ctx.destroySubcontext("jdbc/replicas");
+		ctx.destroySubcontext("jdbc");
+		Context again = ctx.createSubcontext("jdbc");
+		assertNotSame(created, again);
+		assertSame(again, ctx.lookup("jdbc"));
+		assertNotSame(nested, again.createSubcontext("replicas"));
+	}
+
+	@Test
+	public void renameMovesTheBinding() throws Exception
+	{
+		ctx.bind("a", Value.of("A"));
+		ctx.rename("a", "jdbc/b");
+		assertEquals("A", ctx.lookup("jdbc/b"));
+		assertFalse(new File(folder.getRoot(), "a.xml").exists());
+	}
+
+	@Test(expected = NameNotFoundException.class)
+	public void renamingAMissingNameFails() throws Exception
+	{
+		ctx.rename("missing", "b");
+	}
+
+	@Test
+	public void failedRenameIsReported() throws Exception
+	{
+		ctx.bind("a", Value.of("A"));
+		assertTrue(new File(folder.getRoot(), "blocker").createNewFile());
+		try
+		{
+			ctx.rename("a", "blocker/b");
+			fail("renamed under a plain file");
+		}
+		catch (NamingException expected)
+		{
+		}
+		assertEquals("A", ctx.lookup("a"));
+	}
+}
@@ -0,0 +1,70 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx;
+
+import java.util.Hashtable;
+
+import javax.naming.Context;
+import javax.naming.Name;
+import javax.naming.Reference;
+import javax.naming.Referenceable;
+import javax.naming.StringRefAddr;
+import javax.naming.spi.ObjectFactory;
+
+/**
+ * Answers the <tt>value</tt> of a binding, for tests that only need something to bind.
+ * 
+ * @author Eric E Bardes
+ */
+public class Value implements ObjectFactory
+{
+	/**
+	 * Something to bind that resolves to the given string.
+	 */
+	static Referenceable of(String v)
+	{
+		return wrap(new Reference(String.class.getName(), new StringRefAddr("value", v), Value.class.getName(), null));
+	}
+
+	/**
+	 * Something to bind that is stored as the given reference.
+	 */
+	static Referenceable wrap(final Reference ref)
+	{
+		return new Referenceable()
+		{
+			@Override
+			public Reference getReference()
+			{
+				return ref;
+			}
+		};
+	}
+
+	@Override
+	public Object getObjectInstance(Object obj, Name name, Context nameCtx, Hashtable<?, ?> environment)
+	{
+		return ((Reference) obj).get("value").getContent();
+	}
+}
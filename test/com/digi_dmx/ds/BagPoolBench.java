@@ -0,0 +1,115 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx.ds;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Compares the throughput of the two pool engines: 200 threads running <tt>select 1</tt> against an in-memory H2
+ * database through a pool of 20 connections.  Not part of the normal build, run it with
+ * <tt>mvn test -Dtest=BagPoolBench</tt>.
+ * 
+ * @author Eric E Bardes
+ */
+public class BagPoolBench
+{
+	private static final int THREADS = 200;
+
+	private static final int MAX_TOTAL = 20;
+
+	private static final long WARMUP = TimeUnit.SECONDS.toNanos(1);
+
+	private static final long MEASURE = TimeUnit.SECONDS.toNanos(3);
+
+	@Test
+	public void compare() throws Exception
+	{
+		for (String engine : new String[] { "dbcp", "builtin" })
+		{
+			DSAdapter a = new DSAdapter();
+			a.setDriver("org.h2.Driver");
+			a.setUrl("jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+			a.setEngine(engine);
+			a.setMaxTotal(MAX_TOTAL);
+			a.setValidationInterval(30);
+			a.open();
+
+			run(a, WARMUP);
+			long ops = run(a, MEASURE);
+			System.out.printf("%-8s %,d ops/s%n", engine, ops / TimeUnit.NANOSECONDS.toSeconds(MEASURE));
+		}
+	}
+
+	private static long run(final DSAdapter a, long nanos) throws Exception
+	{
+		final long end = System.nanoTime() + nanos;
+		ExecutorService ex = Executors.newFixedThreadPool(THREADS);
+		try
+		{
+			List<Future<Long>> done = new ArrayList<Future<Long>>();
+			for (int t = 0; t < THREADS; t++)
+			{
+				done.add(ex.submit(new Callable<Long>()
+				{
+					@Override
+					public Long call() throws SQLException
+					{
+						long n = 0;
+						while (System.nanoTime() < end)
+						{
+							try (Connection c = a.getConnection(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery("select 1"))
+							{
+								rs.next();
+							}
+							n++;
+						}
+						return n;
+					}
+				}));
+			}
+			long ops = 0;
+			for (Future<Long> f : done)
+			{
+				ops += f.get();
+			}
+			return ops;
+		}
+		finally
+		{
+			ex.shutdown();
+		}
+	}
+}
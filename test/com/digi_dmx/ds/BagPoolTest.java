@@ -0,0 +1,244 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx.ds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The built-in pool engine.
+ * 
+ * @author Eric E Bardes
+ */
+public class BagPoolTest
+{
+	private BagPool pool;
+
+	@Before
+	public void open()
+	{
+		pool = new BagPool("org.h2.Driver", "jdbc:h2:mem:bag;DB_CLOSE_DELAY=-1", null, null);
+		pool.setMaxTotal(2);
+	}
+
+	@After
+	public void close() throws SQLException
+	{
+		pool.close();
+	}
+
+	@Test
+	public void statementsAreClosedOnReturn() throws SQLException
+	{
+		Statement st;
+		PreparedStatement ps;
+		ResultSet rs;
+		try (Connection c = pool.getConnection())
+		{
+			st = c.createStatement();
+			ps = c.prepareStatement("select 1");
+			rs = ps.executeQuery();
+			assertTrue(rs.next());
+		}
+		assertTrue(st.isClosed());
+		assertTrue(ps.isClosed());
+		assertTrue(rs.isClosed());
+	}
+
+	@Test
+	public void closedStatementsAreForgotten() throws SQLException
+	{
+		try (Connection c = pool.getConnection())
+		{
+			for (int i = 0; i < 1000; i++)
+			{
+				c.createStatement().close();
+			}
+			Statement open = c.createStatement();
+			c.close();
+			assertTrue(open.isClosed());
+		}
+	}
+
+	@Test
+	public void returnedConnectionIsHandedToWaiters() throws Exception
+	{
+		final int threads = 16;
+		final int rounds = 200;
+		ExecutorService ex = Executors.newFixedThreadPool(threads);
+		try
+		{
+			List<Future<Integer>> done = new ArrayList<Future<Integer>>();
+			for (int t = 0; t < threads; t++)
+			{
+				done.add(ex.submit(new Callable<Integer>()
+				{
+					@Override
+					public Integer call() throws SQLException
+					{
+						int n = 0;
+						for (int i = 0; i < rounds; i++)
+						{
+							try (Connection c = pool.getConnection(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery("select 1"))
+							{
+								if (rs.next())
+									n++;
+							}
+						}
+						return n;
+					}
+				}));
+			}
+			for (Future<Integer> f : done)
+			{
+				assertEquals(rounds, (int) f.get());
+			}
+		}
+		finally
+		{
+			ex.shutdown();
+		}
+		assertEquals(0, pool.getNumActive());
+	}
+
+	@Test(expected = SQLTimeoutException.class)
+	public void fullPoolTimesOut() throws SQLException
+	{
+		try (Connection a = pool.getConnection(); Connection b = pool.getConnection())
+		{
+			assertFalse(a.isClosed() || b.isClosed());
+			pool.getConnection(100).close();
+		}
+	}
+
+	@Test(expected = SQLTimeoutException.class)
+	public void maxWaitBoundsBorrowingButLoginTimeoutDoesNot() throws SQLException
+	{
+		pool.setLoginTimeout(60);
+		pool.setMaxWait(100);
+		try (Connection a = pool.getConnection(); Connection b = pool.getConnection())
+		{
+			assertFalse(a.isClosed() || b.isClosed());
+			pool.getConnection().close();
+		}
+	}
+
+	@Test(expected = SQLFeatureNotSupportedException.class)
+	public void otherCredentialsAreNotSupported() throws SQLException
+	{
+		pool.getConnection("someone", "else");
+	}
+
+	/**
+	 * @return The pool's sessions open on the database.
+	 */
+	private static int sessions(String db) throws SQLException
+	{
+		try (Connection admin = DriverManager.getConnection("jdbc:h2:mem:" + db); Statement st = admin.createStatement();
+				ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.SESSIONS"))
+		{
+			rs.next();
+			return rs.getInt(1) - 1;
+		}
+	}
+
+	private static void awaitSessions(String db, int expected) throws Exception
+	{
+		long deadline = System.currentTimeMillis() + 10000;
+		while (sessions(db) != expected && System.currentTimeMillis() < deadline)
+			Thread.sleep(50);
+		assertEquals(expected, sessions(db));
+	}
+
+	@Test
+	public void idleConnectionsAreClosedWithoutAValidationInterval() throws Exception
+	{
+		BagPool p = new BagPool("org.h2.Driver", "jdbc:h2:mem:idle;DB_CLOSE_DELAY=-1", null, null);
+		p.setMaxTotal(3);
+		p.setMinIdle(1);
+		p.setIdleTimeout(200);
+		try
+		{
+			try (Connection c1 = p.getConnection(); Connection c2 = p.getConnection(); Connection c3 = p.getConnection())
+			{
+				assertEquals(3, sessions("idle"));
+			}
+			awaitSessions("idle", 1);
+		}
+		finally
+		{
+			p.close();
+		}
+	}
+
+	@Test
+	public void minIdleIsKeptWithoutAValidationInterval() throws Exception
+	{
+		BagPool p = new BagPool("org.h2.Driver", "jdbc:h2:mem:refill;DB_CLOSE_DELAY=-1", null, null);
+		p.setMaxTotal(3);
+		p.setMinIdle(2);
+		p.setIdleTimeout(200);
+		try
+		{
+			p.getConnection().close();
+			awaitSessions("refill", 2);
+		}
+		finally
+		{
+			p.close();
+		}
+	}
+
+	@Test
+	public void unwrappingDoesNotExposeThePhysicalConnection() throws SQLException
+	{
+		Connection c = pool.getConnection();
+		assertTrue(c.isWrapperFor(Connection.class));
+		assertSame(c, c.unwrap(Connection.class));
+		c.unwrap(Connection.class).close();
+		assertTrue(c.isClosed());
+		assertEquals(0, pool.getNumActive());
+	}
+}
@@ -0,0 +1,387 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx.ds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.naming.ConfigurationException;
+import javax.naming.Reference;
+import javax.naming.StringRefAddr;
+import javax.sql.DataSource;
+
+import org.junit.Test;
+
+import com.digi_dmx.TypedRefAddr;
+
+/**
+ * Read only connections, from the primary and from replicas.
+ * 
+ * @author Eric E Bardes
+ */
+public class DSAdapterTest
+{
+	/**
+	 * H2 ignores {@link Connection#setReadOnly(boolean)}, so this driver remembers it for each connection.
+	 */
+	public static class Recording implements Driver
+	{
+		private final Driver h2 = new org.h2.Driver();
+
+		@Override
+		public Connection connect(String url, Properties info) throws SQLException
+		{
+			final Connection c = h2.connect(url, info);
+			if (c == null)
+				return null;
+			return (Connection) Proxy.newProxyInstance(Recording.class.getClassLoader(), new Class<?>[] { Connection.class }, new InvocationHandler()
+			{
+				private boolean readOnly;
+
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+				{
+					switch (method.getName())
+					{
+					case "setReadOnly":
+						readOnly = (Boolean) args[0];
+						return null;
+					case "isReadOnly":
+						return readOnly;
+					default:
+					}
+					try
+					{
+						return method.invoke(c, args);
+					}
+					catch (InvocationTargetException e)
+					{
+						throw e.getCause();
+					}
+				}
+			});
+		}
+
+		@Override
+		public boolean acceptsURL(String url) throws SQLException
+		{
+			return h2.acceptsURL(url);
+		}
+
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException
+		{
+			return h2.getPropertyInfo(url, info);
+		}
+
+		@Override
+		public int getMajorVersion()
+		{
+			return h2.getMajorVersion();
+		}
+
+		@Override
+		public int getMinorVersion()
+		{
+			return h2.getMinorVersion();
+		}
+
+		@Override
+		public boolean jdbcCompliant()
+		{
+			return false;
+		}
+
+		@Override
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException
+		{
+			return h2.getParentLogger();
+		}
+	}
+
+	/**
+	 * Counts the physical connections opened.
+	 */
+	public static class Counted extends Recording
+	{
+		static final AtomicInteger opened = new AtomicInteger();
+
+		@Override
+		public Connection connect(String url, Properties info) throws SQLException
+		{
+			Connection c = super.connect(url, info);
+			if (c != null)
+				opened.incrementAndGet();
+			return c;
+		}
+	}
+
+	private static DSAdapter adapter(String engine, String db)
+	{
+		DSAdapter a = new DSAdapter();
+		a.setDriver(Recording.class.getName());
+		a.setUrl(url(db));
+		a.setEngine(engine);
+		a.setMaxTotal(1);
+		return a;
+	}
+
+	private static String url(String db)
+	{
+		return "jdbc:h2:mem:" + db + ";DB_CLOSE_DELAY=-1";
+	}
+
+	private static void readOnlyFallbackIsUndone(String engine) throws Exception
+	{
+		DSAdapter a = adapter(engine, "fallback-" + engine);
+		a.open();
+
+		try (Connection c = a.getReadOnlyConnection())
+		{
+			assertTrue(c.isReadOnly());
+		}
+		try (Connection c = a.getConnection())
+		{
+			assertFalse(c.isReadOnly());
+		}
+	}
+
+	@Test
+	public void readOnlyFallbackIsUndoneOnReturnDbcp() throws Exception
+	{
+		readOnlyFallbackIsUndone("dbcp");
+	}
+
+	@Test
+	public void readOnlyFallbackIsUndoneOnReturnBuiltin() throws Exception
+	{
+		readOnlyFallbackIsUndone("builtin");
+	}
+
+	@Test
+	public void readOnlyDataSourceHandsOutReplicaConnections() throws Exception
+	{
+		DSAdapter a = adapter("builtin", "view-primary");
+		a.setReplicas(url("view-replica"));
+		a.open();
+
+		DataSource view = a.getReadOnlyDataSource();
+		try (Connection c = view.getConnection())
+		{
+			assertTrue(c.getMetaData().getURL().contains("view-replica"));
+			assertTrue(c.isReadOnly());
+		}
+		assertSame(a.getParentLogger(), view.getParentLogger());
+		assertEquals(DSAdapter.class.getName(), view.getParentLogger().getName());
+	}
+
+	@Test
+	public void exhaustedReplicaFailsOver() throws Exception
+	{
+		DSAdapter a = adapter("dbcp", "primary");
+		a.setReplicas(url("replica"));
+		a.open();
+
+		try (Connection held = a.getReadOnlyConnection())
+		{
+			assertTrue(held.getMetaData().getURL().contains("replica"));
+			try (Connection c = a.getReadOnlyConnection())
+			{
+				assertTrue(c.getMetaData().getURL().contains("primary"));
+				assertTrue(c.isReadOnly());
+			}
+			assertEquals(1, a.getHealthyReplicas());
+		}
+	}
+
+	@Test
+	public void balanceAcceptsLatencyAliases()
+	{
+		assertEquals(ReplicaSet.Balance.LATENCY_WEIGHTED, ReplicaSet.Balance.parse("latency-weighted"));
+		assertEquals(ReplicaSet.Balance.LATENCY_WEIGHTED, ReplicaSet.Balance.parse("Latency"));
+		assertEquals(ReplicaSet.Balance.LATENCY_WEIGHTED, ReplicaSet.Balance.parse("borrow-time"));
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void unknownBalanceIsAConfigurationError() throws Exception
+	{
+		Reference ref = new Reference(DSAdapter.class.getName(), DSFactory.class.getName(), null);
+		ref.add(new StringRefAddr("driver", Recording.class.getName()));
+		ref.add(new StringRefAddr("url", url("primary")));
+		ref.add(new StringRefAddr("balance", "fastest"));
+		DSFactory.configure(ref);
+	}
+
+	@Test
+	public void subSecondDurationsRoundUp() throws Exception
+	{
+		Reference ref = new Reference(DSAdapter.class.getName(), DSFactory.class.getName(), null);
+		ref.add(new StringRefAddr("driver", Recording.class.getName()));
+		ref.add(new StringRefAddr("url", url("primary")));
+		ref.add(new TypedRefAddr("validationInterval", "duration", "500ms"));
+		ref.add(new TypedRefAddr("hotSwapInterval", "duration", "1500ms"));
+		DSAdapter a = DSFactory.configure(ref);
+		assertEquals("1", a.getReference().get("validationInterval").getContent());
+		assertEquals(2, a.getHotSwapInterval());
+	}
+
+	private static void prewarmFillsThePool(String engine) throws Exception
+	{
+		Counted.opened.set(0);
+		DSAdapter a = adapter(engine, "prewarm-" + engine);
+		a.setDriver(Counted.class.getName());
+		a.setMaxTotal(3);
+		a.setMinIdle(2);
+		a.setPrewarm(true);
+		a.open();
+
+		a.ready().get(10, TimeUnit.SECONDS);
+		assertTrue(a.isReady());
+		assertEquals(2, a.getWarmedConnections());
+
+		// DBCP opens one more while it checks its settings, and closes it again
+		int opened = Counted.opened.get();
+		try (Connection c1 = a.getConnection(); Connection c2 = a.getConnection())
+		{
+			assertEquals(opened, Counted.opened.get());
+		}
+	}
+
+	@Test
+	public void prewarmFillsThePoolDbcp() throws Exception
+	{
+		prewarmFillsThePool("dbcp");
+	}
+
+	@Test
+	public void prewarmFillsThePoolBuiltin() throws Exception
+	{
+		prewarmFillsThePool("builtin");
+	}
+
+	@Test
+	public void withoutPrewarmTheAdapterIsReadyAtOnce() throws Exception
+	{
+		DSAdapter a = adapter("builtin", "cold");
+		a.setMinIdle(1);
+		a.open();
+		assertTrue(a.ready().isDone());
+		assertTrue(a.isReady());
+		assertEquals(0, a.getWarmedConnections());
+	}
+
+	@Test
+	public void failedPrewarmFailsReady() throws Exception
+	{
+		DSAdapter a = adapter("builtin", "missing");
+		a.setUrl("jdbc:h2:mem:missing;IFEXISTS=TRUE");
+		a.setMinIdle(1);
+		a.setPrewarm(true);
+		a.open();
+		try
+		{
+			a.ready().get(10, TimeUnit.SECONDS);
+			fail("pre-warming a missing database succeeded");
+		}
+		catch (ExecutionException e)
+		{
+			assertTrue(e.getCause() instanceof SQLException);
+		}
+		assertFalse(a.isReady());
+	}
+
+	private static int session(Connection c) throws SQLException
+	{
+		try (Statement s = c.createStatement(); ResultSet rs = s.executeQuery("SELECT SESSION_ID()"))
+		{
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	private static void deadIdleConnectionIsReplaced(String engine) throws Exception
+	{
+		DSAdapter a = adapter(engine, "validate-" + engine);
+		a.setDriver(Counted.class.getName());
+		a.setMinIdle(1);
+		a.setValidationInterval(1);
+		a.open();
+
+		int before;
+		try (Connection c = a.getConnection())
+		{
+			before = session(c);
+		}
+		int opened = Counted.opened.get();
+		try (Connection admin = DriverManager.getConnection(url("validate-" + engine)); Statement s = admin.createStatement())
+		{
+			s.execute("CALL ABORT_SESSION(" + before + ")");
+		}
+
+		// nothing is borrowed, so only the validator can find the dead connection and the pool refill to minIdle
+		long deadline = System.currentTimeMillis() + 10000;
+		while (Counted.opened.get() == opened && System.currentTimeMillis() < deadline)
+			Thread.sleep(100);
+		assertTrue(Counted.opened.get() > opened);
+
+		try (Connection c = a.getConnection())
+		{
+			assertNotEquals(before, session(c));
+		}
+	}
+
+	@Test
+	public void deadIdleConnectionIsReplacedDbcp() throws Exception
+	{
+		deadIdleConnectionIsReplaced("dbcp");
+	}
+
+	@Test
+	public void deadIdleConnectionIsReplacedBuiltin() throws Exception
+	{
+		deadIdleConnectionIsReplaced("builtin");
+	}
+}
@@ -0,0 +1,138 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx.ds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Hashtable;
+
+import javax.naming.Context;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.digi_dmx.XMLContext;
+import com.digi_dmx.XMLContextFactory;
+
+/**
+ * Pools replaced by a changed binding, or left behind by an adapter nobody uses, being closed.
+ * 
+ * @author Eric E Bardes
+ */
+public class HotSwapTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private XMLContext ctx;
+
+	@Before
+	public void open() throws Exception
+	{
+		// the constructor isn't public, so take the shared initial context and point it at the folder
+		ctx = (XMLContext) new XMLContextFactory().getInitialContext(new Hashtable<String, Object>());
+		ctx.addToEnvironment(Context.PROVIDER_URL, folder.getRoot().toURI().toString());
+	}
+
+	private static DSAdapter binding(String db)
+	{
+		DSAdapter d = new DSAdapter();
+		d.setDriver("org.h2.Driver");
+		d.setUrl("jdbc:h2:mem:" + db + ";DB_CLOSE_DELAY=-1");
+		d.setEngine("builtin");
+		d.setHotSwap(true);
+		d.setHotSwapInterval(1);
+		return d;
+	}
+
+	private static boolean isClosed(Pool p)
+	{
+		try
+		{
+			p.getConnection(100).close();
+			return false;
+		}
+		catch (SQLException e)
+		{
+			return e.getMessage().contains("closed");
+		}
+	}
+
+	private static String database(DSAdapter a) throws SQLException
+	{
+		try (Connection c = a.getConnection())
+		{
+			return c.getMetaData().getURL();
+		}
+	}
+
+	@Test
+	public void swappedOutPoolDrainsAndCloses() throws Exception
+	{
+		ctx.bind("main", binding("swap-old"));
+		DSAdapter a = (DSAdapter) ctx.lookup("main");
+		Pool old = a.pool();
+		Connection held = a.getConnection();
+
+		ctx.rebind("main", binding("swap-new"));
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!database(a).contains("swap-new") && System.currentTimeMillis() < deadline)
+			Thread.sleep(100);
+		assertTrue(database(a).contains("swap-new"));
+
+		// the borrowed connection still works and holds the old pool open
+		assertTrue(held.getMetaData().getURL().contains("swap-old"));
+		assertEquals(1, old.getNumActive());
+		assertFalse(isClosed(old));
+
+		held.close();
+		while (!isClosed(old) && System.currentTimeMillis() < deadline)
+			Thread.sleep(100);
+		assertTrue(isClosed(old));
+	}
+
+	@Test
+	public void poolsOfACollectedAdapterAreClosed() throws Exception
+	{
+		ctx.bind("gone", binding("collected"));
+		DSAdapter a = (DSAdapter) ctx.lookup("gone");
+		database(a);
+		Pool p = a.pool();
+		a = null;
+
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!isClosed(p) && System.currentTimeMillis() < deadline)
+		{
+			System.gc();
+			Thread.sleep(100);
+		}
+		assertTrue(isClosed(p));
+	}
+}
@@ -0,0 +1,76 @@
+/*
+The MIT License
+
+Copyright (c) 2017 Eric E Bardes
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package com.digi_dmx.ds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Test;
+
+/**
+ * Connections wrapped for {@link QueryStats}.
+ * 
+ * @author Eric E Bardes
+ */
+public class InstrumentedTest
+{
+	private static Connection connect() throws SQLException
+	{
+		return DriverManager.getConnection("jdbc:h2:mem:instrumented");
+	}
+
+	@Test
+	public void statementLeadsBackToTheWrappedConnection() throws SQLException
+	{
+		QueryStats stats = QueryStats.forName("test/instrumented", 60);
+		Connection c = Instrumented.wrap(connect(), stats);
+		Statement st = c.createStatement();
+		ResultSet rs = st.executeQuery("select 1");
+		assertSame(c, st.getConnection());
+		assertSame(st, rs.getStatement());
+
+		st.getConnection().close();
+		assertEquals(0, stats.getHeld());
+		assertEquals(1, stats.getBorrows());
+		assertEquals(1, stats.getExecutions());
+	}
+
+	@Test
+	public void noStackWithoutLeakTracking() throws SQLException
+	{
+		QueryStats stats = QueryStats.forName("test/untracked", 0);
+		try (Connection c = connect())
+		{
+			assertEquals(0, stats.borrowed(c).getStackTrace().length);
+			assertEquals(0, stats.getLeakSuspects().length);
+			stats.returned(c);
+		}
+	}
+}